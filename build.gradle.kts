@@ -38,6 +38,14 @@ repositories {
     }
 }
 
+// JMH benchmarks live in their own source set - run them with `./gradlew jmh`
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += output + compileClasspath
+    }
+}
+
 // Dependencies are managed with Gradle version catalog - read more: https://docs.gradle.org/current/userguide/platforms.html#sub:version-catalog
 dependencies {
     testImplementation(libs.junit)
@@ -45,6 +53,9 @@ dependencies {
     testImplementation("org.mockito:mockito-core:5.11.0")
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
 
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
+
     // IntelliJ Platform Gradle Plugin Dependencies Extension - read more: https://plugins.jetbrains.com/docs/intellij/tools-intellij-platform-gradle-plugin-dependencies-extension.html
     intellijPlatform {
         create(providers.gradleProperty("platformType"), providers.gradleProperty("platformVersion"))
@@ -143,6 +154,19 @@ tasks {
     publishPlugin {
         dependsOn(patchChangelog)
     }
+
+    // Pass JMH options with -PjmhArgs, e.g. -PjmhArgs="EnvParsingBenchmark -p lines=10000"
+    register<JavaExec>("jmh") {
+        group = "verification"
+        description = "Runs the JMH benchmarks and writes the results to build/reports/jmh/results.json"
+        val resultFile = layout.buildDirectory.file("reports/jmh/results.json")
+        val extraArgs = providers.gradleProperty("jmhArgs").map { args -> args.split(' ').filter { it.isNotBlank() } }.orElse(emptyList())
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass = "org.openjdk.jmh.Main"
+        argumentProviders += CommandLineArgumentProvider {
+            extraArgs.get() + listOf("-rf", "json", "-rff", resultFile.get().asFile.apply { parentFile.mkdirs() }.path)
+        }
+    }
 }
 
 intellijPlatformTesting {
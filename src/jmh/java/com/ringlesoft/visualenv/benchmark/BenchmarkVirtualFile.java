@@ -0,0 +1,111 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileSystem;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory file tree for the benchmarks, as the platform's virtual file systems need a running IDE.
+ * Only names and parents are modelled; reading or writing content is not supported.
+ */
+final class BenchmarkVirtualFile extends VirtualFile {
+    private final String name;
+    private final BenchmarkVirtualFile parent;
+    private final boolean directory;
+    private final List<VirtualFile> children = new ArrayList<>();
+
+    private BenchmarkVirtualFile(String name, BenchmarkVirtualFile parent, boolean directory) {
+        this.name = name;
+        this.parent = parent;
+        this.directory = directory;
+        if (parent != null) {
+            parent.children.add(this);
+        }
+    }
+
+    static BenchmarkVirtualFile root(String name) {
+        return new BenchmarkVirtualFile(name, null, true);
+    }
+
+    BenchmarkVirtualFile directory(String name) {
+        return new BenchmarkVirtualFile(name, this, true);
+    }
+
+    BenchmarkVirtualFile file(String name) {
+        return new BenchmarkVirtualFile(name, this, false);
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return name;
+    }
+
+    @Override
+    public @NotNull VirtualFileSystem getFileSystem() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @NotNull String getPath() {
+        return parent == null ? "/" + name : parent.getPath() + "/" + name;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return false;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public VirtualFile getParent() {
+        return parent;
+    }
+
+    @Override
+    public VirtualFile[] getChildren() {
+        return children.toArray(VirtualFile.EMPTY_ARRAY);
+    }
+
+    @Override
+    public @NotNull OutputStream getOutputStream(Object requestor, long newModificationStamp, long newTimeStamp) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte @NotNull [] contentsToByteArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return 0;
+    }
+
+    @Override
+    public long getLength() {
+        return 0;
+    }
+
+    @Override
+    public void refresh(boolean asynchronous, boolean recursive, Runnable postRunnable) {
+    }
+
+    @Override
+    public @NotNull InputStream getInputStream() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ringlesoft.visualenv.benchmark;
+
+/**
+ * Generates synthetic .env content for the benchmarks.
+ * The output is deterministic and mixes the line kinds found in real files:
+ * section comments, blank lines, plain, quoted and exported assignments,
+ * and the occasional commented-out or malformed line.
+ */
+final class EnvContentGenerator {
+
+    private EnvContentGenerator() {
+    }
+
+    /**
+     * Generate content with the given number of lines
+     */
+    static String generate(int lines) {
+        StringBuilder content = new StringBuilder(lines * 32);
+        for (int line = 0; line < lines; line++) {
+            int section = line / 20;
+            switch (line % 20) {
+                case 0 -> content.append("# Section ").append(section);
+                case 19 -> {
+                    // Blank line between sections
+                }
+                case 7 -> content.append("# SECTION").append(section).append("_DISABLED=old value");
+                case 13 -> content.append("export SECTION").append(section).append("_EXPORTED=").append(line);
+                case 17 -> content.append("malformed line ").append(line);
+                default -> {
+                    content.append(key(line)).append('=');
+                    if (line % 3 == 0) {
+                        content.append("\"quoted value ").append(line).append('"');
+                    } else {
+                        content.append("value").append(line);
+                    }
+                }
+            }
+            content.append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * The key written on a given assignment line
+     */
+    static String key(int line) {
+        return "SECTION" + (line / 20) + "_KEY_" + line;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.ringlesoft.visualenv.model.EnvSearchIndex;
+import com.ringlesoft.visualenv.model.EnvVariable;
+import com.ringlesoft.visualenv.utils.EnvLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the tool window filter: the search index used by the group panels,
+ * and the plain lowercase-and-contains scan it replaced as a baseline
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvFilterBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"s", "key_1", "quoted value 9", "missing"})
+    public String query;
+
+    private List<EnvVariable> variables;
+    private EnvSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        variables = new ArrayList<>();
+        for (EnvLexer.Token token : EnvLexer.tokenize(EnvContentGenerator.generate(lines))) {
+            if (token.isEntry()) {
+                variables.add(new EnvVariable(token.getKey(), token.getValue(), ".env", false, "other"));
+            }
+        }
+        index = new EnvSearchIndex(variables);
+    }
+
+    @Benchmark
+    public EnvSearchIndex buildSearchIndex() {
+        return new EnvSearchIndex(variables);
+    }
+
+    @Benchmark
+    public BitSet searchIndex() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public BitSet scanBaseline() {
+        String filter = query.toLowerCase();
+        BitSet matches = new BitSet(variables.size());
+        for (int i = 0; i < variables.size(); i++) {
+            EnvVariable variable = variables.get(i);
+            if (variable.getName().toLowerCase().contains(filter) ||
+                    variable.getValue().toLowerCase().contains(filter)) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,161 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import com.ringlesoft.visualenv.model.EnvSearchIndex;
+import com.ringlesoft.visualenv.model.EnvVariable;
+import com.ringlesoft.visualenv.utils.EnvLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint of the parsed variables of a large project.
+ * The benchmarks measure the per-call work of displaying and indexing the variables;
+ * run them with -PjmhArgs="EnvFootprintBenchmark -prof gc" to see the allocations per call.
+ * The main method reports the heap retained by the snapshot and its search index, next to the
+ * previous representation, in which every variable had its own copy of the file path and the
+ * index kept lowercased copies of every name and displayed value:
+ * java -cp build/classes/java/main:build/classes/java/jmh com.ringlesoft.visualenv.benchmark.EnvFootprintBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvFootprintBenchmark {
+    private static final String[] GROUPS = {"app", "database", "cache", "mail", "aws", "other"};
+
+    @Param({"50000"})
+    public int variables;
+
+    private List<EnvVariable> parsed;
+
+    @Setup
+    public void setUp() {
+        parsed = parse(variables);
+    }
+
+    /**
+     * What the table and the filter read for every row
+     */
+    @Benchmark
+    public int displayValues() {
+        int length = 0;
+        for (EnvVariable variable : parsed) {
+            length += variable.getValue().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public EnvSearchIndex buildSearchIndex() {
+        return new EnvSearchIndex(parsed);
+    }
+
+    /**
+     * Parse generated content the way EnvFileService does, with every fifth variable secret
+     */
+    static List<EnvVariable> parse(int count) {
+        return parse(count, true);
+    }
+
+    /**
+     * @param sharedSource Whether all variables share one source string; the parse used to ask
+     *                     the file for its path once per variable, which builds a new string each time
+     */
+    private static List<EnvVariable> parse(int count, boolean sharedSource) {
+        // The generator writes 16 assignments per 20 lines
+        String content = EnvContentGenerator.generate(count / 16 * 20 + 20);
+        String source = new String("/project/.env".toCharArray());
+        List<EnvVariable> result = new ArrayList<>(count);
+        for (EnvLexer.Token token : EnvLexer.tokenize(content)) {
+            if (token.isEntry() && result.size() < count) {
+                String group = GROUPS[result.size() % GROUPS.length];
+                String path = sharedSource ? source : new String(source.toCharArray());
+                result.add(new EnvVariable(token.getKey(), token.getValue(), path, result.size() % 5 == 0, group));
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        // Previous representation
+        long start = usedHeap(memory);
+        EnvFileSnapshot previous = snapshot(parse(count, false));
+        long previousSnapshot = usedHeap(memory) - start;
+        EnvSearchIndex previousIndex = new EnvSearchIndex(previous.getVariables());
+        String[] lowercased = lowercasedCopies(previous.getVariables());
+        long previousSearchIndex = usedHeap(memory) - start - previousSnapshot;
+        Reference.reachabilityFence(previous);
+        Reference.reachabilityFence(previousIndex);
+        Reference.reachabilityFence(lowercased);
+        previous = null;
+        previousIndex = null;
+        lowercased = null;
+
+        // Current representation
+        long before = usedHeap(memory);
+        EnvFileSnapshot snapshot = snapshot(parse(count));
+        long afterSnapshot = usedHeap(memory);
+        EnvSearchIndex index = snapshot.getSearchIndex();
+        long afterIndex = usedHeap(memory);
+        Reference.reachabilityFence(index);
+
+        long currentSnapshot = afterSnapshot - before;
+        long currentSearchIndex = afterIndex - afterSnapshot;
+        System.out.printf("Variables:    %d%n", snapshot.size());
+        System.out.printf("Snapshot:     %,d bytes retained, previously %,d (%.2fx)%n",
+                currentSnapshot, previousSnapshot, (double) currentSnapshot / previousSnapshot);
+        System.out.printf("Search index: %,d bytes retained, previously %,d (%.2fx)%n",
+                currentSearchIndex, previousSearchIndex, (double) currentSearchIndex / previousSearchIndex);
+    }
+
+    private static EnvFileSnapshot snapshot(List<EnvVariable> variables) {
+        int[] lines = new int[variables.size()];
+        Arrays.setAll(lines, i -> i);
+        return new EnvFileSnapshot(variables, lines, 0);
+    }
+
+    /**
+     * What the search index used to keep besides its trigrams: a lowercased copy of every name and displayed
+     * value, with a mask built for each secret
+     */
+    private static String[] lowercasedCopies(List<EnvVariable> variables) {
+        String[] copies = new String[variables.size() * 2];
+        for (int i = 0; i < variables.size(); i++) {
+            EnvVariable variable = variables.get(i);
+            String shown = variable.isSecret() ? "*".repeat(variable.getRawValue().length()) : variable.getRawValue();
+            copies[2 * i] = variable.getName().toLowerCase(Locale.ROOT);
+            copies[2 * i + 1] = shown.toLowerCase(Locale.ROOT);
+        }
+        return copies;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import com.ringlesoft.visualenv.model.EnvVariableRegistry;
+import com.ringlesoft.visualenv.profile.LaravelProfile;
+import com.ringlesoft.visualenv.services.EnvFileService;
+import com.ringlesoft.visualenv.utils.EnvDocumentIndex;
+import com.ringlesoft.visualenv.utils.EnvFileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for reading .env content
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvParsingBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int lines;
+
+    private String content;
+    private EnvVariableRegistry registry;
+
+    @Setup
+    public void setUp() {
+        content = EnvContentGenerator.generate(lines);
+        registry = new EnvVariableRegistry(new LaravelProfile());
+    }
+
+    /**
+     * The parse loop of EnvFileService, with the registry lookups of a Laravel project
+     */
+    @Benchmark
+    public EnvFileSnapshot parseEnvFile() {
+        return EnvFileService.lexContent(content, ".env", registry, 0, () -> {
+        });
+    }
+
+    @Benchmark
+    public EnvDocumentIndex buildDocumentIndex() {
+        return new EnvDocumentIndex(content, 0);
+    }
+
+    @Benchmark
+    public Map<String, String> getAllEnvVariables() {
+        return EnvFileManager.getAllEnvVariables(content);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> extractEnvFileSections() {
+        return EnvFileManager.extractEnvFileSections(content);
+    }
+
+    @Benchmark
+    public List<String> validateEnvFile() {
+        return EnvFileManager.validateEnvFile(content);
+    }
+}
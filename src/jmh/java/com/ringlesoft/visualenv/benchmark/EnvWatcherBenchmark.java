@@ -0,0 +1,86 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.intellij.openapi.vfs.AsyncFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.ringlesoft.visualenv.listeners.EnvFileWatcher;
+import com.ringlesoft.visualenv.services.MetricsService;
+import com.ringlesoft.visualenv.utils.EnvEventFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a batch of VFS events the size of a large package install through the file watcher's
+ * prepareChange: half creations, half deletions in node_modules, and one event in a thousand
+ * creating an env file in a package of the project
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvWatcherBenchmark {
+    private static final int PACKAGES = 2_000;
+    private static final int FILES_PER_PACKAGE = 50;
+
+    @Param({"200000"})
+    public int events;
+
+    private List<VFileEvent> batch;
+    private AsyncFileListener listener;
+
+    @Setup
+    public void setUp() {
+        BenchmarkVirtualFile root = BenchmarkVirtualFile.root("project");
+        BenchmarkVirtualFile api = root.directory("packages").directory("api");
+        BenchmarkVirtualFile apiEnv = api.file(".env");
+        BenchmarkVirtualFile nodeModules = root.directory("node_modules");
+        List<BenchmarkVirtualFile> parents = new ArrayList<>();
+        List<BenchmarkVirtualFile> files = new ArrayList<>();
+        for (int p = 0; p < PACKAGES; p++) {
+            BenchmarkVirtualFile parent = nodeModules.directory("package" + p).directory("lib");
+            parents.add(parent);
+            for (int f = 0; f < FILES_PER_PACKAGE; f++) {
+                files.add(parent.file("module" + f + ".js"));
+            }
+        }
+
+        batch = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            if (i % 1000 == 0) {
+                batch.add(new VFileCreateEvent(null, api, ".env.example", false, null, null, null));
+            } else if (i % 2 == 0) {
+                batch.add(new VFileCreateEvent(null, parents.get(i % parents.size()),
+                        "module" + (i % FILES_PER_PACKAGE) + ".js", false, null, null, null));
+            } else {
+                batch.add(new VFileDeleteEvent(null, files.get(i % files.size())));
+            }
+        }
+
+        EnvEventFilter filter = new EnvEventFilter(Set.of(".env", ".env.example"), List.of(apiEnv),
+                List.of(root), List.of());
+        listener = new EnvFileWatcher.BatchListener(() -> filter, new MetricsService(), relevantEvents -> {
+        });
+    }
+
+    @Benchmark
+    public AsyncFileListener.ChangeApplier prepareChange() {
+        return listener.prepareChange(batch);
+    }
+}
@@ -0,0 +1,117 @@
+package com.ringlesoft.visualenv.benchmark;
+
+import com.ringlesoft.visualenv.utils.EnvDocumentIndex;
+import com.ringlesoft.visualenv.utils.EnvEditPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks for writing variables into .env content.
+ * EnvFileManager.setEnvVariableInternal indexes the document, plans the edit and applies it;
+ * the same steps are measured here on plain text, since a Document needs a running platform.
+ * Batches are compared with the per-key strategy used before batch writes, which copied the
+ * document text and searched it with a regex once per key. The write command and save that
+ * strategy ran per key are not measured, so the gap shown here is a lower bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvWritingBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int lines;
+
+    // Imports of whole files write thousands of keys at once
+    @Param({"100", "1000", "2000"})
+    public int batchSize;
+
+    private String content;
+    private String middleKey;
+    private Map<String, String> batch;
+
+    @Setup
+    public void setUp() {
+        content = EnvContentGenerator.generate(lines);
+        middleKey = EnvContentGenerator.key(lines / 2 / 20 * 20 + 1);
+
+        // Half updates of existing keys, half new keys
+        batch = new LinkedHashMap<>();
+        for (int i = 0; i < batchSize; i++) {
+            // One of the six assignments opening the section at this point of the file
+            int line = (int) ((long) lines * i / batchSize) / 20 * 20 + 1 + i / 2 % 6;
+            batch.put(i % 2 == 0 ? EnvContentGenerator.key(line) : "NEW_KEY_" + i, "new value " + i);
+        }
+    }
+
+    /**
+     * Update one existing key in the middle of the file
+     */
+    @Benchmark
+    public String setEnvVariable() {
+        EnvDocumentIndex index = new EnvDocumentIndex(content, 0);
+        return EnvEditPlanner.plan(index, Map.of(middleKey, "updated value")).applyTo(content);
+    }
+
+    /**
+     * Append one new key
+     */
+    @Benchmark
+    public String addEnvVariable() {
+        EnvDocumentIndex index = new EnvDocumentIndex(content, 0);
+        return EnvEditPlanner.plan(index, Map.of("BENCHMARK_NEW_KEY", "value")).applyTo(content);
+    }
+
+    /**
+     * Write a batch of updates and appends as one edit
+     */
+    @Benchmark
+    public String setMultipleEnvVariables() {
+        EnvDocumentIndex index = new EnvDocumentIndex(content, 0);
+        return EnvEditPlanner.plan(index, batch).applyTo(content);
+    }
+
+    /**
+     * Write the same batch the way it was written before batch writes: one edit per key, each copying
+     * the whole text and finding the key's line with a regex
+     */
+    @Benchmark
+    public String setEnvVariablesOneByOne() {
+        StringBuilder document = new StringBuilder(content);
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            if (value.matches(".*[\\s#'`${}()].*")) {
+                value = "\"" + value + "\"";
+            }
+            String documentText = document.toString();
+            String newLine = key + "=" + value;
+            Matcher matcher = Pattern.compile("^" + Pattern.quote(key) + "=.*$", Pattern.MULTILINE).matcher(documentText);
+            if (matcher.find()) {
+                document.replace(matcher.start(), matcher.end(), newLine);
+            } else {
+                if (!documentText.isEmpty() && !documentText.endsWith("\n")) {
+                    document.append('\n');
+                }
+                document.append(newLine).append('\n');
+            }
+        }
+        return document.toString();
+    }
+}
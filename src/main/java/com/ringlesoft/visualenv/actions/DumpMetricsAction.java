@@ -0,0 +1,49 @@
+package com.ringlesoft.visualenv.actions;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+import com.ringlesoft.visualenv.services.MetricsService;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * Write the Visual Env metrics of the current project to the IDE log and the clipboard
+ */
+public class DumpMetricsAction extends AnAction {
+    private static final Logger LOG = Logger.getInstance(DumpMetricsAction.class);
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        String dump = MetricsService.getInstance(project).dump();
+        LOG.info(dump);
+        CopyPasteManager.getInstance().setContents(new StringSelection(dump));
+        Notifications.Bus.notify(new Notification(
+                "Visual Env Notification Group",
+                "Visual Env metrics",
+                "Metrics were written to the IDE log and copied to the clipboard",
+                NotificationType.INFORMATION
+        ), project);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
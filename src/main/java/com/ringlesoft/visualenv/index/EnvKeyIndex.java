@@ -0,0 +1,219 @@
+package com.ringlesoft.visualenv.index;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.ringlesoft.visualenv.utils.EnvLexer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Persistent index from env keys to where they are defined: for every env file, each key maps to
+ * its definitions with their line start offset, line number and a hash of the value.
+ * The platform keeps it up to date as files change and across restarts, so cross-file questions
+ * like "which files define REDIS_HOST" are answered without parsing the files again.
+ * Queries need smart mode; callers check {@link com.intellij.openapi.project.DumbService} first.
+ */
+public final class EnvKeyIndex extends FileBasedIndexExtension<String, List<EnvKeyIndex.Definition>> {
+    public static final ID<String, List<Definition>> NAME = ID.create("com.ringlesoft.visualenv.EnvKeyIndex");
+    private static final String BASE_NAME = ".env";
+
+    /**
+     * One definition of a key in a file
+     */
+    public static final class Definition {
+        private final int offset;
+        private final int line;
+        private final int valueHash;
+
+        public Definition(int offset, int line, int valueHash) {
+            this.offset = offset;
+            this.line = line;
+            this.valueHash = valueHash;
+        }
+
+        /**
+         * @return Offset of the start of the defining line
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return Zero-based line of the definition
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return {@link String#hashCode()} of the unquoted value, so values can be compared without reading files
+         */
+        public int getValueHash() {
+            return valueHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Definition other && offset == other.offset && line == other.line && valueHash == other.valueHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return (offset * 31 + line) * 31 + valueHash;
+        }
+    }
+
+    @Override
+    public @NotNull ID<String, List<Definition>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<Definition>, FileContent> getIndexer() {
+        return inputData -> index(inputData.getContentAsText());
+    }
+
+    /**
+     * Collect the definitions of every key in env file content, in file order
+     */
+    static Map<String, List<Definition>> index(@NotNull CharSequence content) {
+        Map<String, List<Definition>> result = new HashMap<>();
+        EnvLexer lexer = new EnvLexer(content);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.isEntry()) {
+                String value = token.getValue();
+                result.computeIfAbsent(token.getKey(), k -> new ArrayList<>(1)).add(
+                        new Definition(token.getStartOffset(), token.getLine(), value != null ? value.hashCode() : 0));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<Definition>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<Definition> definitions) throws IOException {
+                DataInputOutputUtil.writeINT(out, definitions.size());
+                for (Definition definition : definitions) {
+                    DataInputOutputUtil.writeINT(out, definition.offset);
+                    DataInputOutputUtil.writeINT(out, definition.line);
+                    out.writeInt(definition.valueHash);
+                }
+            }
+
+            @Override
+            public List<Definition> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<Definition> definitions = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    definitions.add(new Definition(DataInputOutputUtil.readINT(in), DataInputOutputUtil.readINT(in), in.readInt()));
+                }
+                return definitions;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return file -> !file.isDirectory() && isEnvFileName(file.getName());
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * @return true for ".env" and ".env.*" names, the files this index covers
+     */
+    public static boolean isEnvFileName(@NotNull String name) {
+        return name.equals(BASE_NAME) || (name.startsWith(BASE_NAME + ".") && name.length() > BASE_NAME.length() + 1);
+    }
+
+    /**
+     * @return The project files defining a key
+     */
+    public static Collection<VirtualFile> getFilesDefining(@NotNull Project project, @NotNull String key) {
+        return FileBasedIndex.getInstance().getContainingFiles(NAME, key, GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * @return The definitions of a key by file, across the project
+     */
+    public static Map<VirtualFile, List<Definition>> getDefinitions(@NotNull Project project, @NotNull String key) {
+        Map<VirtualFile, List<Definition>> result = new LinkedHashMap<>();
+        FileBasedIndex.getInstance().processValues(NAME, key, null, (file, definitions) -> {
+            result.put(file, definitions);
+            return true;
+        }, GlobalSearchScope.projectScope(project));
+        return result;
+    }
+
+    /**
+     * @return true if the file defines the key
+     */
+    public static boolean isDefinedIn(@NotNull Project project, @NotNull String key, @NotNull VirtualFile file) {
+        return !FileBasedIndex.getInstance().getValues(NAME, key, GlobalSearchScope.fileScope(project, file)).isEmpty();
+    }
+
+    /**
+     * @return The keys defined in any env file of the project, sorted
+     */
+    public static Set<String> getDefinedKeys(@NotNull Project project) {
+        Set<String> keys = new TreeSet<>();
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        FileBasedIndex.getInstance().processAllKeys(NAME, key -> {
+            keys.add(key);
+            return true;
+        }, scope, null);
+        // The key list may still hold keys that were removed from every file
+        keys.removeIf(key -> getFilesDefining(project, key).isEmpty());
+        return keys;
+    }
+
+    /**
+     * @return The keys a file defines more than once, with all their definitions
+     */
+    public static Map<String, List<Definition>> getDuplicateKeys(@NotNull Project project, @NotNull VirtualFile file) {
+        Map<String, List<Definition>> duplicates = new LinkedHashMap<>();
+        FileBasedIndex.getInstance().getFileData(NAME, file, project).forEach((key, definitions) -> {
+            if (definitions.size() > 1) {
+                duplicates.put(key, definitions);
+            }
+        });
+        return duplicates;
+    }
+}
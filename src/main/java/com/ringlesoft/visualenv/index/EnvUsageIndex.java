@@ -0,0 +1,184 @@
+package com.ringlesoft.visualenv.index;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent index of the environment variables read by PHP, JavaScript/TypeScript and Python sources.
+ * Each variable name maps to the offsets of the name in every file that reads it, recognised from the
+ * usual accessors: {@code env('X')} and {@code getenv('X')}, {@code $_ENV['X']}, {@code process.env.X},
+ * {@code import.meta.env.X}, {@code os.environ['X']}, {@code os.environ.get('X')} and django-environ's {@code env.str('X')}.
+ * Only literal names are recognised. The platform re-indexes a file when it changes, so usages
+ * are never collected by scanning the project.
+ */
+public final class EnvUsageIndex extends FileBasedIndexExtension<String, List<Integer>> {
+    public static final ID<String, List<Integer>> NAME = ID.create("com.ringlesoft.visualenv.EnvUsageIndex");
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of("php", "js", "jsx", "mjs", "cjs", "ts", "tsx", "vue", "py");
+    private static final String KEY = "([A-Za-z_][A-Za-z0-9_]*)";
+    // Each alternative captures the name in its own group
+    private static final Pattern USAGE = Pattern.compile(
+            "(?:\\benv|\\bgetenv|\\benviron\\.get|\\benv\\.(?:str|bool|int|float|list|dict|json|url|db_url|path))\\(\\s*['\"]" + KEY + "['\"]"
+                    + "|\\bprocess\\.env\\." + KEY
+                    + "|\\bimport\\.meta\\.env\\." + KEY
+                    + "|(?:\\bprocess\\.env|\\$_ENV|\\benviron)\\[\\s*['\"]" + KEY + "['\"]\\s*]");
+
+    @Override
+    public @NotNull ID<String, List<Integer>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<Integer>, FileContent> getIndexer() {
+        return inputData -> scan(inputData.getContentAsText());
+    }
+
+    /**
+     * Collect the offsets of the variable names read in source text
+     */
+    static Map<String, List<Integer>> scan(@NotNull CharSequence text) {
+        if (!mayReadEnvironment(text)) {
+            return Map.of();
+        }
+        Map<String, List<Integer>> result = new HashMap<>();
+        Matcher matcher = USAGE.matcher(text);
+        while (matcher.find()) {
+            for (int group = 1; group <= matcher.groupCount(); group++) {
+                if (matcher.start(group) >= 0) {
+                    result.computeIfAbsent(matcher.group(group), k -> new ArrayList<>(1)).add(matcher.start(group));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cheap check for "env" or "ENV" before running the pattern; most source files have neither
+     */
+    private static boolean mayReadEnvironment(CharSequence text) {
+        for (int i = 0, last = text.length() - 3; i <= last; i++) {
+            char c = text.charAt(i);
+            if ((c == 'e' && text.charAt(i + 1) == 'n' && text.charAt(i + 2) == 'v')
+                    || (c == 'E' && text.charAt(i + 1) == 'N' && text.charAt(i + 2) == 'V')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<Integer>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<Integer> offsets) throws IOException {
+                DataInputOutputUtil.writeINT(out, offsets.size());
+                int previous = 0;
+                // Offsets are ascending, so the deltas stay small
+                for (int offset : offsets) {
+                    DataInputOutputUtil.writeINT(out, offset - previous);
+                    previous = offset;
+                }
+            }
+
+            @Override
+            public List<Integer> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<Integer> offsets = new ArrayList<>(size);
+                int previous = 0;
+                for (int i = 0; i < size; i++) {
+                    previous += DataInputOutputUtil.readINT(in);
+                    offsets.add(previous);
+                }
+                return offsets;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return file -> !file.isDirectory() && isSourceFile(file);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * @return true for the PHP, JavaScript/TypeScript and Python files this index covers
+     */
+    public static boolean isSourceFile(@NotNull VirtualFile file) {
+        String extension = file.getExtension();
+        return extension != null && SOURCE_EXTENSIONS.contains(extension);
+    }
+
+    /**
+     * @return true if any project source reads the variable
+     */
+    public static boolean hasUsages(@NotNull Project project, @NotNull String key) {
+        // The processor stops at the first file, which makes processValues return false
+        return !FileBasedIndex.getInstance().processValues(NAME, key, null, (file, offsets) -> false,
+                GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * @return The offsets of the usages of a variable by file, across the project
+     */
+    public static Map<VirtualFile, List<Integer>> getUsages(@NotNull Project project, @NotNull String key) {
+        Map<VirtualFile, List<Integer>> result = new LinkedHashMap<>();
+        FileBasedIndex.getInstance().processValues(NAME, key, null, (file, offsets) -> {
+            result.put(file, offsets);
+            return true;
+        }, GlobalSearchScope.projectScope(project));
+        return result;
+    }
+
+    /**
+     * @return The names read by project sources, sorted
+     */
+    public static Set<String> getUsedKeys(@NotNull Project project) {
+        Set<String> keys = new TreeSet<>();
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        FileBasedIndex.getInstance().processAllKeys(NAME, key -> {
+            keys.add(key);
+            return true;
+        }, scope, null);
+        // The key list may still hold names whose last usage was removed
+        keys.removeIf(key -> !hasUsages(project, key));
+        return keys;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ringlesoft.visualenv.listeners;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.ringlesoft.visualenv.services.EnvFileService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listens for changes to the documents of tracked environment files and lets
+ * the {@link EnvFileService} re-lex only the lines touched by each change.
+ */
+public class EnvDocumentListener implements DocumentListener {
+    private final EnvFileService envFileService;
+
+    // Line range of the pending change, captured before the document is modified
+    private Document changingDocument;
+    private VirtualFile changingFile;
+    private int startLine;
+    private int oldEndLine;
+
+    public EnvDocumentListener(EnvFileService envFileService) {
+        this.envFileService = envFileService;
+    }
+
+    @Override
+    public void beforeDocumentChange(@NotNull DocumentEvent event) {
+        changingDocument = null;
+        Document document = event.getDocument();
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file == null || !envFileService.isTrackedEnvFile(file)) {
+            return;
+        }
+        changingDocument = document;
+        changingFile = file;
+        startLine = document.getLineNumber(event.getOffset());
+        oldEndLine = document.getLineNumber(event.getOffset() + event.getOldLength());
+    }
+
+    @Override
+    public void documentChanged(@NotNull DocumentEvent event) {
+        Document document = event.getDocument();
+        if (document != changingDocument) {
+            return;
+        }
+        changingDocument = null;
+
+        if (event.isWholeTextReplaced()) {
+            envFileService.reloadEnvFile(changingFile);
+            return;
+        }
+        int newEndLine = document.getLineNumber(event.getOffset() + event.getNewLength());
+        envFileService.applyDocumentChange(changingFile, document, startLine, oldEndLine, newEndLine);
+    }
+}
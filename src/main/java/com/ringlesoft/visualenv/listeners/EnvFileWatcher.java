@@ -1,25 +1,45 @@
 package com.ringlesoft.visualenv.listeners;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.AsyncFileListener;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.util.messages.MessageBusConnection;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+import com.ringlesoft.visualenv.services.EnvFileDiscoveryService;
 import com.ringlesoft.visualenv.services.EnvFileService;
+import com.ringlesoft.visualenv.services.MetricsService;
 import com.ringlesoft.visualenv.toolWindow.VisualEnvToolWindowFactory;
+import com.ringlesoft.visualenv.utils.EnvEventFilter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Follows creation, deletion, renames and moves of env files, and changes to their content made outside
+ * the editor, e.g. by scripts. Each event is applied to the file model right away, while changed content and
+ * renamed or moved files are parsed in a background read action; the tool window is told once per burst of events
+ * (e.g. a git checkout), through a merging queue.
+ */
 public class EnvFileWatcher {
+    private static final Logger LOG = Logger.getInstance(EnvFileWatcher.class);
+    // Milliseconds to wait for more events before updating the tool window
+    private static final int MERGE_DELAY = 300;
     private final Project project;
     private MessageBusConnection connection;
+    private MergingUpdateQueue updateQueue;
     private VisualEnvToolWindowFactory toolWindowFactory;
 
     public EnvFileWatcher(Project project, VisualEnvToolWindowFactory toolWindowFactory) {
@@ -29,86 +49,110 @@ public class EnvFileWatcher {
 
     public void startWatching() {
         connection = project.getMessageBus().connect();
+        updateQueue = new MergingUpdateQueue("Visual Env file changes", MERGE_DELAY, true,
+                MergingUpdateQueue.ANY_COMPONENT, connection);
 
-        AsyncFileListener listener = new AsyncFileListener() {
-            @Override
-            public @Nullable ChangeApplier prepareChange(@NotNull List<? extends @NotNull VFileEvent> events) {
-                List<VFileEvent> relevantEvents = new ArrayList<>();
-
-                for (VFileEvent event : events) {
-                    if (isRelevantEvent(event)) {
-                        relevantEvents.add(event);
-                    }
-                }
-
-                if (relevantEvents.isEmpty()) {
-                    return null;
-                }
-
-                return new ChangeApplier() {
-                    @Override
-                    public void afterVfsChange() {
-                        // This runs after the VFS change is applied
-                        for (VFileEvent event : relevantEvents) {
-                            handleEvent(event);
-                        }
-                    }
-                };
-            }
-        };
+        AsyncFileListener listener = new BatchListener(
+                () -> EnvFileDiscoveryService.getInstance(project).getEventFilter(),
+                MetricsService.getInstance(project),
+                relevantEvents -> relevantEvents.forEach(this::handleEvent));
 
         VirtualFileManager.getInstance().addAsyncFileListener(listener, connection);
     }
 
-    private boolean isRelevantEvent(VFileEvent event) {
+    private void handleEvent(VFileEvent event) {
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        boolean changed = false;
         if (event instanceof VFileCreateEvent createEvent) {
-            String fileName = createEvent.getChildName();
-            return fileName.startsWith(".env") && isInProject(createEvent);
+            VirtualFile file = createEvent.getFile();
+            if (file != null && envFileService.envFileCreated(file)) {
+                LOG.info("New .env file created: " + file.getPath());
+                changed = true;
+            }
         } else if (event instanceof VFileDeleteEvent deleteEvent) {
-            VirtualFile file = deleteEvent.getFile();
-            return file.getName().startsWith(".env") && isInProject(file);
+            if (envFileService.envFileDeleted(deleteEvent.getPath())) {
+                LOG.info(".env file deleted: " + deleteEvent.getPath());
+                changed = true;
+            }
+        } else if (event instanceof VFileContentChangeEvent contentChangeEvent) {
+            VirtualFile file = contentChangeEvent.getFile();
+            // Reading and diffing the file is left to a background read action, off the VFS write action
+            envFileService.queueEnvFileContentChanged(file, changedKeys -> {
+                if (!changedKeys.isEmpty()) {
+                    LOG.info(".env file changed: " + file.getPath() + " " + changedKeys);
+                }
+                // Moved lines change the snapshot too, so the shown file is reconciled either way
+                updateQueue.queue(Update.create(file, () -> toolWindowFactory.envFileContentChanged(file)));
+            });
+        } else if (event instanceof VFilePropertyChangeEvent propertyChangeEvent) {
+            if (envFileService.envFileMoved(propertyChangeEvent.getOldPath(), propertyChangeEvent.getFile())) {
+                LOG.info(".env file renamed: " + propertyChangeEvent.getOldPath());
+                changed = true;
+            }
+        } else if (event instanceof VFileMoveEvent moveEvent) {
+            if (envFileService.envFileMoved(moveEvent.getOldPath(), moveEvent.getFile())) {
+                LOG.info(".env file moved: " + moveEvent.getOldPath());
+                changed = true;
+            }
+        }
+        if (changed) {
+            // One update for all changes queued within the merge delay
+            updateQueue.queue(Update.create(this, () -> toolWindowFactory.envFilesChanged()));
         }
-        return false;
-    }
-
-    private boolean isInProject(VFileCreateEvent event) {
-        VirtualFile parent = event.getParent();
-        String projectPath = project.getBasePath();
-        return projectPath != null && parent.getPath().startsWith(projectPath);
-    }
-
-    private boolean isInProject(VirtualFile file) {
-        String projectPath = project.getBasePath();
-        return projectPath != null && file.getPath().startsWith(projectPath);
     }
 
-    private void handleEvent(VFileEvent event) {
-        if (event instanceof VFileCreateEvent createEvent) {
-            handleFileCreated(createEvent);
-        } else if (event instanceof VFileDeleteEvent deleteEvent) {
-            handleFileDeleted(deleteEvent.getFile());
+    /**
+     * Picks the events concerning env files from each batch in prepareChange, which runs in a background
+     * read action, and hands them to the handler once the VFS change is applied.
+     * Needs no project of its own, so benchmarks can replay whole batches through it.
+     */
+    public static final class BatchListener implements AsyncFileListener {
+        private final Supplier<EnvEventFilter> filters;
+        private final MetricsService metrics;
+        private final Consumer<List<VFileEvent>> handler;
+
+        /**
+         * @param filters Supplies the filter for a batch; called once per batch in a read action
+         * @param metrics Where the filtering and applying times and the event counts are recorded
+         * @param handler Handles the relevant events of a batch after the VFS change, on the EDT
+         */
+        public BatchListener(@NotNull Supplier<EnvEventFilter> filters, @NotNull MetricsService metrics,
+                             @NotNull Consumer<List<VFileEvent>> handler) {
+            this.filters = filters;
+            this.metrics = metrics;
+            this.handler = handler;
         }
-    }
 
-    private void handleFileCreated(VFileCreateEvent event) {
-        String fileName = event.getChildName();
-        System.out.println("New .env file created: " + fileName);
+        @Override
+        public @Nullable ChangeApplier prepareChange(@NotNull List<? extends @NotNull VFileEvent> events) {
+            List<VFileEvent> relevantEvents = new ArrayList<>();
 
-        // Update your UI on the EDT
-        SwingUtilities.invokeLater(() -> {
-            EnvFileService envFileService = project.getService(EnvFileService.class);
-            envFileService.rescanEnvFiles();
-            toolWindowFactory.updateUI();
-        });
-    }
+            try (MetricsService.Timer ignored = metrics.startTimer(MetricsService.VFS_EVENTS_FILTER)) {
+                // One filter for the whole batch; it rejects most events on their name alone
+                EnvEventFilter filter = filters.get();
+                for (VFileEvent event : events) {
+                    if (filter.isRelevant(event)) {
+                        relevantEvents.add(event);
+                    }
+                }
+            }
+            metrics.increment(MetricsService.VFS_EVENTS_SEEN, events.size());
 
-    private void handleFileDeleted(VirtualFile file) {
-        System.out.println(".env file deleted: " + file.getName());
-        SwingUtilities.invokeLater(() -> {
-            EnvFileService envFileService = project.getService(EnvFileService.class);
-            envFileService.rescanEnvFiles();
-            toolWindowFactory.updateUI();
-        });
+            if (relevantEvents.isEmpty()) {
+                return null;
+            }
+            metrics.increment(MetricsService.VFS_EVENTS_RELEVANT, relevantEvents.size());
+
+            return new ChangeApplier() {
+                @Override
+                public void afterVfsChange() {
+                    // This runs after the VFS change is applied
+                    try (MetricsService.Timer ignored = metrics.startTimer(MetricsService.VFS_EVENTS_APPLY)) {
+                        handler.accept(relevantEvents);
+                    }
+                }
+            };
+        }
     }
 
     public void stopWatching() {
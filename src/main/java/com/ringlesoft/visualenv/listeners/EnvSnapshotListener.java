@@ -0,0 +1,22 @@
+package com.ringlesoft.visualenv.listeners;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.messages.Topic;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Notified on the project message bus whenever the {@link com.ringlesoft.visualenv.services.EnvFileService}
+ * caches a new snapshot of an environment file, after a full parse or after patching a document change.
+ * Events can arrive on any thread and for every keystroke, so listeners should only schedule work.
+ */
+public interface EnvSnapshotListener {
+    @Topic.ProjectLevel
+    Topic<EnvSnapshotListener> TOPIC = new Topic<>(EnvSnapshotListener.class, Topic.BroadcastDirection.NONE);
+
+    /**
+     * @param file     The file whose variables changed
+     * @param snapshot The snapshot now cached for the file
+     */
+    void snapshotChanged(@NotNull VirtualFile file, @NotNull EnvFileSnapshot snapshot);
+}
@@ -114,9 +114,9 @@ public class FileSaveListener {
             String currentPath = envEditorTab.getSelectedFilePath();
             if (currentPath != null && savedFile.getPath().equals(currentPath)) {
                 envEditorTab.updateFromLocalChanges(savedFile);
-            } else {
-                // Otherwise, just reload the file in the service's cache
-                envFileService.parseEnvFile(savedFile);
+            } else if (!envFileService.isTrackedEnvFile(savedFile)) {
+                // Otherwise, just load the file into the service's cache
+                envFileService.reloadEnvFile(savedFile);
             }
         });
     }
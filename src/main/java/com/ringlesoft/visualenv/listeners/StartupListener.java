@@ -0,0 +1,19 @@
+package com.ringlesoft.visualenv.listeners;
+
+import com.intellij.util.messages.Topic;
+import com.ringlesoft.visualenv.services.StartupService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Notified on the project message bus as the {@link StartupService} completes each stage of
+ * bringing up a project's env files. Events arrive on the EDT, in stage order.
+ */
+public interface StartupListener {
+    @Topic.ProjectLevel
+    Topic<StartupListener> TOPIC = new Topic<>(StartupListener.class, Topic.BroadcastDirection.NONE);
+
+    /**
+     * @param stage The stage that just completed; all earlier stages have completed too
+     */
+    void stageCompleted(@NotNull StartupService.Stage stage);
+}
@@ -0,0 +1,194 @@
+package com.ringlesoft.visualenv.model;
+
+import com.ringlesoft.visualenv.utils.PersistentMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The variables in effect for one mode, merged from layered environment files.
+ * Layers are ordered from lowest to highest precedence, e.g. ".env", ".env.local", ".env.production",
+ * ".env.production.local", and for every name the value of the highest layer defining it wins.
+ * Instances are immutable and built on {@link PersistentMap}s: replacing the variables of one layer
+ * only touches the names whose value changed in that layer, and the new view shares the rest with the old one.
+ */
+public final class EffectiveEnvironment {
+    private final String mode;
+    private final List<String> layerNames;
+    private final List<PersistentMap<String, EnvVariable>> layers;
+    private final PersistentMap<String, Entry> effective;
+
+    /**
+     * The winning definition of a variable
+     */
+    public static final class Entry {
+        private final EnvVariable variable;
+        private final int layer;
+
+        private Entry(EnvVariable variable, int layer) {
+            this.variable = variable;
+            this.layer = layer;
+        }
+
+        public EnvVariable getVariable() {
+            return variable;
+        }
+
+        /**
+         * @return Index of the layer the value comes from
+         */
+        public int getLayer() {
+            return layer;
+        }
+    }
+
+    private EffectiveEnvironment(String mode, List<String> layerNames,
+                                 List<PersistentMap<String, EnvVariable>> layers, PersistentMap<String, Entry> effective) {
+        this.mode = mode;
+        this.layerNames = layerNames;
+        this.layers = layers;
+        this.effective = effective;
+    }
+
+    /**
+     * Create a view without variables
+     *
+     * @param mode       Name of the mode, e.g. "production"
+     * @param layerNames Names of the layers, lowest precedence first
+     */
+    public static EffectiveEnvironment empty(@NotNull String mode, @NotNull List<String> layerNames) {
+        List<PersistentMap<String, EnvVariable>> layers = new ArrayList<>(layerNames.size());
+        for (int i = 0; i < layerNames.size(); i++) {
+            layers.add(PersistentMap.empty());
+        }
+        return new EffectiveEnvironment(mode, List.copyOf(layerNames), Collections.unmodifiableList(layers),
+                PersistentMap.empty());
+    }
+
+    /**
+     * Derive the view in which one layer holds the given variables
+     *
+     * @param layer     Index of the layer
+     * @param variables The layer's variables in file order; the first definition of a name counts
+     * @return The updated view, or this view if no value changed
+     */
+    public EffectiveEnvironment withLayer(int layer, @NotNull List<EnvVariable> variables) {
+        PersistentMap<String, EnvVariable> oldLayer = layers.get(layer);
+        PersistentMap<String, EnvVariable> newLayer = oldLayer;
+        Set<String> seen = new HashSet<>(variables.size() * 4 / 3 + 1);
+        List<String> changed = new ArrayList<>();
+        for (EnvVariable variable : variables) {
+            String name = variable.getName();
+            if (!seen.add(name)) {
+                continue;
+            }
+            EnvVariable current = oldLayer.get(name);
+            if (current == null || !sameValue(current, variable)) {
+                newLayer = newLayer.with(name, variable);
+                changed.add(name);
+            }
+        }
+        if (seen.size() != oldLayer.size() || !changed.isEmpty()) {
+            List<String> removed = new ArrayList<>();
+            oldLayer.forEach((name, variable) -> {
+                if (!seen.contains(name)) {
+                    removed.add(name);
+                }
+            });
+            for (String name : removed) {
+                newLayer = newLayer.without(name);
+                changed.add(name);
+            }
+        }
+        if (changed.isEmpty()) {
+            return this;
+        }
+
+        List<PersistentMap<String, EnvVariable>> newLayers = new ArrayList<>(layers);
+        newLayers.set(layer, newLayer);
+        PersistentMap<String, Entry> newEffective = effective;
+        for (String name : changed) {
+            Entry winner = findWinner(newLayers, name);
+            if (winner == null) {
+                newEffective = newEffective.without(name);
+                continue;
+            }
+            Entry current = newEffective.get(name);
+            // A change in a shadowed layer leaves the winning entry as it is
+            if (current == null || current.variable != winner.variable || current.layer != winner.layer) {
+                newEffective = newEffective.with(name, winner);
+            }
+        }
+        return new EffectiveEnvironment(mode, layerNames, Collections.unmodifiableList(newLayers), newEffective);
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Names of the layers, lowest precedence first
+     */
+    public List<String> getLayerNames() {
+        return layerNames;
+    }
+
+    /**
+     * @return Number of variables in effect
+     */
+    public int size() {
+        return effective.size();
+    }
+
+    /**
+     * @return The winning definition of a variable, or null if no layer defines it
+     */
+    public @Nullable Entry get(@NotNull String name) {
+        return effective.get(name);
+    }
+
+    /**
+     * @return Indexes of the layers defining a variable, lowest precedence first; the last one wins
+     */
+    public List<Integer> getDefiningLayers(@NotNull String name) {
+        List<Integer> defining = new ArrayList<>(2);
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).containsKey(name)) {
+                defining.add(i);
+            }
+        }
+        return defining;
+    }
+
+    /**
+     * @return All variables in effect, sorted by name
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(effective.size());
+        effective.forEach((name, entry) -> entries.add(entry));
+        entries.sort(Comparator.comparing(entry -> entry.getVariable().getName()));
+        return entries;
+    }
+
+    private static Entry findWinner(List<PersistentMap<String, EnvVariable>> layers, String name) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            EnvVariable variable = layers.get(i).get(name);
+            if (variable != null) {
+                return new Entry(variable, i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameValue(EnvVariable a, EnvVariable b) {
+        return a == b || (Objects.equals(a.getRawValue(), b.getRawValue()) && a.isSecret() == b.isSecret()
+                && Objects.equals(a.getSource(), b.getSource()));
+    }
+}
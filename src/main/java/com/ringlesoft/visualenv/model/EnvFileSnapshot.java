@@ -0,0 +1,311 @@
+package com.ringlesoft.visualenv.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable view of the variables parsed from one environment file.
+ * Every snapshot carries a unique, increasing version so readers can tell which of two
+ * snapshots is newer, and the modification stamp of the content it was parsed from so
+ * that results of a slow parse never overwrite those of a newer edit.
+ * Snapshots are safe to share between threads without locking.
+ */
+public final class EnvFileSnapshot {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final int[] NO_SPANS = new int[0];
+
+    /**
+     * Last line of the span of an entry whose quote is not closed: a quote typed on any later line would
+     * turn it into a multi-line value, so the span runs to the end of the file
+     */
+    public static final int OPEN_END = Integer.MAX_VALUE;
+
+    private final long version;
+    private final long contentStamp;
+    private final List<EnvVariable> variables;
+    private final int[] lines;
+    // First and last line of each entry whose quoted value spans several lines, in file order
+    private final int[] multiLineSpans;
+    // Built on first use; racing builders produce equal indexes, so no locking is needed
+    private volatile EnvSearchIndex searchIndex;
+
+    /**
+     * Result of diffing a snapshot against a fresh parse of rewritten content
+     */
+    public static final class ContentChange {
+        private final EnvFileSnapshot snapshot;
+        private final Set<String> changedKeys;
+        private final boolean entriesChanged;
+
+        ContentChange(EnvFileSnapshot snapshot, Set<String> changedKeys, boolean entriesChanged) {
+            this.snapshot = snapshot;
+            this.changedKeys = changedKeys;
+            this.entriesChanged = entriesChanged;
+        }
+
+        /**
+         * @return The snapshot of the new content, sharing the unchanged variables with the old one
+         */
+        public EnvFileSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * @return Keys added, removed or given another value, sorted
+         */
+        public Set<String> getChangedKeys() {
+            return changedKeys;
+        }
+
+        /**
+         * @return true if every entry is unchanged and on the same line
+         */
+        public boolean isEmpty() {
+            return !entriesChanged;
+        }
+    }
+
+    /**
+     * Create a snapshot
+     *
+     * @param variables    Variables in file order
+     * @param lines        Zero-based line number of each variable
+     * @param contentStamp Modification stamp of the parsed content
+     */
+    public EnvFileSnapshot(List<EnvVariable> variables, int[] lines, long contentStamp) {
+        this(variables, lines, contentStamp, NO_SPANS);
+    }
+
+    /**
+     * Create a snapshot
+     *
+     * @param variables       Variables in file order
+     * @param lines           Zero-based line number of each variable
+     * @param contentStamp    Modification stamp of the parsed content
+     * @param multiLineSpans  First and last line of each variable whose quoted value spans several lines,
+     *                        as consecutive pairs in file order; {@link #OPEN_END} for an unclosed quote
+     */
+    public EnvFileSnapshot(List<EnvVariable> variables, int[] lines, long contentStamp, int[] multiLineSpans) {
+        this(new ArrayList<>(variables), lines.clone(), contentStamp, multiLineSpans.clone());
+    }
+
+    // Takes ownership of the given list and arrays; only reachable through the copies above and adopt
+    private EnvFileSnapshot(ArrayList<EnvVariable> variables, int[] lines, long contentStamp, int[] multiLineSpans) {
+        if (variables.size() != lines.length) {
+            throw new IllegalArgumentException("Each variable needs a line number");
+        }
+        this.version = VERSIONS.incrementAndGet();
+        this.contentStamp = contentStamp;
+        this.variables = Collections.unmodifiableList(variables);
+        this.lines = lines;
+        this.multiLineSpans = multiLineSpans;
+    }
+
+    /**
+     * Create a snapshot from a list and arrays built for it, without copying them
+     */
+    private static EnvFileSnapshot adopt(ArrayList<EnvVariable> variables, int[] lines, long contentStamp,
+                                         int[] multiLineSpans) {
+        return new EnvFileSnapshot(variables, lines, contentStamp, multiLineSpans);
+    }
+
+    /**
+     * Create an empty snapshot, e.g. for a file that could not be read
+     */
+    public static EnvFileSnapshot empty(long contentStamp) {
+        return new EnvFileSnapshot(Collections.emptyList(), new int[0], contentStamp);
+    }
+
+    /**
+     * @return Unique version of this snapshot; newer snapshots have higher versions
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Modification stamp of the content this snapshot was parsed from
+     */
+    public long getContentStamp() {
+        return contentStamp;
+    }
+
+    /**
+     * @return The variables in file order (unmodifiable)
+     */
+    public List<EnvVariable> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return Zero-based line number of the variable at the given position
+     */
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    /**
+     * Whether a variable spans several lines, or has a quote that is not closed and may still be closed
+     * on a later line. Line numbers then only mark where variables start,
+     * so a change to a range of lines cannot be patched without knowing which variables overlap it.
+     */
+    public boolean hasMultiLineValues() {
+        return multiLineSpans.length > 0;
+    }
+
+    /**
+     * Whether a range of lines overlaps a variable spanning several lines.
+     * Changes to such a range cannot be patched with {@link #withReplacedLines}.
+     *
+     * @param startLine First line of the range
+     * @param endLine   Last line of the range
+     */
+    public boolean touchesMultiLineValue(int startLine, int endLine) {
+        for (int i = 0; i < multiLineSpans.length && multiLineSpans[i] <= endLine; i += 2) {
+            if (multiLineSpans[i + 1] >= startLine) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return variables.size();
+    }
+
+    /**
+     * @return The search index over this snapshot's variables; ids are positions in {@link #getVariables()}
+     */
+    public EnvSearchIndex getSearchIndex() {
+        EnvSearchIndex index = searchIndex;
+        if (index == null) {
+            index = new EnvSearchIndex(variables);
+            searchIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Find the position of the first variable on or after a line
+     */
+    public int indexAtOrAfterLine(int line) {
+        int index = Arrays.binarySearch(lines, line);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // Only one variable per line, so an exact match is the first one
+        return index;
+    }
+
+    /**
+     * Diff this snapshot line by line against a fresh parse of the file's new content, e.g. after a
+     * script rewrote the file. The entries at the start that are unchanged and on the same lines, and
+     * those at the end that are unchanged and shifted by the same number of lines, keep their variables;
+     * only the entries in between are taken from the parse.
+     *
+     * @param parsed Snapshot parsed from the new content
+     * @return The merged snapshot with the keys that changed
+     */
+    public ContentChange diff(EnvFileSnapshot parsed) {
+        int oldSize = lines.length;
+        int newSize = parsed.lines.length;
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && lines[prefix] == parsed.lines[prefix]
+                && sameEntry(variables.get(prefix), parsed.variables.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        int lineDelta = oldSize > prefix && newSize > prefix ? parsed.lines[newSize - 1] - lines[oldSize - 1] : 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && parsed.lines[newSize - 1 - suffix] - lines[oldSize - 1 - suffix] == lineDelta
+                && sameEntry(variables.get(oldSize - 1 - suffix), parsed.variables.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        // Keys in the changed range whose value differs; a key that only moved within the range is unchanged
+        Map<String, String> oldValues = new HashMap<>();
+        for (int i = prefix; i < oldSize - suffix; i++) {
+            oldValues.put(variables.get(i).getName(), variables.get(i).getRawValue());
+        }
+        Map<String, String> newValues = new HashMap<>();
+        for (int i = prefix; i < newSize - suffix; i++) {
+            newValues.put(parsed.variables.get(i).getName(), parsed.variables.get(i).getRawValue());
+        }
+        Set<String> changedKeys = new TreeSet<>();
+        for (Map.Entry<String, String> entry : oldValues.entrySet()) {
+            if (!Objects.equals(entry.getValue(), newValues.get(entry.getKey()))) {
+                changedKeys.add(entry.getKey());
+            }
+        }
+        for (String key : newValues.keySet()) {
+            if (!oldValues.containsKey(key)) {
+                changedKeys.add(key);
+            }
+        }
+
+        ArrayList<EnvVariable> merged = new ArrayList<>(newSize);
+        merged.addAll(variables.subList(0, prefix));
+        merged.addAll(parsed.variables.subList(prefix, newSize - suffix));
+        merged.addAll(variables.subList(oldSize - suffix, oldSize));
+        boolean entriesChanged = prefix < oldSize || prefix < newSize;
+        EnvFileSnapshot snapshot = adopt(merged, parsed.lines.clone(), parsed.contentStamp,
+                parsed.multiLineSpans.clone());
+        return new ContentChange(snapshot, Collections.unmodifiableSet(changedKeys), entriesChanged);
+    }
+
+    private static boolean sameEntry(EnvVariable a, EnvVariable b) {
+        return a.getName().equals(b.getName()) && Objects.equals(a.getRawValue(), b.getRawValue());
+    }
+
+    /**
+     * Derive a new snapshot in which a range of lines has been replaced.
+     * The range must not touch a variable spanning several lines, see {@link #touchesMultiLineValue}.
+     *
+     * @param startLine    First replaced line
+     * @param oldEndLine   Last replaced line, before the change
+     * @param newEndLine   Last replaced line, after the change
+     * @param added        Variables parsed from the replacement lines
+     * @param addedLines   Line numbers of the added variables
+     * @param contentStamp Modification stamp of the changed content
+     * @return The patched snapshot
+     */
+    public EnvFileSnapshot withReplacedLines(int startLine, int oldEndLine, int newEndLine,
+                                             List<EnvVariable> added, int[] addedLines, long contentStamp) {
+        int from = indexAtOrAfterLine(startLine);
+        int to = indexAtOrAfterLine(oldEndLine + 1);
+        int lineDelta = newEndLine - oldEndLine;
+        int tail = lines.length - to;
+
+        ArrayList<EnvVariable> newVariables = new ArrayList<>(from + added.size() + tail);
+        newVariables.addAll(variables.subList(0, from));
+        newVariables.addAll(added);
+        newVariables.addAll(variables.subList(to, variables.size()));
+
+        int[] newLines = new int[from + addedLines.length + tail];
+        System.arraycopy(lines, 0, newLines, 0, from);
+        System.arraycopy(addedLines, 0, newLines, from, addedLines.length);
+        for (int i = 0; i < tail; i++) {
+            newLines[from + addedLines.length + i] = lines[to + i] + lineDelta;
+        }
+
+        // Spans before the range stay, the ones after it move with their lines
+        int[] newSpans = multiLineSpans.clone();
+        for (int i = 0; i < newSpans.length; i += 2) {
+            if (newSpans[i] > oldEndLine) {
+                newSpans[i] += lineDelta;
+                if (newSpans[i + 1] != OPEN_END) {
+                    newSpans[i + 1] += lineDelta;
+                }
+            }
+        }
+        return adopt(newVariables, newLines, contentStamp, newSpans);
+    }
+}
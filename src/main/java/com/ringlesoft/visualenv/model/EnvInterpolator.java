@@ -0,0 +1,309 @@
+package com.ringlesoft.visualenv.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves "${NAME}" and "${NAME:-default}" references between the variables of one environment file.
+ * The references form a dependency graph that is kept together with its reverse edges. Resolved values
+ * are memoized, and when the variables change only the changed variables and the ones depending on them,
+ * directly or transitively, are resolved again. Variables whose references form a cycle are reported
+ * as such and keep their written value. "$(...)" command substitutions are never run and stay as written.
+ * All methods are thread-safe.
+ */
+public final class EnvInterpolator {
+    private final Map<String, Node> nodes = new HashMap<>();
+    // Names of the variables referencing a name, including names that are not defined
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private long snapshotVersion = -1;
+
+    /**
+     * The resolved value of a variable
+     */
+    public static final class Resolution {
+        private final String value;
+        private final boolean cyclic;
+        private final boolean usesSecret;
+        private final List<String> missing;
+
+        private Resolution(String value, boolean cyclic, boolean usesSecret, List<String> missing) {
+            this.value = value;
+            this.cyclic = cyclic;
+            this.usesSecret = usesSecret;
+            this.missing = missing;
+        }
+
+        /**
+         * @return The value with all resolvable references replaced; references to variables in a cycle stay as written
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return Whether the variable is part of a reference cycle, in which case its value is the written one
+         */
+        public boolean isCyclic() {
+            return cyclic;
+        }
+
+        /**
+         * @return Whether the variable is secret or the value includes a secret variable
+         */
+        public boolean usesSecret() {
+            return usesSecret;
+        }
+
+        /**
+         * @return Referenced names that are not defined, in order of first use; they resolve to their default or ""
+         */
+        public List<String> getMissingReferences() {
+            return missing;
+        }
+    }
+
+    /**
+     * One "${...}" occurrence in a value
+     */
+    private static final class Reference {
+        final int start;
+        final int end;
+        final String name;
+        final String defaultValue;
+
+        Reference(int start, int end, String name, String defaultValue) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    private static final class Node {
+        final String rawValue;
+        final boolean secret;
+        final List<Reference> references;
+        Resolution resolution;
+
+        Node(String rawValue, boolean secret) {
+            this.rawValue = rawValue;
+            this.secret = secret;
+            this.references = parseReferences(rawValue);
+        }
+    }
+
+    /**
+     * Bring the graph in line with a snapshot. Only variables whose value changed, appeared or disappeared
+     * are parsed again, and only their memoized values and those of their dependents are dropped.
+     *
+     * @param snapshot The latest snapshot of the file
+     */
+    public synchronized void update(@NotNull EnvFileSnapshot snapshot) {
+        // A reader holding an older snapshot must not roll the graph back
+        if (snapshot.getVersion() <= snapshotVersion) {
+            return;
+        }
+        snapshotVersion = snapshot.getVersion();
+
+        // The first definition of a name wins, as in the document index
+        Map<String, EnvVariable> latest = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        for (EnvVariable variable : snapshot.getVariables()) {
+            latest.putIfAbsent(variable.getName(), variable);
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (String name : new ArrayList<>(nodes.keySet())) {
+            if (!latest.containsKey(name)) {
+                unlink(name, nodes.remove(name));
+                changed.add(name);
+            }
+        }
+        for (EnvVariable variable : latest.values()) {
+            String name = variable.getName();
+            String rawValue = variable.getRawValue() != null ? variable.getRawValue() : "";
+            Node current = nodes.get(name);
+            if (current != null && current.rawValue.equals(rawValue) && current.secret == variable.isSecret()) {
+                continue;
+            }
+            if (current != null) {
+                unlink(name, current);
+            }
+            Node node = new Node(rawValue, variable.isSecret());
+            nodes.put(name, node);
+            for (Reference reference : node.references) {
+                dependents.computeIfAbsent(reference.name, key -> new HashSet<>()).add(name);
+            }
+            changed.add(name);
+        }
+        invalidate(changed);
+    }
+
+    /**
+     * Resolve the value of a variable, reusing memoized values of the variables it depends on
+     *
+     * @param name The variable name
+     * @return The resolution, or null if the variable is not defined
+     */
+    public synchronized @Nullable Resolution resolve(@NotNull String name) {
+        Node node = nodes.get(name);
+        return node == null ? null : resolve(name, node, new ArrayList<>());
+    }
+
+    /**
+     * @return Names referenced by the variable's value, in order of first use
+     */
+    public synchronized Set<String> getDependencies(@NotNull String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (Reference reference : node.references) {
+            names.add(reference.name);
+        }
+        return names;
+    }
+
+    /**
+     * @return Names of the variables whose values reference the given name directly
+     */
+    public synchronized Set<String> getDependents(@NotNull String name) {
+        Set<String> names = dependents.get(name);
+        return names == null ? Collections.emptySet() : new HashSet<>(names);
+    }
+
+    /**
+     * @return Whether a variable's resolved value is memoized; for tests and diagnostics
+     */
+    synchronized boolean isResolved(String name) {
+        Node node = nodes.get(name);
+        return node != null && node.resolution != null;
+    }
+
+    private Resolution resolve(String name, Node node, List<String> path) {
+        if (node.resolution != null) {
+            return node.resolution;
+        }
+        int cycleStart = path.indexOf(name);
+        if (cycleStart >= 0) {
+            for (String member : path.subList(cycleStart, path.size())) {
+                Node memberNode = nodes.get(member);
+                memberNode.resolution = new Resolution(memberNode.rawValue, true, memberNode.secret, List.of());
+            }
+            return node.resolution;
+        }
+        if (node.references.isEmpty()) {
+            node.resolution = new Resolution(node.rawValue, false, node.secret, List.of());
+            return node.resolution;
+        }
+
+        path.add(name);
+        StringBuilder value = new StringBuilder(node.rawValue.length() + 16);
+        boolean usesSecret = node.secret;
+        List<String> missing = new ArrayList<>(0);
+        int position = 0;
+        for (Reference reference : node.references) {
+            value.append(node.rawValue, position, reference.start);
+            position = reference.end;
+            Node target = nodes.get(reference.name);
+            if (target == null) {
+                if (!missing.contains(reference.name)) {
+                    missing.add(reference.name);
+                }
+                value.append(reference.defaultValue != null ? reference.defaultValue : "");
+                continue;
+            }
+            Resolution resolved = resolve(reference.name, target, path);
+            if (resolved.isCyclic()) {
+                value.append(node.rawValue, reference.start, reference.end);
+            } else {
+                value.append(resolved.getValue());
+                usesSecret |= resolved.usesSecret();
+            }
+        }
+        value.append(node.rawValue, position, node.rawValue.length());
+        path.remove(path.size() - 1);
+
+        // Resolving the references may have found this variable to be part of a cycle
+        if (node.resolution == null) {
+            node.resolution = new Resolution(value.toString(), false, usesSecret,
+                    missing.isEmpty() ? List.of() : Collections.unmodifiableList(missing));
+        }
+        return node.resolution;
+    }
+
+    private void unlink(String name, Node node) {
+        for (Reference reference : node.references) {
+            Set<String> names = dependents.get(reference.name);
+            if (names != null) {
+                names.remove(name);
+                if (names.isEmpty()) {
+                    dependents.remove(reference.name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the memoized values of the given variables and of everything depending on them
+     */
+    private void invalidate(Set<String> changed) {
+        Deque<String> queue = new ArrayDeque<>(changed);
+        Set<String> seen = new HashSet<>(changed);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            Node node = nodes.get(name);
+            if (node != null) {
+                node.resolution = null;
+            }
+            for (String dependent : dependents.getOrDefault(name, Collections.emptySet())) {
+                if (seen.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the "${NAME}" and "${NAME:-default}" references in a value; "\$" escapes a dollar sign
+     */
+    private static List<Reference> parseReferences(String value) {
+        List<Reference> references = null;
+        for (int i = 0; i < value.length() - 1; i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                i++;
+                continue;
+            }
+            if (c != '$' || value.charAt(i + 1) != '{') {
+                continue;
+            }
+            int close = value.indexOf('}', i + 2);
+            if (close < 0) {
+                break;
+            }
+            String body = value.substring(i + 2, close);
+            int separator = body.indexOf(":-");
+            String name = (separator >= 0 ? body.substring(0, separator) : body).trim();
+            if (!name.isEmpty()) {
+                if (references == null) {
+                    references = new ArrayList<>(2);
+                }
+                references.add(new Reference(i, close + 1, name, separator >= 0 ? body.substring(separator + 2) : null));
+            }
+            i = close;
+        }
+        return references == null ? List.of() : references;
+    }
+}
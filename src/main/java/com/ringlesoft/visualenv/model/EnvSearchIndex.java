@@ -0,0 +1,185 @@
+package com.ringlesoft.visualenv.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive substring search over the names and values of a list of variables.
+ * Every lowercased trigram of the names and displayed values (masked for secrets) is mapped
+ * to the ids of the variables containing it. A query of three or more characters only verifies
+ * the variables that contain all of its trigrams; shorter queries scan every variable.
+ * The index refers to the variables' own strings instead of keeping lowercased copies.
+ * Variable ids are positions in the indexed list.
+ */
+public final class EnvSearchIndex {
+    private static final int[] NO_IDS = new int[0];
+
+    private final String[] names;
+    private final String[] values;
+    private final Map<Long, int[]> postings;
+
+    /**
+     * Build an index over the given variables
+     *
+     * @param variables Variables in row order
+     */
+    public EnvSearchIndex(List<EnvVariable> variables) {
+        int size = variables.size();
+        names = new String[size];
+        values = new String[size];
+        Map<Long, int[]> building = new HashMap<>();
+        for (int id = 0; id < size; id++) {
+            EnvVariable variable = variables.get(id);
+            names[id] = variable.getName();
+            values[id] = variable.getValue();
+            addTrigrams(building, names[id], id);
+            addTrigrams(building, values[id], id);
+        }
+        // Trim the posting lists; the first slot of each list under construction holds its length
+        postings = new HashMap<>(building.size() * 4 / 3 + 1);
+        for (Map.Entry<Long, int[]> entry : building.entrySet()) {
+            int[] list = entry.getValue();
+            postings.put(entry.getKey(), Arrays.copyOfRange(list, 1, list[0] + 1));
+        }
+    }
+
+    /**
+     * @return Number of indexed variables
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Find the variables whose name or displayed value contains the query, ignoring case
+     *
+     * @param query The text to look for; an empty query matches everything
+     * @return The ids of the matching variables
+     */
+    public BitSet search(String query) {
+        String needle = toLowerCase(query);
+        BitSet result = new BitSet(names.length);
+        if (needle.isEmpty()) {
+            result.set(0, names.length);
+            return result;
+        }
+        if (needle.length() < 3) {
+            for (int id = 0; id < names.length; id++) {
+                if (matches(id, needle)) {
+                    result.set(id);
+                }
+            }
+            return result;
+        }
+        for (int id : candidates(needle)) {
+            if (matches(id, needle)) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(int id, String needle) {
+        return containsIgnoreCase(names[id], needle) || containsIgnoreCase(values[id], needle);
+    }
+
+    /**
+     * Substring check that lowercases the text one character at a time instead of copying it
+     *
+     * @param needle Lowercased text to look for
+     */
+    static boolean containsIgnoreCase(String text, String needle) {
+        int length = needle.length();
+        char first = needle.charAt(0);
+        for (int i = 0, last = text.length() - length; i <= last; i++) {
+            char c = text.charAt(i);
+            if (c != first && Character.toLowerCase(c) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < length && Character.toLowerCase(text.charAt(i + j)) == needle.charAt(j)) {
+                j++;
+            }
+            if (j == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toLowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Ids containing every trigram of the needle, found by intersecting the posting lists
+     * starting with the shortest one
+     */
+    private int[] candidates(String needle) {
+        int count = needle.length() - 2;
+        int[][] lists = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int[] list = postings.get(trigram(needle, i));
+            if (list == null) {
+                return NO_IDS;
+            }
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        int[] current = lists[0];
+        int currentSize = current.length;
+        for (int i = 1; i < lists.length && currentSize > 0; i++) {
+            int[] other = lists[i];
+            int[] next = new int[currentSize];
+            int nextSize = 0;
+            int j = 0;
+            for (int k = 0; k < currentSize; k++) {
+                int id = current[k];
+                while (j < other.length && other[j] < id) {
+                    j++;
+                }
+                if (j == other.length) {
+                    break;
+                }
+                if (other[j] == id) {
+                    next[nextSize++] = id;
+                }
+            }
+            current = next;
+            currentSize = nextSize;
+        }
+        return currentSize == current.length ? current : Arrays.copyOf(current, currentSize);
+    }
+
+    private static void addTrigrams(Map<Long, int[]> building, String text, int id) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            Long key = trigram(text, i);
+            int[] list = building.get(key);
+            if (list == null) {
+                list = new int[4];
+                building.put(key, list);
+            } else if (list[0] > 0 && list[list[0]] == id) {
+                // Already recorded for this variable
+                continue;
+            } else if (list[0] + 1 == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                building.put(key, list);
+            }
+            list[++list[0]] = id;
+        }
+    }
+
+    private static long trigram(String text, int offset) {
+        return ((long) Character.toLowerCase(text.charAt(offset)) << 32)
+                | ((long) Character.toLowerCase(text.charAt(offset + 1)) << 16)
+                | Character.toLowerCase(text.charAt(offset + 2));
+    }
+}
@@ -2,8 +2,14 @@ package com.ringlesoft.visualenv.model;
 
 /**
  * Represents an environment variable.
+ * Variables are created by the thousand for large files, so the masks shown for secret values
+ * are cached by length rather than built on every call. The source path and group name are
+ * kept as given; a parse passes the same instances for every variable of a file.
  */
 public class EnvVariable {
+    private static final int CACHED_MASKS = 128;
+    private static final String[] MASKS = new String[CACHED_MASKS + 1];
+
     private final String name;
     private final String value;
     private final String source;
@@ -31,7 +37,7 @@ public class EnvVariable {
     }
 
     public String getValue() {
-        return isSecret ? "*".repeat(value.length()) : value;
+        return isSecret ? mask(value.length()) : value;
     }
 
     public String getRawValue() {
@@ -54,6 +60,22 @@ public class EnvVariable {
         return value.contains("${") || value.contains("$(");
     }
 
+    /**
+     * @return A string of asterisks of the given length, shared for common lengths
+     */
+    public static String mask(int length) {
+        if (length > CACHED_MASKS) {
+            return "*".repeat(length);
+        }
+        String mask = MASKS[length];
+        if (mask == null) {
+            // Racing threads build equal strings, so publishing without a lock is harmless
+            mask = "*".repeat(length);
+            MASKS[length] = mask;
+        }
+        return mask;
+    }
+
     @Override
     public String toString() {
         return name + "=" + getValue();
@@ -29,18 +29,8 @@ public class ProfileManager {
      * @return The most appropriate profile for the project
      */
     public static EnvProfile getProfileForProject(Project project) {
-        // Try to detect which profile matches the project
-        if (ProjectDetector.isLaravelProject(project)) {
-            return getProfileByName("Laravel");
-        } else if (ProjectDetector.isNodeJSProject(project)) {
-            return getProfileByName("NodeJS");
-        } else if (ProjectDetector.isDjangoProject(project)) {
-            return getProfileByName("Django");
-        }
-        // Add more project type detections here
-        
-        // Default to a generic profile if no specific match
-        return new GenericProfile();
+        // The best scoring type, or Generic if none matched; detection is cached until marker files change
+        return getProfileByName(ProjectDetector.getProjectType(project));
     }
     
     /**
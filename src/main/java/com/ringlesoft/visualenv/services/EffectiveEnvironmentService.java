@@ -0,0 +1,218 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.ringlesoft.visualenv.model.EffectiveEnvironment;
+import com.ringlesoft.visualenv.model.EnvFileDefinition;
+import com.ringlesoft.visualenv.model.EnvFileDefinition.EnvFileType;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Computes the effective environment of each mode from the layered files next to the active env file.
+ * Layers come from the env file definitions of the active profile, loaded in order of priority so that
+ * a later layer overrides an earlier one: the primary and local override files apply to every mode,
+ * the other definitions only to the mode their name belongs to, each followed by its ".local" variant.
+ * Views are kept between calls and brought up to date lazily: only layers whose snapshot changed
+ * since the last call are merged again, and only for the names whose value changed.
+ */
+@Service(Service.Level.PROJECT)
+public final class EffectiveEnvironmentService {
+    public static final String DEFAULT_MODE = "default";
+    private static final String BASE_NAME = ".env";
+    private static final String LOCAL_SUFFIX = ".local";
+    // Suffixes of files that are not a mode of their own
+    private static final Set<String> NON_MODES = Set.of("local", "example", "sample", "template", "dist", "defaults");
+
+    private final Project project;
+    // Views per mode of the directory they were built for, with the snapshot versions they were merged from;
+    // both caches are dropped when the active env file moves to another directory
+    private VirtualFile viewsDirectory;
+    private final Map<String, LayeredView> views = new HashMap<>();
+    // Layers that EnvFileService does not track, parsed here without making them tracked env files
+    private final Map<VirtualFile, EnvFileSnapshot> untrackedLayers = new HashMap<>();
+
+    private static final class LayeredView {
+        final List<VirtualFile> files;
+        final long[] versions;
+        EffectiveEnvironment environment;
+
+        LayeredView(String mode, List<String> layerNames, List<VirtualFile> files) {
+            this.files = files;
+            this.versions = new long[files.size()];
+            Arrays.fill(versions, -1);
+            this.environment = EffectiveEnvironment.empty(mode, layerNames);
+        }
+    }
+
+    public EffectiveEnvironmentService(Project project) {
+        this.project = project;
+    }
+
+    public static EffectiveEnvironmentService getInstance(@NotNull Project project) {
+        return project.getService(EffectiveEnvironmentService.class);
+    }
+
+    /**
+     * @return The modes found next to the active env file, "default" first
+     */
+    public List<String> getModes() {
+        List<String> modes = new ArrayList<>();
+        modes.add(DEFAULT_MODE);
+        VirtualFile directory = getDirectory();
+        if (directory == null) {
+            return modes;
+        }
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        Set<String> found = new TreeSet<>();
+        for (VirtualFile child : directory.getChildren()) {
+            String mode = modeOf(child.getName());
+            if (mode != null && !child.isDirectory() && !envFileService.isTemplateEnvFile(child)) {
+                found.add(mode);
+            }
+        }
+        modes.addAll(found);
+        return modes;
+    }
+
+    /**
+     * Get the effective environment of a mode for the directory of the active env file.
+     * Layer files that EnvFileService does not track are parsed here, and again once their content changes;
+     * they do not become tracked env files.
+     *
+     * @param mode A mode from {@link #getModes()}
+     * @return The merged view, or null if there is no active env file
+     */
+    public synchronized @Nullable EffectiveEnvironment getEnvironment(@NotNull String mode) {
+        VirtualFile directory = getDirectory();
+        if (directory == null) {
+            resetViews(null);
+            return null;
+        }
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        List<String> layerNames = layerNames(envFileService.getActiveProfile().getEnvFileDefinitions(), mode);
+        List<VirtualFile> files = new ArrayList<>(layerNames.size());
+        for (String name : layerNames) {
+            files.add(directory.findChild(name));
+        }
+
+        if (!directory.equals(viewsDirectory)) {
+            resetViews(directory);
+        }
+        // Layers deleted since the last call
+        untrackedLayers.keySet().removeIf(file -> !file.isValid());
+        LayeredView view = views.get(mode);
+        if (view == null || !view.files.equals(files)) {
+            view = new LayeredView(mode, layerNames, files);
+            views.put(mode, view);
+        }
+
+        for (int layer = 0; layer < files.size(); layer++) {
+            VirtualFile file = files.get(layer);
+            if (file == null || !file.isValid()) {
+                continue;
+            }
+            EnvFileSnapshot snapshot = getLayerSnapshot(envFileService, file);
+            if (snapshot.getVersion() != view.versions[layer]) {
+                view.environment = view.environment.withLayer(layer, snapshot.getVariables());
+                view.versions[layer] = snapshot.getVersion();
+            }
+        }
+        return view.environment;
+    }
+
+    private void resetViews(@Nullable VirtualFile directory) {
+        views.clear();
+        untrackedLayers.clear();
+        viewsDirectory = directory;
+    }
+
+    private EnvFileSnapshot getLayerSnapshot(EnvFileService envFileService, VirtualFile file) {
+        EnvFileSnapshot snapshot = envFileService.getSnapshot(file);
+        if (snapshot != null) {
+            untrackedLayers.remove(file);
+            return snapshot;
+        }
+        snapshot = untrackedLayers.get(file);
+        if (snapshot == null || snapshot.getContentStamp() != EnvFileService.getContentStamp(file)) {
+            snapshot = envFileService.lexSnapshot(file);
+            untrackedLayers.put(file, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * A mode file the profile does not define is layered like a custom file.
+     * Priorities are loading order, so the layer with the lowest priority has the lowest precedence.
+     *
+     * @param definitions Env file definitions of the active profile
+     * @param mode        A mode from {@link #getModes()}
+     * @return Names of the files layered for a mode, lowest precedence first
+     */
+    static List<String> layerNames(List<EnvFileDefinition> definitions, String mode) {
+        List<EnvFileDefinition> layers = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (EnvFileDefinition definition : definitions) {
+            if (definition.isTemplate()) {
+                continue;
+            }
+            // Profiles may list the same file more than once
+            if ((isSharedLayer(definition) || mode.equals(modeOf(definition.getName()))) && seen.add(definition.getName())) {
+                layers.add(definition);
+            }
+        }
+        String modeFile = BASE_NAME + "." + mode;
+        if (!DEFAULT_MODE.equals(mode) && !seen.contains(modeFile)) {
+            layers.add(EnvFileDefinition.createCustomEnv(modeFile));
+        }
+        layers.sort(Comparator.comparingInt(EnvFileDefinition::getPriority));
+
+        List<String> names = new ArrayList<>(layers.size() * 2);
+        for (EnvFileDefinition layer : layers) {
+            names.add(layer.getName());
+            if (!isSharedLayer(layer) && !layer.getName().endsWith(LOCAL_SUFFIX)) {
+                names.add(layer.getName() + LOCAL_SUFFIX);
+            }
+        }
+        return names;
+    }
+
+    private static boolean isSharedLayer(EnvFileDefinition definition) {
+        return definition.getFileType() == EnvFileType.PRIMARY || definition.getFileType() == EnvFileType.LOCAL_OVERRIDE;
+    }
+
+    /**
+     * @return The mode a file name belongs to (".env.production" and ".env.production.local" give "production"),
+     * or null for names that are not a mode file
+     */
+    static @Nullable String modeOf(String fileName) {
+        if (!fileName.startsWith(BASE_NAME + ".")) {
+            return null;
+        }
+        String suffix = fileName.substring(BASE_NAME.length() + 1);
+        if (suffix.endsWith(LOCAL_SUFFIX)) {
+            suffix = suffix.substring(0, suffix.length() - LOCAL_SUFFIX.length());
+        }
+        if (suffix.isEmpty() || suffix.indexOf('.') >= 0 || NON_MODES.contains(suffix)) {
+            return null;
+        }
+        return suffix;
+    }
+
+    private VirtualFile getDirectory() {
+        VirtualFile activeFile = project.getService(EnvFileService.class).getActiveEnvFile();
+        return activeFile != null && activeFile.isValid() ? activeFile.getParent() : null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.ringlesoft.visualenv.utils.EnvEventFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Finds the env files of a project at any depth through the platform filename index, so monorepos
+ * with many packages are covered without walking the VFS. The index is queried once per file name
+ * on a full scan; afterwards the list is kept up to date from single file events.
+ * Files are grouped by the directory holding them, which in a monorepo is the package they belong to.
+ */
+@Service(Service.Level.PROJECT)
+public final class EnvFileDiscoveryService implements Disposable {
+    private final Project project;
+    // Discovered files by path; sorted so that groups come out in a stable order with the root first
+    private final ConcurrentSkipListMap<String, VirtualFile> files = new ConcurrentSkipListMap<>();
+    private volatile Set<String> fileNames = Set.of();
+    // Filter for VFS events, rebuilt on first use after the files or the project roots changed
+    private volatile EnvEventFilter eventFilter;
+
+    public EnvFileDiscoveryService(Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this).subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                eventFilter = null;
+            }
+        });
+    }
+
+    public static EnvFileDiscoveryService getInstance(@NotNull Project project) {
+        return project.getService(EnvFileDiscoveryService.class);
+    }
+
+    /**
+     * @return true if the filename index can be queried now; it is not available while indexing
+     */
+    public boolean isIndexAvailable() {
+        return !DumbService.isDumb(project);
+    }
+
+    /**
+     * Replace the discovered files with the project files carrying one of the given names.
+     * Files in excluded directories and libraries are skipped.
+     *
+     * @param names File names to look for, e.g. ".env" and ".env.example"
+     * @return The discovered files, grouped as in {@link #getGroups()}
+     */
+    public List<VirtualFile> discover(@NotNull Collection<String> names) {
+        Set<String> nameSet = Set.copyOf(names);
+        List<VirtualFile> found = ReadAction.compute(() -> {
+            List<VirtualFile> result = new ArrayList<>();
+            GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            for (String name : nameSet) {
+                for (VirtualFile file : FilenameIndex.getVirtualFilesByName(name, scope)) {
+                    if (!file.isDirectory()) {
+                        result.add(file);
+                    }
+                }
+            }
+            return result;
+        });
+        return track(nameSet, found);
+    }
+
+    /**
+     * Replace the discovered files with files found without the index, e.g. in the project root while
+     * indexing is still running, so that events for them and for new files of these names are followed
+     * until a full {@link #discover(Collection)} is possible.
+     *
+     * @param names File names the files were looked for by
+     * @param found The files found
+     * @return The discovered files, grouped as in {@link #getGroups()}
+     */
+    public List<VirtualFile> track(@NotNull Collection<String> names, @NotNull Collection<VirtualFile> found) {
+        Map<String, VirtualFile> byPath = new LinkedHashMap<>();
+        for (VirtualFile file : found) {
+            byPath.put(file.getPath(), file);
+        }
+        fileNames = Set.copyOf(names);
+        files.keySet().retainAll(byPath.keySet());
+        files.putAll(byPath);
+        eventFilter = null;
+        return getFiles();
+    }
+
+    /**
+     * Track one file without asking the index again, e.g. after it was created
+     *
+     * @return true if the file is an env file of the project and was not tracked yet
+     */
+    public boolean fileCreated(@NotNull VirtualFile file) {
+        if (file.isDirectory() || !fileNames.contains(file.getName()) || files.containsKey(file.getPath())) {
+            return false;
+        }
+        boolean inProject = ReadAction.compute(() -> file.isValid()
+                && ProjectFileIndex.getInstance(project).isInContent(file)
+                && !ProjectFileIndex.getInstance(project).isExcluded(file));
+        if (!inProject || files.putIfAbsent(file.getPath(), file) != null) {
+            return false;
+        }
+        eventFilter = null;
+        return true;
+    }
+
+    /**
+     * Stop tracking a deleted file, or every file below a deleted directory
+     *
+     * @param path Path of the deleted file or directory
+     * @return The files that were tracked there
+     */
+    public List<VirtualFile> fileDeleted(@NotNull String path) {
+        List<VirtualFile> removed = new ArrayList<>();
+        VirtualFile file = files.remove(path);
+        if (file != null) {
+            removed.add(file);
+        }
+        // '/' + 1 is '0', so this range holds exactly the paths below the directory
+        Map<String, VirtualFile> below = files.subMap(path + "/", path + "0");
+        removed.addAll(below.values());
+        below.clear();
+        if (!removed.isEmpty()) {
+            eventFilter = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Get the filter telling which VFS events concern the discovered files.
+     * Must be called in a read action, as {@link com.intellij.openapi.vfs.AsyncFileListener#prepareChange} is.
+     *
+     * @return The filter for the current files and project roots
+     */
+    public EnvEventFilter getEventFilter() {
+        EnvEventFilter filter = eventFilter;
+        if (filter == null) {
+            if (fileNames.isEmpty()) {
+                return EnvEventFilter.NONE;
+            }
+            List<VirtualFile> excludedRoots = new ArrayList<>();
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                excludedRoots.addAll(List.of(ModuleRootManager.getInstance(module).getExcludeRoots()));
+            }
+            filter = new EnvEventFilter(fileNames, files.values(),
+                    List.of(ProjectRootManager.getInstance(project).getContentRoots()), excludedRoots);
+            eventFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * @return All discovered files, grouped as in {@link #getGroups()}
+     */
+    public List<VirtualFile> getFiles() {
+        List<VirtualFile> result = new ArrayList<>(files.size());
+        for (List<VirtualFile> group : getGroups().values()) {
+            result.addAll(group);
+        }
+        return result;
+    }
+
+    /**
+     * @return The discovered files by group name (see {@link #getGroupName(VirtualFile)}), the project root first
+     */
+    public Map<String, List<VirtualFile>> getGroups() {
+        Map<String, List<VirtualFile>> groups = new LinkedHashMap<>();
+        for (VirtualFile file : files.values()) {
+            if (file.isValid()) {
+                groups.computeIfAbsent(getGroupName(file), k -> new ArrayList<>()).add(file);
+            }
+        }
+        List<VirtualFile> root = groups.remove("");
+        if (root == null) {
+            return groups;
+        }
+        Map<String, List<VirtualFile>> ordered = new LinkedHashMap<>();
+        ordered.put("", root);
+        ordered.putAll(groups);
+        return ordered;
+    }
+
+    /**
+     * Get the group of a file: the path of its directory relative to the project, e.g. "packages/api".
+     * Directories outside the project base are shown relative to their content root.
+     *
+     * @return The group name, empty for files in the project base directory
+     */
+    public String getGroupName(@NotNull VirtualFile file) {
+        VirtualFile directory = file.getParent();
+        if (directory == null) {
+            return "";
+        }
+        String basePath = project.getBasePath();
+        if (basePath != null) {
+            if (directory.getPath().equals(basePath)) {
+                return "";
+            }
+            if (directory.getPath().startsWith(basePath + "/")) {
+                return directory.getPath().substring(basePath.length() + 1);
+            }
+        }
+        VirtualFile contentRoot = ReadAction.compute(() -> ProjectFileIndex.getInstance(project).getContentRootForFile(directory));
+        if (contentRoot == null) {
+            return directory.getPath();
+        }
+        String relative = VfsUtilCore.getRelativePath(directory, contentRoot);
+        return relative == null || relative.isEmpty() ? contentRoot.getName() : contentRoot.getName() + "/" + relative;
+    }
+
+    /**
+     * @return A name telling files of the same name apart, e.g. "packages/api/.env"; just the name at the project root
+     */
+    public String getDisplayName(@NotNull VirtualFile file) {
+        String group = getGroupName(file);
+        return group.isEmpty() ? file.getName() : group + "/" + file.getName();
+    }
+
+    @Override
+    public void dispose() {
+        files.clear();
+        eventFilter = null;
+    }
+}
@@ -1,11 +1,28 @@
 package com.ringlesoft.visualenv.services;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectCloseListener;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.ringlesoft.visualenv.listeners.EnvDocumentListener;
+import com.ringlesoft.visualenv.listeners.EnvSnapshotListener;
 import com.ringlesoft.visualenv.model.EnvFileDefinition;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import com.ringlesoft.visualenv.model.EnvInterpolator;
 import com.ringlesoft.visualenv.model.EnvVariable;
 import com.ringlesoft.visualenv.model.EnvVariableDefinition;
 import com.ringlesoft.visualenv.model.EnvVariableRegistry;
@@ -13,27 +30,43 @@ import com.ringlesoft.visualenv.profile.EnvProfile;
 import com.ringlesoft.visualenv.profile.ProfileManager;
 import com.ringlesoft.visualenv.utils.CommandRunner;
 import com.ringlesoft.visualenv.utils.EnvFileManager;
+import com.ringlesoft.visualenv.utils.EnvFileReader;
+import com.ringlesoft.visualenv.utils.EnvLexer;
+import com.ringlesoft.visualenv.utils.IntArray;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Service for managing environment variables in the project.
  */
 @Service(Service.Level.PROJECT)
-public final class EnvFileService {
+public final class EnvFileService implements Disposable {
     private static final Logger LOG = Logger.getInstance(EnvFileService.class);
+
+    /**
+     * Registry key holding the size in kilobytes above which files are parsed without a Document
+     */
+    public static final String LARGE_FILE_THRESHOLD_KEY = "visualenv.large.file.threshold";
+    private static final int DEFAULT_LARGE_FILE_THRESHOLD = 2048;
+
     private final Project project;
-    private final Map<VirtualFile, List<EnvVariable>> fileEnvVariables = new HashMap<>();
-    private VirtualFile activeEnvFile;
-    private EnvProfile activeProfile;
+    // Latest parsed state of every tracked file; snapshots are immutable and replaced atomically
+    private final Map<VirtualFile, EnvFileSnapshot> snapshots = new ConcurrentHashMap<>();
+    // Pending UI edits per file, written in batches
+    private final Map<VirtualFile, EnvWriteQueue> writeQueues = new ConcurrentHashMap<>();
+    // Interpolation graphs per file, synced with the latest snapshot when read
+    private final Map<VirtualFile, EnvInterpolator> interpolators = new ConcurrentHashMap<>();
+    private volatile VirtualFile activeEnvFile;
+    private volatile EnvProfile activeProfile;
     private final EnvVariableRegistry variableRegistry;
-    private String lastUpdatedVariable;
+    private volatile String lastUpdatedVariable;
 
     /**
      * Create a new EnvFileService for a project
@@ -45,9 +78,27 @@ public final class EnvFileService {
         // Initialize the active profile based on project type
         this.activeProfile = ProfileManager.getProfileForProject(project);
         this.variableRegistry = new EnvVariableRegistry(this.activeProfile, project);
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new EnvDocumentListener(this), this);
+        // Write queued edits while the project's documents can still be saved
+        ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(ProjectCloseListener.TOPIC,
+                new ProjectCloseListener() {
+                    @Override
+                    public void projectClosing(@NotNull Project closingProject) {
+                        if (closingProject == project) {
+                            flushPendingWrites();
+                        }
+                    }
+                });
         LOG.info("EnvFileService initialized with profile: " + activeProfile.getProfileName());
     }
 
+    @Override
+    public void dispose() {
+        snapshots.clear();
+        writeQueues.clear();
+        interpolators.clear();
+    }
+
     /**
      * Parse an environment file and extract variables
      *
@@ -55,53 +106,287 @@ public final class EnvFileService {
      * @return List of environment variables
      */
     public List<EnvVariable> parseEnvFile(VirtualFile file) {
-        List<EnvVariable> variables = new ArrayList<>();
-        this.fileEnvVariables.put(file, variables);
         activeEnvFile = file;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Skip comments and empty lines (for now)
-                if (line.trim().isEmpty() || line.trim().startsWith("#")) {
-                    continue;
+        return reloadEnvFile(file);
+    }
+
+    /**
+     * Re-read an environment file into the cache without changing the active file.
+     * Unsaved document content takes precedence over the file on disk.
+     * Safe to call from a background read action; parsing stops with a
+     * {@link com.intellij.openapi.progress.ProcessCanceledException} when the action is cancelled.
+     *
+     * @param file The file to parse
+     * @return List of environment variables
+     */
+    public List<EnvVariable> reloadEnvFile(VirtualFile file) {
+        return reloadSnapshot(file).getVariables();
+    }
+
+    /**
+     * Re-read an environment file into the cache, like {@link #reloadEnvFile(VirtualFile)}
+     *
+     * @param file The file to parse
+     * @return The snapshot cached for the file afterwards
+     */
+    public EnvFileSnapshot reloadSnapshot(VirtualFile file) {
+        try (MetricsService.Timer ignored = MetricsService.getInstance(project).startTimer(MetricsService.PARSE)) {
+            return parseSnapshot(file);
+        }
+    }
+
+    private EnvFileSnapshot parseSnapshot(VirtualFile file) {
+        return publish(file, lexSnapshot(file));
+    }
+
+    /**
+     * Parse the current content of a file into a snapshot without caching it, e.g. for a file
+     * that is read as a layer of the effective environment but is not tracked by this service
+     */
+    EnvFileSnapshot lexSnapshot(VirtualFile file) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        long contentStamp = document != null ? document.getModificationStamp() : file.getModificationStamp();
+        try {
+            CharSequence content;
+            if (document != null) {
+                content = document.getImmutableCharSequence();
+            } else if (isReadOnlyParse(file)) {
+                content = EnvFileReader.read(file);
+            } else {
+                content = VfsUtilCore.loadText(file);
+            }
+            EnvFileSnapshot snapshot = lexContent(content, file.getPath(), variableRegistry, contentStamp,
+                    ProgressManager::checkCanceled);
+            MetricsService.getInstance(project).increment(MetricsService.PARSED_VARIABLES, snapshot.size());
+            return snapshot;
+        } catch (IOException e) {
+            LOG.error("Failed to parse env file", e);
+            return EnvFileSnapshot.empty(contentStamp);
+        }
+    }
+
+    /**
+     * @return Modification stamp of the current content of a file, from its document if one is loaded
+     */
+    static long getContentStamp(VirtualFile file) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        return document != null ? document.getModificationStamp() : file.getModificationStamp();
+    }
+
+    /**
+     * Parse content into a snapshot. Needs no project or running platform, so benchmarks measure this same loop.
+     *
+     * @param content       The content to parse
+     * @param source        Path the variables are read from
+     * @param registry      Registry used to find the group of each variable and whether it is secret
+     * @param contentStamp  Modification stamp of the content
+     * @param checkCanceled Called before each token, to stop parsing when the caller is cancelled
+     * @return The snapshot of the content
+     */
+    public static EnvFileSnapshot lexContent(@NotNull CharSequence content, @NotNull String source,
+                                             @NotNull EnvVariableRegistry registry, long contentStamp,
+                                             @NotNull Runnable checkCanceled) {
+        List<EnvVariable> variables = new ArrayList<>();
+        IntArray lines = new IntArray();
+        IntArray multiLineSpans = new IntArray();
+        EnvLexer lexer = new EnvLexer(content);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            checkCanceled.run();
+            // Skip comments and empty lines (for now)
+            if (token.isEntry()) {
+                variables.add(createVariable(registry, token, source));
+                lines.add(token.getLine());
+                if (token.isMultiLine()) {
+                    multiLineSpans.add(token.getLine());
+                    multiLineSpans.add(token.getEndLine());
+                } else if (token.hasUnclosedQuote()) {
+                    // A closing quote on any later line changes this entry, so edits below it are not patched
+                    multiLineSpans.add(token.getLine());
+                    multiLineSpans.add(EnvFileSnapshot.OPEN_END);
                 }
+            }
+        }
+        return new EnvFileSnapshot(variables, lines.toArray(), contentStamp, multiLineSpans.toArray());
+    }
 
-                // Match key=value pattern
-                Pattern pattern = Pattern.compile("^([^=]+)=(.*)$");
-                Matcher matcher = pattern.matcher(line);
+    /**
+     * Bring the cached variables of a file in line with content rewritten outside the editor,
+     * e.g. by {@code php artisan key:generate} or a deploy script. The new content is diffed line by line
+     * against the cached snapshot, so unchanged variables are carried over and listeners only see
+     * a new snapshot when an entry actually changed or moved.
+     *
+     * Reads and parses the whole file, so call it from a background read action,
+     * e.g. through {@link #queueEnvFileContentChanged(VirtualFile, Consumer)}.
+     *
+     * @param file The changed file
+     * @return The keys added, removed or given another value; empty if the file is not tracked or no key changed
+     */
+    public Set<String> envFileContentChanged(VirtualFile file) {
+        EnvFileSnapshot current = snapshots.get(file);
+        if (current == null || !file.isValid()) {
+            return Set.of();
+        }
+        EnvFileSnapshot.ContentChange change;
+        try (MetricsService.Timer ignored = MetricsService.getInstance(project).startTimer(MetricsService.PARSE)) {
+            change = current.diff(lexSnapshot(file));
+        }
+        if (change.isEmpty() || publish(file, change.getSnapshot()) != change.getSnapshot()) {
+            return Set.of();
+        }
+        return change.getChangedKeys();
+    }
 
-                if (matcher.matches()) {
-                    String name = matcher.group(1).trim();
-                    String value = matcher.group(2).trim();
+    /**
+     * Run {@link #envFileContentChanged(VirtualFile)} in a background read action after a change outside the editor.
+     * A newer change of the same file cancels a pending one, as it reads the latest content anyway.
+     *
+     * @param file      The changed file
+     * @param onChanged Called on the EDT with the changed keys once the new snapshot is published
+     */
+    public void queueEnvFileContentChanged(VirtualFile file, Consumer<Set<String>> onChanged) {
+        ReadAction.nonBlocking(() -> envFileContentChanged(file))
+                .coalesceBy(this, file)
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.nonModal(), onChanged)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
 
-                    // Remove quotes if present
-                    if ((value.startsWith("\"") && value.endsWith("\"")) ||
-                            (value.startsWith("'") && value.endsWith("'"))) {
-                        value = value.substring(1, value.length() - 1);
+    /**
+     * Parse a tracked file again in a background read action, e.g. after it was renamed or moved.
+     * A newer reload of the same file cancels a pending one.
+     */
+    private void queueSnapshotReload(VirtualFile file) {
+        ReadAction.nonBlocking(() -> {
+                    if (file.isValid() && snapshots.containsKey(file)) {
+                        reloadSnapshot(file);
                     }
+                })
+                .coalesceBy(this, file, EnvFileSnapshot.class)
+                .expireWith(this)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
 
-                    // Check if this is a predefined variable
-                    EnvVariableDefinition definition = variableRegistry.getVariableDefinition(name);
-
-                    // Determine group
-                    String group = (definition != null) ? definition.getGroup() : "other";
+    /**
+     * Publish a freshly parsed snapshot unless a snapshot of newer content is already cached
+     *
+     * @return The snapshot that is cached after publishing
+     */
+    private EnvFileSnapshot publish(VirtualFile file, EnvFileSnapshot snapshot) {
+        EnvFileSnapshot published = snapshots.merge(file, snapshot,
+                (current, fresh) -> fresh.getContentStamp() >= current.getContentStamp() ? fresh : current);
+        if (published == snapshot) {
+            notifySnapshotChanged(file, snapshot);
+        }
+        return published;
+    }
 
-                    // Determine if secret
-                    boolean isSecret = (definition != null) ? definition.isSecret() : variableRegistry.detectSecretVariable(name);
+    private void notifySnapshotChanged(VirtualFile file, EnvFileSnapshot snapshot) {
+        if (!project.isDisposed()) {
+            project.getMessageBus().syncPublisher(EnvSnapshotListener.TOPIC).snapshotChanged(file, snapshot);
+        }
+    }
 
-                    EnvVariable variable = new EnvVariable(name, value, file.getPath(), isSecret, group);
-                    variables.add(variable);
+    /**
+     * Patch the cached variables of a file after its document changed.
+     * Only the lines touched by the change are lexed again; the variables before and after
+     * the change are carried over into the new snapshot with their line numbers shifted.
+     * When the change touches a quoted value spanning several lines, or comes after a quote that is not
+     * closed, or a quote opened in the changed lines is not closed there, it may affect lines outside the
+     * range and the whole document is parsed again.
+     *
+     * @param file       The changed file
+     * @param document   The document after the change
+     * @param startLine  First line touched by the change
+     * @param oldEndLine Last line touched by the change, before the change
+     * @param newEndLine Last line touched by the change, after the change
+     */
+    public void applyDocumentChange(VirtualFile file, Document document, int startLine, int oldEndLine, int newEndLine) {
+        EnvFileSnapshot snapshot = snapshots.get(file);
+        if (snapshot == null) {
+            return;
+        }
+        if (snapshot.touchesMultiLineValue(startLine, oldEndLine)) {
+            reloadSnapshot(file);
+            return;
+        }
+        long start = System.nanoTime();
+
+        // Lex the replacement lines
+        List<EnvVariable> added = new ArrayList<>();
+        IntArray addedLines = new IntArray();
+        // Share the path string the file's variables already point at; getPath() builds a new one
+        String source = snapshot.size() > 0 ? snapshot.getVariables().get(0).getSource() : file.getPath();
+        EnvLexer lexer = new EnvLexer(document.getImmutableCharSequence(),
+                document.getLineStartOffset(startLine), document.getLineEndOffset(newEndLine), startLine);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.isEntry()) {
+                if (token.isMultiLine() || token.hasUnclosedQuote()) {
+                    reloadSnapshot(file);
+                    return;
                 }
+                added.add(createVariable(variableRegistry, token, source));
+                addedLines.add(token.getLine());
             }
+        }
 
-            // Cache variables
-            fileEnvVariables.put(file, variables);
+        long contentStamp = document.getModificationStamp();
+        EnvFileSnapshot patched = snapshots.computeIfPresent(file, (f, current) -> current.withReplacedLines(
+                startLine, oldEndLine, newEndLine, added, addedLines.toArray(), contentStamp));
+        if (patched != null) {
+            notifySnapshotChanged(file, patched);
+        }
+        MetricsService.getInstance(project).record(MetricsService.INCREMENTAL_PARSE, System.nanoTime() - start);
+    }
 
-            return variables;
-        } catch (IOException e) {
-            LOG.error("Failed to parse env file", e);
-            return Collections.emptyList();
+    /**
+     * Check whether a file's variables are cached by this service
+     */
+    public boolean isTrackedEnvFile(VirtualFile file) {
+        return snapshots.containsKey(file);
+    }
+
+    /**
+     * Get the latest snapshot of a tracked file
+     *
+     * @param file The file
+     * @return The snapshot, or null if the file is not tracked
+     */
+    public EnvFileSnapshot getSnapshot(VirtualFile file) {
+        return snapshots.get(file);
+    }
+
+    /**
+     * Get the interpolation resolver of a tracked file, brought up to date with its latest snapshot.
+     * Only variables changed since the last call, and the variables depending on them, are resolved again.
+     *
+     * @param file The file
+     * @return The resolver, or null if the file is not tracked
+     */
+    public @Nullable EnvInterpolator getInterpolator(VirtualFile file) {
+        EnvFileSnapshot snapshot = snapshots.get(file);
+        if (snapshot == null) {
+            return null;
         }
+        EnvInterpolator interpolator = interpolators.computeIfAbsent(file, f -> new EnvInterpolator());
+        interpolator.update(snapshot);
+        return interpolator;
+    }
+
+    private static EnvVariable createVariable(EnvVariableRegistry registry, EnvLexer.Token token, String source) {
+        String name = token.getKey();
+
+        // Check if this is a predefined variable
+        EnvVariableDefinition definition = registry.getVariableDefinition(name);
+
+        // Determine group
+        String group = (definition != null) ? definition.getGroup() : "other";
+
+        // Determine if secret
+        boolean isSecret = (definition != null) ? definition.isSecret() : registry.detectSecretVariable(name);
+
+        return new EnvVariable(name, token.getValue(), source, isSecret, group);
     }
 
     /**
@@ -118,10 +403,11 @@ public final class EnvFileService {
         }
 
         try {
-            // Use EnvFileManager to update the variable
-            EnvFileManager.setEnvVariable(project, activeEnvFile, name, value);
-            // Update cache
-            parseEnvFile(activeEnvFile);
+            // Write the value together with any edits still waiting in the queue
+            // The cache is patched by the document listener once the change is written
+            EnvWriteQueue queue = getWriteQueue(activeEnvFile);
+            queue.enqueue(name, value);
+            queue.flush();
             lastUpdatedVariable = name; // Just for keeping track
             return true;
         } catch (Exception e) {
@@ -130,6 +416,45 @@ public final class EnvFileService {
         }
     }
 
+    /**
+     * Queue an update of an environment variable in the active file.
+     * Queued updates are written together once no further edits arrive within the flush window.
+     *
+     * @param name  The name of the variable
+     * @param value The new value
+     * @return true if the update was queued
+     */
+    public boolean queueEnvVariableUpdate(String name, String value) {
+        VirtualFile file = activeEnvFile;
+        if (file == null) {
+            LOG.error("No active env file");
+            return false;
+        }
+        getWriteQueue(file).enqueue(name, value);
+        lastUpdatedVariable = name;
+        return true;
+    }
+
+    /**
+     * Write all queued updates of every file now
+     */
+    public void flushPendingWrites() {
+        for (EnvWriteQueue queue : writeQueues.values()) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Get the write queue of a file, creating it on first use
+     */
+    public EnvWriteQueue getWriteQueue(VirtualFile file) {
+        return writeQueues.computeIfAbsent(file, f -> {
+            EnvWriteQueue queue = new EnvWriteQueue(project, f);
+            Disposer.register(this, queue);
+            return queue;
+        });
+    }
+
     /**
      * Get all environment variables from all loaded files
      *
@@ -137,39 +462,93 @@ public final class EnvFileService {
      */
     public Map<String, List<EnvVariable>> getAllFileEnvVariables() {
         Map<String, List<EnvVariable>> result = new HashMap<>();
-        for (Map.Entry<VirtualFile, List<EnvVariable>> entry : fileEnvVariables.entrySet()) {
-            result.put(entry.getKey().getPath(), entry.getValue());
+        for (Map.Entry<VirtualFile, EnvFileSnapshot> entry : snapshots.entrySet()) {
+            result.put(entry.getKey().getPath(), entry.getValue().getVariables());
         }
         return result;
     }
 
     /**
-     * Checks for .env files in the project root and creates one from .env.example if needed.
-     *
+     * Discover the env files of the project and parse the ones in the project root.
+     * Files of the profile's names are found at any depth through the filename index; while the
+     * index is not ready only the project root is looked at, and the caller should scan again once
+     * indexing finishes. Files in sub-directories are parsed when they are first opened.
      */
     public void scanAndProcessEnvFiles() {
+        parseRootEnvFiles(discoverEnvFiles());
+    }
+
+    /**
+     * Discover the env files of the project without parsing them, like {@link #scanAndProcessEnvFiles()}.
+     * The active file is kept if it was found again, and otherwise set to the primary or first file.
+     *
+     * @return The files found
+     */
+    public List<VirtualFile> discoverEnvFiles() {
         String basePath = project.getBasePath();
         if (basePath == null) {
-            return;
+            return List.of();
         }
-        List<VirtualFile> foundFiles = new ArrayList<>();
         ProjectService projectService = project.getService(ProjectService.class);
-        List<EnvFileDefinition> envFileDefinitions = activeProfile.getEnvFileDefinitions(); // Add null check>
-        for (EnvFileDefinition envFileDefinition : envFileDefinitions) {
-            VirtualFile envFile = LocalFileSystem.getInstance().findFileByPath(Path.of(basePath, envFileDefinition.getName()).toString());
-            if (envFile != null) {
-                // Parse existing .env file but do it safely
-                parseEnvFile(envFile);
-                if (envFileDefinition.isPrimary() && activeEnvFile == null) {
-                    projectService.setActiveEnvFile(envFileDefinition.getName());
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
+        List<String> names = new ArrayList<>();
+        for (EnvFileDefinition envFileDefinition : activeProfile.getEnvFileDefinitions()) {
+            names.add(envFileDefinition.getName());
+        }
+        List<VirtualFile> foundFiles;
+        if (discovery.isIndexAvailable()) {
+            foundFiles = discovery.discover(names);
+        } else {
+            // Only the project root can be looked at while indexing; the files found there are
+            // tracked so that file events are followed until the index is available
+            List<VirtualFile> rootFiles = new ArrayList<>();
+            for (String name : names) {
+                VirtualFile envFile = LocalFileSystem.getInstance().findFileByPath(Path.of(basePath, name).toString());
+                if (envFile != null) {
+                    rootFiles.add(envFile);
                 }
-                foundFiles.add(envFile);
+            }
+            foundFiles = discovery.track(names, rootFiles);
+        }
+
+        // Forget files that are gone, e.g. after the profile changed
+        Set<VirtualFile> found = new HashSet<>(foundFiles);
+        Set<VirtualFile> gone = new HashSet<>(snapshots.keySet());
+        gone.addAll(writeQueues.keySet());
+        gone.addAll(interpolators.keySet());
+        gone.removeAll(found);
+        dropFileState(gone);
+
+        VirtualFile primaryFile = null;
+        for (VirtualFile envFile : foundFiles) {
+            EnvFileDefinition definition = getEnvFileDefinitionForFile(envFile);
+            if (primaryFile == null && definition != null && definition.isPrimary()) {
+                primaryFile = envFile;
             }
         }
         if (foundFiles.isEmpty()) {
-            fileEnvVariables.clear();
             activeEnvFile = null;
             projectService.setActiveEnvFile(null);
+        } else if (activeEnvFile == null || !found.contains(activeEnvFile)) {
+            activeEnvFile = primaryFile != null ? primaryFile : foundFiles.get(0);
+            projectService.setActiveEnvFile(activeEnvFile.getPath());
+        }
+        return foundFiles;
+    }
+
+    /**
+     * Parse the given env files that are in the project root.
+     * Safe to call from a background read action, like {@link #reloadEnvFile(VirtualFile)}.
+     *
+     * @param envFiles Files found by {@link #discoverEnvFiles()}
+     */
+    public void parseRootEnvFiles(List<VirtualFile> envFiles) {
+        String basePath = project.getBasePath();
+        for (VirtualFile envFile : envFiles) {
+            VirtualFile parent = envFile.getParent();
+            if (parent != null && parent.getPath().equals(basePath)) {
+                reloadSnapshot(envFile);
+            }
         }
     }
 
@@ -177,6 +556,111 @@ public final class EnvFileService {
         scanAndProcessEnvFiles();
     }
 
+    /**
+     * Get the env files of the project, including ones that are not parsed yet
+     *
+     * @return The files, project root first and then by directory
+     */
+    public List<VirtualFile> getEnvFiles() {
+        List<VirtualFile> files = EnvFileDiscoveryService.getInstance(project).getFiles();
+        if (files.isEmpty() && !snapshots.isEmpty()) {
+            // Scanned before the index was ready
+            return new ArrayList<>(snapshots.keySet());
+        }
+        return files;
+    }
+
+    /**
+     * Track an env file that was created after the last scan
+     *
+     * @param file The new file
+     * @return true if the file belongs to the project and was not tracked yet
+     */
+    public boolean envFileCreated(VirtualFile file) {
+        if (!EnvFileDiscoveryService.getInstance(project).fileCreated(file)) {
+            return false;
+        }
+        if (activeEnvFile == null) {
+            activeEnvFile = file;
+            project.getService(ProjectService.class).setActiveEnvFile(file.getPath());
+        }
+        return true;
+    }
+
+    /**
+     * Stop tracking a deleted env file, or the env files below a deleted directory
+     *
+     * @param path Path of the deleted file or directory
+     * @return true if a tracked file was removed
+     */
+    public boolean envFileDeleted(String path) {
+        List<VirtualFile> removed = EnvFileDiscoveryService.getInstance(project).fileDeleted(path);
+        forgetEnvFiles(removed);
+        return !removed.isEmpty();
+    }
+
+    /**
+     * Follow a renamed or moved env file, or the env files below a renamed or moved directory.
+     * Files that are still env files of the project stay tracked under their new path and are parsed
+     * again in a background read action, off the VFS event; the others are dropped.
+     * A file renamed or moved so that it becomes an env file is tracked like a new one.
+     *
+     * @param oldPath Path of the file or directory before the change
+     * @param file    The file or directory after the change
+     * @return true if the tracked files changed
+     */
+    public boolean envFileMoved(String oldPath, VirtualFile file) {
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
+        List<VirtualFile> moved = discovery.fileDeleted(oldPath);
+        if (moved.isEmpty()) {
+            return !file.isDirectory() && envFileCreated(file);
+        }
+        List<VirtualFile> removed = new ArrayList<>();
+        for (VirtualFile movedFile : moved) {
+            // A file that is still an env file keeps its snapshot and write queue, which follow the file itself
+            if (!discovery.fileCreated(movedFile)) {
+                removed.add(movedFile);
+            } else if (snapshots.containsKey(movedFile)) {
+                // Variables carry the path they were read from
+                queueSnapshotReload(movedFile);
+            }
+        }
+        forgetEnvFiles(removed);
+        if (activeEnvFile != null && moved.contains(activeEnvFile) && !removed.contains(activeEnvFile)) {
+            project.getService(ProjectService.class).setActiveEnvFile(activeEnvFile.getPath());
+        }
+        return true;
+    }
+
+    /**
+     * Drop the cached state of files that are no longer tracked, picking another active file if needed
+     */
+    private void forgetEnvFiles(List<VirtualFile> removed) {
+        dropFileState(removed);
+        if (activeEnvFile != null && removed.contains(activeEnvFile)) {
+            List<VirtualFile> remaining = getEnvFiles();
+            activeEnvFile = remaining.isEmpty() ? null : remaining.get(0);
+            project.getService(ProjectService.class).setActiveEnvFile(activeEnvFile != null ? activeEnvFile.getPath() : null);
+        }
+    }
+
+    /**
+     * Drop the cached state and write queues of files that are no longer tracked.
+     * Edits still queued for them are discarded rather than written: this runs while file events
+     * are dispatched, and a file that stopped being an env file should not receive them.
+     */
+    private void dropFileState(Collection<VirtualFile> files) {
+        for (VirtualFile file : files) {
+            snapshots.remove(file);
+            interpolators.remove(file);
+            EnvWriteQueue queue = writeQueues.remove(file);
+            if (queue != null) {
+                queue.discard();
+                Disposer.dispose(queue);
+            }
+        }
+    }
+
 
     /**
      * Create an environment file from a template file
@@ -190,20 +674,15 @@ public final class EnvFileService {
             return false;
         }
 
-        // Get the project directory
-        String projectBasePath = project.getBasePath();
-        if (projectBasePath == null) {
-            LOG.warn("Project base path is null");
+        // Create the file next to the template, which in a monorepo is the package it belongs to
+        VirtualFile projectDir = templateFile.getParent();
+        if (projectDir == null) {
+            LOG.warn("Template directory not found");
             return false;
         }
 
         // Figure out the target file name
         String targetFileName = ".env";
-        VirtualFile projectDir = LocalFileSystem.getInstance().findFileByPath(projectBasePath);
-        if (projectDir == null) {
-            LOG.warn("Project directory not found");
-            return false;
-        }
 
         // Check if target file already exists
         VirtualFile targetFile = projectDir.findChild(targetFileName);
@@ -253,7 +732,7 @@ public final class EnvFileService {
             }
 
             // Create new .env file
-            File newEnvFile = new File(projectBasePath, targetFileName);
+            File newEnvFile = new File(projectDir.getPath(), targetFileName);
             try (FileOutputStream fos = new FileOutputStream(newEnvFile)) {
                 fos.write(newContent.toString().getBytes(StandardCharsets.UTF_8));
             }
@@ -265,6 +744,7 @@ public final class EnvFileService {
             VirtualFile newEnvVirtualFile = LocalFileSystem.getInstance().findFileByPath(newEnvFile.getAbsolutePath());
             if (newEnvVirtualFile != null) {
                 // Parse and set as active env file
+                EnvFileDiscoveryService.getInstance(project).fileCreated(newEnvVirtualFile);
                 parseEnvFile(newEnvVirtualFile);
                 activeEnvFile = newEnvVirtualFile;
             }
@@ -338,6 +818,15 @@ public final class EnvFileService {
         return activeEnvFile;
     }
 
+    /**
+     * Set the currently active .env file without parsing it
+     *
+     * @param file The file to make active
+     */
+    public void setActiveEnvFile(VirtualFile file) {
+        activeEnvFile = file;
+    }
+
     /**
      * Get the currently active profile
      *
@@ -384,9 +873,14 @@ public final class EnvFileService {
 
     /**
      * Get the environment variables for each file in the project
+     * The returned map is a read-only copy of the latest snapshots
      */
     public Map<VirtualFile, List<EnvVariable>> getFileEnvVariables() {
-        return fileEnvVariables;
+        Map<VirtualFile, List<EnvVariable>> result = new HashMap<>();
+        for (Map.Entry<VirtualFile, EnvFileSnapshot> entry : snapshots.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getVariables());
+        }
+        return Collections.unmodifiableMap(result);
     }
 
 
@@ -434,6 +928,21 @@ public final class EnvFileService {
         return definition != null && definition.isEditable();
     }
 
+    /**
+     * Check whether a file is parsed straight from its bytes instead of through a Document:
+     * templates, files the plugin does not edit, and files above the size threshold
+     *
+     * @param file The file to check
+     * @return true if the file takes the read-only path
+     */
+    public boolean isReadOnlyParse(VirtualFile file) {
+        EnvFileDefinition definition = getEnvFileDefinitionForFile(file);
+        if (definition != null && (definition.isTemplate() || !definition.isEditable())) {
+            return true;
+        }
+        return file.getLength() > Registry.intValue(LARGE_FILE_THRESHOLD_KEY, DEFAULT_LARGE_FILE_THRESHOLD) * 1024L;
+    }
+
     public VirtualFile findFileByPath(String selectedFilePath) {
         return LocalFileSystem.getInstance().findFileByPath(selectedFilePath);
     }
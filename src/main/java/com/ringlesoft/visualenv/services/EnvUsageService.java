@@ -0,0 +1,116 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.ringlesoft.visualenv.index.EnvKeyIndex;
+import com.ringlesoft.visualenv.index.EnvUsageIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Compares the keys defined in env files with the variables read by project sources.
+ * Both sides come from persistent indexes ({@link EnvKeyIndex} and {@link EnvUsageIndex}), so a
+ * refresh costs one index lookup per key instead of a scan of the code base. The latest report is
+ * kept for renderers, which must not query indexes while painting.
+ */
+@Service(Service.Level.PROJECT)
+public final class EnvUsageService implements Disposable {
+    private final Project project;
+    private volatile Report report = Report.EMPTY;
+
+    /**
+     * Keys defined but never read, and keys read but never defined
+     */
+    public static final class Report {
+        static final Report EMPTY = new Report(Set.of(), Set.of());
+
+        private final Set<String> unusedKeys;
+        private final Set<String> missingKeys;
+
+        Report(Set<String> unusedKeys, Set<String> missingKeys) {
+            this.unusedKeys = unusedKeys;
+            this.missingKeys = missingKeys;
+        }
+
+        /**
+         * @return true if no PHP, JavaScript or Python source of the project reads the key
+         */
+        public boolean isUnused(@NotNull String key) {
+            return unusedKeys.contains(key);
+        }
+
+        /**
+         * @return Keys defined in env files that no source reads, sorted
+         */
+        public Set<String> getUnusedKeys() {
+            return unusedKeys;
+        }
+
+        /**
+         * @return Variables read by sources that no env file defines, sorted
+         */
+        public Set<String> getMissingKeys() {
+            return missingKeys;
+        }
+    }
+
+    public EnvUsageService(Project project) {
+        this.project = project;
+    }
+
+    public static EnvUsageService getInstance(@NotNull Project project) {
+        return project.getService(EnvUsageService.class);
+    }
+
+    /**
+     * @return The latest report; empty until the first refresh has finished
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    /**
+     * Recompute the report in the background once indexing is done. Overlapping refreshes of the
+     * same requestor are coalesced, and the callback runs on the EDT with the new report.
+     *
+     * @param requestor Component asking for the report, e.g. a tab
+     * @param onUpdated Called with the new report
+     */
+    public void refresh(@NotNull Object requestor, @NotNull Consumer<Report> onUpdated) {
+        ReadAction.nonBlocking(() -> compute(project))
+                .inSmartMode(project)
+                .coalesceBy(this, requestor)
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.any(), newReport -> {
+                    report = newReport;
+                    onUpdated.accept(newReport);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * Build a report from the indexes; needs a read action in smart mode
+     */
+    static Report compute(@NotNull Project project) {
+        Set<String> defined = EnvKeyIndex.getDefinedKeys(project);
+        Set<String> used = EnvUsageIndex.getUsedKeys(project);
+        // Without any usage the project has no sources of the indexed languages, and nothing is unused
+        Set<String> unused = new TreeSet<>(used.isEmpty() ? Set.of() : defined);
+        unused.removeAll(used);
+        Set<String> missing = new TreeSet<>(used);
+        missing.removeAll(defined);
+        return new Report(unused, missing);
+    }
+
+    @Override
+    public void dispose() {
+        report = Report.EMPTY;
+    }
+}
@@ -0,0 +1,122 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import com.ringlesoft.visualenv.utils.EnvFileManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-behind queue for the variables of one environment file.
+ * Edits made in the UI are collected here and written once the user pauses for the
+ * flush window; all pending changes then go into the file with a single write command,
+ * a single save and a single undo step, instead of one of each per edit.
+ * Disposing the queue writes what is still pending, as long as the project is open.
+ */
+public final class EnvWriteQueue implements Disposable {
+    private static final Logger LOG = Logger.getInstance(EnvWriteQueue.class);
+
+    /**
+     * Registry key holding the flush window in milliseconds
+     */
+    public static final String FLUSH_DELAY_KEY = "visualenv.write.flush.delay";
+    private static final int DEFAULT_FLUSH_DELAY = 1500;
+
+    private final Project project;
+    private final VirtualFile file;
+    private final Alarm alarm;
+    // Pending values by key, in the order they were first edited
+    private final Map<String, String> pending = new LinkedHashMap<>();
+
+    /**
+     * Create a queue for a file
+     *
+     * @param project The project
+     * @param file    The environment file the queue writes to
+     */
+    public EnvWriteQueue(Project project, VirtualFile file) {
+        this.project = project;
+        this.file = file;
+        this.alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    }
+
+    /**
+     * Queue a new value for a variable and restart the flush window.
+     * A later value for the same key replaces the earlier one.
+     *
+     * @param key   The variable name
+     * @param value The new value
+     */
+    public void enqueue(String key, String value) {
+        synchronized (pending) {
+            pending.put(key, value);
+        }
+        alarm.cancelAllRequests();
+        alarm.addRequest(this::flush, getFlushDelay());
+    }
+
+    /**
+     * Write all pending changes now
+     */
+    public void flush() {
+        alarm.cancelAllRequests();
+        Map<String, String> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        if (project.isDisposed() || !file.isValid()) {
+            LOG.warn("Dropping " + batch.size() + " pending change(s) for " + file.getPath());
+            return;
+        }
+        EnvFileManager.writeEnvVariables(project, file, batch);
+    }
+
+    /**
+     * Drop all pending changes without writing them, e.g. when the file stops being an env file
+     */
+    public void discard() {
+        alarm.cancelAllRequests();
+        synchronized (pending) {
+            if (!pending.isEmpty()) {
+                LOG.warn("Dropping " + pending.size() + " pending change(s) for " + file.getPath());
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Whether there are changes waiting to be written
+     */
+    public boolean hasPendingChanges() {
+        synchronized (pending) {
+            return !pending.isEmpty();
+        }
+    }
+
+    public VirtualFile getFile() {
+        return file;
+    }
+
+    private static int getFlushDelay() {
+        return Registry.intValue(FLUSH_DELAY_KEY, DEFAULT_FLUSH_DELAY);
+    }
+
+    @Override
+    public void dispose() {
+        // Once the project is closing its documents can no longer be written; the service flushes before that
+        if (!project.isDisposed() && project.isOpen()) {
+            flush();
+            return;
+        }
+        discard();
+    }
+}
@@ -0,0 +1,142 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.ringlesoft.visualenv.utils.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight in-process metrics for the plugin's own operations.
+ * Timers keep a latency histogram per operation, counters a running total;
+ * both are cheap enough to stay enabled and are shown in the Diagnostics tab.
+ */
+@Service(Service.Level.PROJECT)
+public final class MetricsService {
+    public static final String PARSE = "env.parse";
+    public static final String INCREMENTAL_PARSE = "env.parse.incremental";
+    public static final String WRITE_COMMAND = "env.write.command";
+    public static final String UI_REBUILD = "ui.groups.update";
+    public static final String VFS_EVENTS_FILTER = "vfs.events.filter";
+    public static final String VFS_EVENTS_APPLY = "vfs.events.apply";
+    public static final String COMMAND_RUN = "command.run";
+
+    public static final String PARSED_VARIABLES = "env.parse.variables";
+    public static final String WRITTEN_VARIABLES = "env.write.variables";
+    public static final String VFS_EVENTS_SEEN = "vfs.events.seen";
+    public static final String VFS_EVENTS_RELEVANT = "vfs.events.relevant";
+    public static final String COMMAND_FAILURES = "command.failures";
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public static MetricsService getInstance(@NotNull Project project) {
+        return project.getService(MetricsService.class);
+    }
+
+    /**
+     * Start timing an operation; closing the returned timer records the elapsed time.
+     * Meant for try-with-resources:
+     * <pre>try (MetricsService.Timer ignored = metrics.startTimer(MetricsService.PARSE)) { ... }</pre>
+     */
+    public Timer startTimer(String name) {
+        return new Timer(getTimer(name), System.nanoTime());
+    }
+
+    /**
+     * Record a measured duration for an operation
+     */
+    public void record(String name, long nanos) {
+        getTimer(name).record(nanos);
+    }
+
+    /**
+     * Add to a counter
+     */
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public void increment(String name) {
+        increment(name, 1);
+    }
+
+    /**
+     * @return The histogram of an operation, created empty on first use
+     */
+    public LatencyHistogram getTimer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return The current value of a counter, 0 if never incremented
+     */
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * @return All timers sorted by name
+     */
+    public Map<String, LatencyHistogram> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     * @return A point-in-time copy of all counters sorted by name
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    /**
+     * Clear all timers and counters
+     */
+    public void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * @return A plain text report of all metrics, one line each
+     */
+    public String dump() {
+        StringBuilder report = new StringBuilder("Visual Env metrics\n");
+        getTimers().forEach((name, histogram) -> report
+                .append(name)
+                .append(": count=").append(histogram.getCount())
+                .append(" mean=").append(LatencyHistogram.format(histogram.getMeanNanos()))
+                .append(" p50=").append(LatencyHistogram.format(histogram.getPercentileNanos(50)))
+                .append(" p95=").append(LatencyHistogram.format(histogram.getPercentileNanos(95)))
+                .append(" p99=").append(LatencyHistogram.format(histogram.getPercentileNanos(99)))
+                .append(" max=").append(LatencyHistogram.format(histogram.getMaxNanos()))
+                .append('\n'));
+        getCounters().forEach((name, value) -> report.append(name).append(": ").append(value).append('\n'));
+        return report.toString();
+    }
+
+    /**
+     * A running measurement, recorded when closed
+     */
+    public static final class Timer implements AutoCloseable {
+        private final LatencyHistogram histogram;
+        private final long start;
+
+        private Timer(LatencyHistogram histogram, long start) {
+            this.histogram = histogram;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -40,17 +40,29 @@ public final class ProjectService {
         return projectType;
     }
 
+    /**
+     * Detect the project type and scan for env files, all at once on the calling thread.
+     * The tool window uses the staged, background {@link StartupService} instead.
+     */
     public void initialize() {
         if(project == null) {
             LOG.info("Project is null");
             return;
         }
-        projectType = ProjectDetector.getProjectType(project);
-        System.out.println("Project type: " + projectType);
-        EnvFileService envFileService = project.getService(EnvFileService.class);
+        applyProjectType(ProjectDetector.getProjectType(project));
+        project.getService(EnvFileService.class).scanAndProcessEnvFiles();
+    }
+
+    /**
+     * Remember the detected project type and activate its profile
+     *
+     * @param projectType Type returned by {@link ProjectDetector#getProjectType(Project)}
+     */
+    public void applyProjectType(String projectType) {
+        this.projectType = projectType;
+        LOG.info("Project type: " + projectType);
         EnvProfile activeProfile = ProfileManager.getProfileByName(projectType);
-        envFileService.setActiveProfile(activeProfile);
-        envFileService.scanAndProcessEnvFiles();
+        project.getService(EnvFileService.class).setActiveProfile(activeProfile);
     }
 
 
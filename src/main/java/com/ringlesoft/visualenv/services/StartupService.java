@@ -0,0 +1,142 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.ringlesoft.visualenv.listeners.StartupListener;
+import com.ringlesoft.visualenv.utils.ProjectDetector;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Brings up a project's env files in the background, in stages: detect the project type, discover
+ * the env files, parse the ones in the project root, and once indexing is done look through the whole
+ * project and compute the usage report. Each stage runs as a non-blocking read action and only hands
+ * its result to the EDT, where the next stage is scheduled and {@link StartupListener#TOPIC} is told,
+ * so the tool window can show a skeleton right away and fill it in as stages complete.
+ * Pending stages are cancelled when the project closes, as they expire with this service.
+ */
+@Service(Service.Level.PROJECT)
+public final class StartupService implements Disposable {
+    private static final Logger LOG = Logger.getInstance(StartupService.class);
+
+    /**
+     * Stages of the startup, in order; each is timed from the start under its metric name
+     */
+    public enum Stage {
+        /** The project type is known and its profile is active */
+        DETECT("startup.detect"),
+        /** The env files are known; only those in the project root while indexing is still running */
+        DISCOVER("startup.discover"),
+        /** The env files in the project root are parsed */
+        PARSE("startup.parse"),
+        /** Indexing is done: env files at any depth are discovered and the usage report is computed */
+        INDEX("startup.index");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private final Project project;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile long startNanos;
+    // Last completed stage, or null before the first one
+    private volatile Stage completedStage;
+
+    public StartupService(Project project) {
+        this.project = project;
+    }
+
+    public static StartupService getInstance(@NotNull Project project) {
+        return project.getService(StartupService.class);
+    }
+
+    /**
+     * Start the pipeline, unless it was started before. Can be called from any thread.
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            startNanos = System.nanoTime();
+            LOG.info("Starting Visual Env for project: " + project.getName());
+            detect();
+        }
+    }
+
+    /**
+     * @return true if the stage and all stages before it have completed
+     */
+    public boolean isCompleted(@NotNull Stage stage) {
+        Stage completed = completedStage;
+        return completed != null && completed.compareTo(stage) >= 0;
+    }
+
+    private void detect() {
+        ReadAction.nonBlocking(() -> ProjectDetector.getProjectType(project))
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.nonModal(), projectType -> {
+                    project.getService(ProjectService.class).applyProjectType(projectType);
+                    complete(Stage.DETECT);
+                    discover();
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void discover() {
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        ReadAction.nonBlocking(envFileService::discoverEnvFiles)
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.nonModal(), envFiles -> {
+                    complete(Stage.DISCOVER);
+                    parse(envFiles);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void parse(List<VirtualFile> envFiles) {
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        ReadAction.nonBlocking(() -> envFileService.parseRootEnvFiles(envFiles))
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.nonModal(), ignored -> {
+                    complete(Stage.PARSE);
+                    index();
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void index() {
+        EnvFileService envFileService = project.getService(EnvFileService.class);
+        // Env files below the project root can only be found once the index is available
+        ReadAction.nonBlocking(envFileService::discoverEnvFiles)
+                .inSmartMode(project)
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.nonModal(), ignored ->
+                        EnvUsageService.getInstance(project).refresh(this, report -> complete(Stage.INDEX)))
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void complete(Stage stage) {
+        completedStage = stage;
+        MetricsService.getInstance(project).record(stage.getMetricName(), System.nanoTime() - startNanos);
+        LOG.info("Visual Env startup stage completed: " + stage);
+        project.getMessageBus().syncPublisher(StartupListener.TOPIC).stageCompleted(stage);
+    }
+
+    @Override
+    public void dispose() {
+        completedStage = null;
+    }
+}
@@ -4,7 +4,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.ProjectActivity;
-import com.ringlesoft.visualenv.services.ProjectService;
+import com.ringlesoft.visualenv.services.StartupService;
 import kotlin.Unit;
 import kotlin.coroutines.Continuation;
 import org.jetbrains.annotations.NotNull;
@@ -12,8 +12,8 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Startup activity for Visual Env plugin.
- * This class is responsible for detecting .env files in the project root
- * and creating .env file from .env.example if it doesn't exist.
+ * Starts the staged background startup of the {@link StartupService}, so the project type and
+ * env files are usually known by the time the tool window is first opened.
  */
 public class ProjectStartupActivity implements ProjectActivity {
     private static final Logger LOG = Logger.getInstance(ProjectStartupActivity.class);
@@ -35,7 +35,9 @@ public class ProjectStartupActivity implements ProjectActivity {
     }
 
     private void initializeProject(@NotNull Project project) {
-
+        if (!project.isDisposed()) {
+            StartupService.getInstance(project).start();
+        }
     }
 
 }
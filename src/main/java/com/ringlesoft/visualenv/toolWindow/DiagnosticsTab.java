@@ -0,0 +1,75 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.ringlesoft.visualenv.services.MetricsService;
+import com.ringlesoft.visualenv.utils.LatencyHistogram;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * Tab showing the plugin's own timings and counters from {@link MetricsService}
+ */
+public class DiagnosticsTab extends JPanel {
+    private static final String[] COLUMNS = {"Metric", "Count", "Mean", "p50", "p95", "p99", "Max"};
+
+    private final MetricsService metrics;
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    /**
+     * Create a new Diagnostics tab
+     *
+     * @param metrics The metrics of the current project
+     */
+    public DiagnosticsTab(MetricsService metrics) {
+        this.metrics = metrics;
+        setLayout(new BorderLayout());
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        JButton copyButton = new JButton("Copy");
+        copyButton.addActionListener(e -> CopyPasteManager.getInstance().setContents(new StringSelection(metrics.dump())));
+        buttonsPanel.add(refreshButton);
+        buttonsPanel.add(resetButton);
+        buttonsPanel.add(copyButton);
+        add(buttonsPanel, BorderLayout.NORTH);
+
+        JBTable table = new JBTable(model);
+        table.getEmptyText().setText("No measurements yet");
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        refresh();
+    }
+
+    /**
+     * Reload the table from the current metrics
+     */
+    public void refresh() {
+        model.setRowCount(0);
+        metrics.getTimers().forEach((name, histogram) -> model.addRow(new Object[]{
+                name,
+                histogram.getCount(),
+                LatencyHistogram.format(histogram.getMeanNanos()),
+                LatencyHistogram.format(histogram.getPercentileNanos(50)),
+                LatencyHistogram.format(histogram.getPercentileNanos(95)),
+                LatencyHistogram.format(histogram.getPercentileNanos(99)),
+                LatencyHistogram.format(histogram.getMaxNanos())
+        }));
+        metrics.getCounters().forEach((name, value) -> model.addRow(new Object[]{name, value, "", "", "", "", ""}));
+    }
+}
@@ -0,0 +1,183 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.JBUI;
+import com.ringlesoft.visualenv.listeners.EnvSnapshotListener;
+import com.ringlesoft.visualenv.model.EffectiveEnvironment;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
+import com.ringlesoft.visualenv.services.EffectiveEnvironmentService;
+import com.ringlesoft.visualenv.services.EnvUsageService;
+import com.ringlesoft.visualenv.ui.VisualEnvTheme;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tab showing which value of every variable wins for a mode, and which layer it comes from.
+ * The view follows edits in any layer; refreshes are coalesced and only run while the tab is showing.
+ * The layers are merged in a background read action, as files not parsed yet are read on first use.
+ */
+public class EffectiveEnvironmentTab extends JPanel implements AutoCloseable {
+    private static final String[] COLUMNS = {"Name", "Value", "From", "Overrides"};
+    private static final int MAX_MISSING_SHOWN = 10;
+
+    private final EffectiveEnvironmentService effectiveEnvironmentService;
+    private final EnvUsageService usageService;
+    // Disposed with the tool window, or when the tab is closed because the tool window is rebuilt
+    private final Disposable disposable;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private volatile boolean closed;
+    private final JComboBox<String> modeSelector = new ComboBox<>();
+    private final JBLabel layersLabel = new JBLabel();
+    private final JBLabel missingLabel = new JBLabel();
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    /**
+     * Create a new Effective Environment tab
+     *
+     * @param project The current project
+     * @param parent  Disposable the tab lives no longer than
+     */
+    public EffectiveEnvironmentTab(Project project, Disposable parent) {
+        this.effectiveEnvironmentService = EffectiveEnvironmentService.getInstance(project);
+        this.usageService = EnvUsageService.getInstance(project);
+        this.disposable = Disposer.newDisposable(parent, "Visual Env effective environment tab");
+        Disposer.register(disposable, () -> closed = true);
+        setLayout(new BorderLayout());
+
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        controlsPanel.add(new JBLabel("Mode:"));
+        modeSelector.addActionListener(e -> refresh());
+        controlsPanel.add(modeSelector);
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> {
+            updateModes();
+            refresh();
+        });
+        controlsPanel.add(refreshButton);
+        controlsPanel.add(layersLabel);
+        add(controlsPanel, BorderLayout.NORTH);
+
+        JBTable table = new JBTable(model);
+        table.getEmptyText().setText("No variables in effect");
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+        missingLabel.setBorder(JBUI.Borders.empty(5, 10));
+        missingLabel.setForeground(VisualEnvTheme.WARNING);
+        add(missingLabel, BorderLayout.SOUTH);
+
+        project.getMessageBus().connect(disposable).subscribe(EnvSnapshotListener.TOPIC, new EnvSnapshotListener() {
+            @Override
+            public void snapshotChanged(@NotNull VirtualFile file, @NotNull EnvFileSnapshot snapshot) {
+                queueRefresh();
+            }
+        });
+
+        updateModes();
+        refresh();
+    }
+
+    /**
+     * Reload the mode list, keeping the selected mode if it still exists
+     */
+    public void updateModes() {
+        Object selected = modeSelector.getSelectedItem();
+        List<String> modes = effectiveEnvironmentService.getModes();
+        modeSelector.setModel(new DefaultComboBoxModel<>(modes.toArray(new String[0])));
+        modeSelector.setSelectedItem(selected != null && modes.contains(selected)
+                ? selected : EffectiveEnvironmentService.DEFAULT_MODE);
+    }
+
+    /**
+     * Reload the table from the effective environment of the selected mode
+     */
+    public void refresh() {
+        usageService.refresh(this, this::showMissingKeys);
+        String mode = Objects.toString(modeSelector.getSelectedItem(), EffectiveEnvironmentService.DEFAULT_MODE);
+        ReadAction.nonBlocking(() -> effectiveEnvironmentService.getEnvironment(mode))
+                .coalesceBy(this)
+                .expireWith(disposable)
+                .finishOnUiThread(ModalityState.stateForComponent(this), this::showEnvironment)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void showEnvironment(EffectiveEnvironment environment) {
+        model.setRowCount(0);
+        if (environment == null) {
+            layersLabel.setText("");
+            return;
+        }
+        List<String> layerNames = environment.getLayerNames();
+        layersLabel.setText("Layers, lowest precedence first: " + String.join(" < ", layerNames));
+        for (EffectiveEnvironment.Entry entry : environment.getEntries()) {
+            String name = entry.getVariable().getName();
+            StringBuilder overrides = new StringBuilder();
+            for (int layer : environment.getDefiningLayers(name)) {
+                if (layer != entry.getLayer()) {
+                    if (overrides.length() > 0) {
+                        overrides.append(", ");
+                    }
+                    overrides.append(layerNames.get(layer));
+                }
+            }
+            model.addRow(new Object[]{name, entry.getVariable().getValue(), layerNames.get(entry.getLayer()), overrides.toString()});
+        }
+    }
+
+    /**
+     * List the variables read by sources that no env file defines
+     */
+    private void showMissingKeys(EnvUsageService.Report report) {
+        Set<String> missing = report.getMissingKeys();
+        if (missing.isEmpty()) {
+            missingLabel.setText("");
+            missingLabel.setToolTipText(null);
+            return;
+        }
+        List<String> shown = missing.stream().limit(MAX_MISSING_SHOWN).toList();
+        String more = missing.size() > shown.size() ? " and " + (missing.size() - shown.size()) + " more" : "";
+        missingLabel.setText("Read in code but not defined in any env file: " + String.join(", ", shown) + more);
+        missingLabel.setToolTipText(String.join(", ", missing));
+    }
+
+    /**
+     * Schedule one refresh on the EDT for any number of snapshot changes
+     */
+    private void queueRefresh() {
+        if (!refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        ApplicationManager.getApplication().invokeLater(() -> {
+            refreshQueued.set(false);
+            if (isShowing()) {
+                refresh();
+            }
+        }, o -> closed);
+    }
+
+    @Override
+    public void close() {
+        Disposer.dispose(disposable);
+    }
+}
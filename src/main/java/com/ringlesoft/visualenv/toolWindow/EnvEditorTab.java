@@ -2,21 +2,31 @@ package com.ringlesoft.visualenv.toolWindow;
 
 import com.intellij.icons.AllIcons;
 import javax.swing.SwingConstants;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.components.JBScrollPane;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.components.JBTextField;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.JBUI;
 import com.ringlesoft.visualenv.listeners.FileSaveListener;
 import com.ringlesoft.visualenv.model.EnvFileDefinition;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
 import com.ringlesoft.visualenv.model.EnvVariable;
 import com.ringlesoft.visualenv.profile.GenericProfile;
+import com.ringlesoft.visualenv.services.EnvFileDiscoveryService;
 import com.ringlesoft.visualenv.services.EnvFileService;
+import com.ringlesoft.visualenv.services.EnvUsageService;
+import com.ringlesoft.visualenv.services.MetricsService;
 import com.ringlesoft.visualenv.services.ProjectService;
 import com.ringlesoft.visualenv.ui.VisualEnvTheme;
 import com.ringlesoft.visualenv.utils.EnvFileManager;
+import com.ringlesoft.visualenv.utils.IntArray;
 import org.apache.maven.model.Profile;
 
 import javax.swing.*;
@@ -27,15 +37,25 @@ import java.awt.event.ItemEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * Tab for displaying and editing environment variables
  */
 public class EnvEditorTab extends JPanel implements AutoCloseable {
+
+    /**
+     * Files with more variables than this are shown one page at a time
+     */
+    static final int PAGE_SIZE = 500;
     
     private final Project project;
     private final EnvFileService envFileService;
@@ -46,25 +66,43 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
     private JPanel envVarsPanel;
     private final Map<String, EnvGroupPanel> groupPanels = new HashMap<>();
     private VirtualFile selectedEnvFile;
+    // Snapshot currently shown and the file it belongs to; the search index of the snapshot drives the filter
+    private EnvFileSnapshot currentSnapshot;
+    private VirtualFile shownFile;
+    private int page;
+    private JPanel pagerPanel;
+    private JLabel pageLabel;
+    private JButton previousPageButton;
+    private JButton nextPageButton;
     private final Map<String, String> fileBasenameToPath = new HashMap<>();
     private final FileSaveListener fileSaveListener;
+    // Disposed with the tool window, or when the tab is closed because the tool window is rebuilt;
+    // cancels pending background loads
+    private final Disposable disposable;
 
     /**
      * Create a new Environment editor tab
      *
      * @param project    The current project
      * @param envFileService The environment variable service
+     * @param parent     Disposable the tab lives no longer than
      */
-    public EnvEditorTab(Project project, EnvFileService envFileService, ProjectService projectService) {
+    public EnvEditorTab(Project project, EnvFileService envFileService, ProjectService projectService, Disposable parent) {
         this.project = project;
         this.envFileService = envFileService;
         this.projectService = projectService;
+        this.disposable = Disposer.newDisposable(parent, "Visual Env editor tab");
 
         //Listeners
         // In your tool window factory or constructor
         fileSaveListener = new FileSaveListener(project, envFileService);
         fileSaveListener.setEnvEditorTab(this);
         fileSaveListener.setupListener();
+        Disposer.register(disposable, () -> {
+            // Do not lose edits that are still waiting for the flush window
+            envFileService.flushPendingWrites();
+            fileSaveListener.dispose();
+        });
         
         setLayout(new BorderLayout());
         
@@ -216,9 +254,38 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
         
         // Add the scroll pane to the main panel
         mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(createPagerPanel(), BorderLayout.SOUTH);
         
         return mainPanel;
     }
+
+    /**
+     * Create the page controls, shown only for files with more than one page of variables
+     */
+    private JPanel createPagerPanel() {
+        pagerPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 2));
+        previousPageButton = new JButton(AllIcons.Actions.Back);
+        previousPageButton.setToolTipText("Previous page");
+        previousPageButton.addActionListener(e -> showPage(page - 1));
+        nextPageButton = new JButton(AllIcons.Actions.Forward);
+        nextPageButton.setToolTipText("Next page");
+        nextPageButton.addActionListener(e -> showPage(page + 1));
+        pageLabel = new JLabel();
+        pageLabel.setForeground(VisualEnvTheme.TEXT_SECONDARY);
+        pagerPanel.add(previousPageButton);
+        pagerPanel.add(pageLabel);
+        pagerPanel.add(nextPageButton);
+        pagerPanel.setVisible(false);
+        return pagerPanel;
+    }
+
+    private void showPage(int newPage) {
+        if (currentSnapshot == null || shownFile == null) {
+            return;
+        }
+        page = newPage;
+        showVariableGroups(shownFile, currentSnapshot);
+    }
     
     /**
      * Load all available .env files in the project
@@ -227,16 +294,16 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
         envFileSelector.removeAllItems();
         fileBasenameToPath.clear();
         
-        // Get files from EnvFileService that have been scanned and loaded
-        Map<VirtualFile, List<EnvVariable>> fileEnvVariables = envFileService.getFileEnvVariables();
+        // Get the files discovered in the project; files in packages are named by their directory
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
         VirtualFile activeEnvFile = envFileService.getActiveEnvFile();
         String activeFileName = null;
         
         // Add files from the service, but verify they still exist
-        for (VirtualFile virtualFile : fileEnvVariables.keySet()) {
+        for (VirtualFile virtualFile : envFileService.getEnvFiles()) {
             if (virtualFile != null && virtualFile.exists() && virtualFile.isValid()) {
                 String absolutePath = virtualFile.getPath();
-                String basename = virtualFile.getName();
+                String basename = discovery.getDisplayName(virtualFile);
                 fileBasenameToPath.put(basename, absolutePath);
                 envFileSelector.addItem(basename);
                 
@@ -264,25 +331,110 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
     }
     
     /**
-     * Load a specific .env file
+     * Bring the file selector in line with the project's env files after some were created or deleted.
+     * Items around the selection are replaced without a selection change, so the variables shown are
+     * only reloaded when the selected file itself is gone.
+     */
+    public void syncEnvFiles() {
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
+        Map<String, String> current = new LinkedHashMap<>();
+        for (VirtualFile virtualFile : envFileService.getEnvFiles()) {
+            if (virtualFile.isValid()) {
+                current.put(discovery.getDisplayName(virtualFile), virtualFile.getPath());
+            }
+        }
+        String selected = (String) envFileSelector.getSelectedItem();
+        if (selected == null || !Objects.equals(current.get(selected), fileBasenameToPath.get(selected))) {
+            loadEnvFiles();
+            return;
+        }
+        for (int i = envFileSelector.getItemCount() - 1; i >= 0; i--) {
+            if (!envFileSelector.getItemAt(i).equals(selected)) {
+                envFileSelector.removeItemAt(i);
+            }
+        }
+        int index = 0;
+        boolean beforeSelection = true;
+        for (String name : current.keySet()) {
+            if (name.equals(selected)) {
+                beforeSelection = false;
+            } else if (beforeSelection) {
+                envFileSelector.insertItemAt(name, index++);
+            } else {
+                envFileSelector.addItem(name);
+            }
+        }
+        fileBasenameToPath.clear();
+        fileBasenameToPath.putAll(current);
+    }
+
+    /**
+     * Load a specific .env file.
+     * The file is parsed in a background read action; a newer selection or a write to the
+     * document cancels a pending parse, and only the final UI update runs on the EDT.
      */
     private void loadEnvFile(String filenameOrPath) {
         String path = fileBasenameToPath.getOrDefault(filenameOrPath, filenameOrPath);
         VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
         if (file != null) {
             projectService.setActiveEnvFile(file.getPath());
-            List<EnvVariable> variables = envFileService.parseEnvFile(file);
-            updateVariableGroups(variables);
+            envFileService.setActiveEnvFile(file);
+            ReadAction.nonBlocking(() -> {
+                        EnvFileSnapshot snapshot = envFileService.reloadSnapshot(file);
+                        // Build the search index off the EDT as well
+                        snapshot.getSearchIndex();
+                        return snapshot;
+                    })
+                    .coalesceBy(this)
+                    .expireWith(disposable)
+                    .finishOnUiThread(ModalityState.stateForComponent(this), snapshot -> {
+                        // Ignore results for a file that is no longer selected
+                        if (file.equals(selectedEnvFile)) {
+                            updateVariableGroups(file, snapshot);
+                            // Dim the keys no source reads once the usage report is in
+                            EnvUsageService.getInstance(project).refresh(this, report -> envVarsPanel.repaint());
+                        }
+                    })
+                    .submit(AppExecutorUtil.getAppExecutorService());
         }
     }
     
     /**
      * Update the UI with variables organized by group
+     * A new snapshot of the file already shown is reconciled into the existing panels,
+     * so only changed rows and groups are touched; other files rebuild the panels
      */
-    private void updateVariableGroups(List<EnvVariable> variables) {
-        // Group variables by group name
-        Map<String, List<EnvVariable>> groupedVars = variables.stream()
-                .collect(Collectors.groupingBy(EnvVariable::getGroup));
+    private void updateVariableGroups(VirtualFile file, EnvFileSnapshot snapshot) {
+        if (snapshot == currentSnapshot && file.equals(shownFile)) {
+            return;
+        }
+        try (MetricsService.Timer ignored = MetricsService.getInstance(project).startTimer(MetricsService.UI_REBUILD)) {
+            showVariableGroups(file, snapshot);
+        }
+    }
+
+    private void showVariableGroups(VirtualFile file, EnvFileSnapshot snapshot) {
+        boolean sameFile = file.equals(shownFile);
+        if (!sameFile) {
+            page = 0;
+        }
+        currentSnapshot = snapshot;
+        shownFile = file;
+        List<EnvVariable> variables = snapshot.getVariables();
+
+        // Group variables by group name, remembering each variable's position in the snapshot
+        Map<String, List<EnvVariable>> groupedVars = new LinkedHashMap<>();
+        Map<String, IntArray> groupedIds = new HashMap<>();
+        for (int id : visibleIds(snapshot)) {
+            EnvVariable variable = variables.get(id);
+            groupedVars.computeIfAbsent(variable.getGroup(), group -> new ArrayList<>()).add(variable);
+            groupedIds.computeIfAbsent(variable.getGroup(), group -> new IntArray()).add(id);
+        }
+
+        if (sameFile) {
+            reconcileVariableGroups(groupedVars, groupedIds);
+            return;
+        }
 
         // Add panels for each group
         envVarsPanel.removeAll();
@@ -291,34 +443,143 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
         for (Map.Entry<String, List<EnvVariable>> entry : groupedVars.entrySet()) {
             String groupName = entry.getKey();
             List<EnvVariable> groupVars = entry.getValue();
+            int[] ids = groupedIds.get(groupName).toArray();
 
-            EnvGroupPanel groupPanel = new EnvGroupPanel(groupName, groupVars, envFileService, projectService, this::updateStatus, this);
+            EnvGroupPanel groupPanel = new EnvGroupPanel(groupName, groupVars, ids, envFileService, projectService, this::updateStatus, this);
             groupPanels.put(groupName, groupPanel);
             envVarsPanel.add(groupPanel);
         }
 
         // Apply current filter
-        filterVariables();
+        applyPanelFilter();
 
         // Fix visibility issues
         envVarsPanel.revalidate();
         envVarsPanel.repaint();
     }
 
+    /**
+     * Update the existing group panels in place: groups are matched by name and their
+     * rows by variable name, empty groups are removed and new groups inserted in order
+     */
+    private void reconcileVariableGroups(Map<String, List<EnvVariable>> groupedVars, Map<String, IntArray> groupedIds) {
+        boolean structureChanged = false;
+
+        // Remove groups that no longer have variables
+        Iterator<Map.Entry<String, EnvGroupPanel>> iterator = groupPanels.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, EnvGroupPanel> entry = iterator.next();
+            if (!groupedVars.containsKey(entry.getKey())) {
+                envVarsPanel.remove(entry.getValue());
+                iterator.remove();
+                structureChanged = true;
+            }
+        }
+
+        int position = 0;
+        for (Map.Entry<String, List<EnvVariable>> entry : groupedVars.entrySet()) {
+            String groupName = entry.getKey();
+            int[] ids = groupedIds.get(groupName).toArray();
+            EnvGroupPanel groupPanel = groupPanels.get(groupName);
+            if (groupPanel == null) {
+                groupPanel = new EnvGroupPanel(groupName, entry.getValue(), ids, envFileService, projectService, this::updateStatus, this);
+                groupPanels.put(groupName, groupPanel);
+                envVarsPanel.add(groupPanel, position);
+                structureChanged = true;
+            } else {
+                groupPanel.refreshVariables(entry.getValue(), ids);
+                if (envVarsPanel.getComponent(position) != groupPanel) {
+                    envVarsPanel.remove(groupPanel);
+                    envVarsPanel.add(groupPanel, position);
+                    structureChanged = true;
+                }
+            }
+            position++;
+        }
+
+        // Matches of an active filter refer to the previous snapshot
+        if (!filterField.getText().isEmpty()) {
+            applyPanelFilter();
+        }
+
+        if (structureChanged) {
+            envVarsPanel.revalidate();
+            envVarsPanel.repaint();
+        }
+    }
+
     private void updateStatus(String s) {
 
     }
 
     /**
      * Filter variables based on the filter text
+     * Matches come from the search index of the current snapshot. A single page of variables is
+     * filtered by hiding rows in the panels; paged files show the first page of the matches instead.
      */
     private void filterVariables() {
-        String filterText = filterField.getText().toLowerCase();
-        
+        if (isPaged()) {
+            showPage(0);
+        } else {
+            applyPanelFilter();
+        }
+    }
+
+    private void applyPanelFilter() {
+        String filterText = filterField.getText();
+        BitSet matches = null;
+        // Pages only hold matching variables already
+        if (!filterText.isEmpty() && currentSnapshot != null && !isPaged()) {
+            matches = currentSnapshot.getSearchIndex().search(filterText);
+        }
+
         for (EnvGroupPanel panel : groupPanels.values()) {
-            panel.applyFilter(filterText);
+            panel.applyFilter(matches);
         }
     }
+
+    private boolean isPaged() {
+        return currentSnapshot != null && currentSnapshot.size() > PAGE_SIZE;
+    }
+
+    /**
+     * Snapshot positions of the variables to show: all of them for files that fit on one page,
+     * otherwise the current page of the variables matching the filter
+     */
+    private int[] visibleIds(EnvFileSnapshot snapshot) {
+        if (snapshot.size() <= PAGE_SIZE) {
+            pagerPanel.setVisible(false);
+            int[] ids = new int[snapshot.size()];
+            Arrays.setAll(ids, i -> i);
+            return ids;
+        }
+
+        String filterText = filterField.getText();
+        BitSet matches = filterText.isEmpty() ? null : snapshot.getSearchIndex().search(filterText);
+        int total = matches == null ? snapshot.size() : matches.cardinality();
+        int pages = Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+        page = Math.max(0, Math.min(page, pages - 1));
+        int from = page * PAGE_SIZE;
+        int[] ids = new int[Math.min(PAGE_SIZE, total - from)];
+        if (matches == null) {
+            Arrays.setAll(ids, i -> from + i);
+        } else {
+            int id = matches.nextSetBit(0);
+            for (int skipped = 0; skipped < from; skipped++) {
+                id = matches.nextSetBit(id + 1);
+            }
+            for (int i = 0; i < ids.length; i++, id = matches.nextSetBit(id + 1)) {
+                ids[i] = id;
+            }
+        }
+
+        pageLabel.setText(total == 0 ? "No matches"
+                : String.format("%,d-%,d of %,d", from + 1, from + ids.length, total));
+        previousPageButton.setEnabled(page > 0);
+        nextPageButton.setEnabled(page < pages - 1);
+        pagerPanel.setVisible(true);
+        return ids;
+    }
     
     /**
      * Get the currently selected env file path
@@ -424,12 +685,19 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
 
     @Override
     public void close() {
-        fileSaveListener.dispose();
+        Disposer.dispose(disposable);
     }
 
     public void updateFromLocalChanges(VirtualFile savedFile) {
-        if (savedFile != null) {
-            reloadCurrentEnvFile(); // This is expensive for now
+        if (savedFile == null) {
+            return;
+        }
+        // The service keeps tracked files up to date as their documents change
+        EnvFileSnapshot snapshot = envFileService.getSnapshot(savedFile);
+        if (snapshot != null) {
+            updateVariableGroups(savedFile, snapshot);
+        } else {
+            reloadCurrentEnvFile();
         }
     }
 
@@ -491,8 +759,9 @@ public class EnvEditorTab extends JPanel implements AutoCloseable {
             // Check if current file is a template
             EnvFileDefinition definition = envFileService.getEnvFileDefinitionForFile(selectedEnvFile);
             if (definition != null && definition.isTemplate()) {
-                // Check if there's no primary file in the project
-                boolean hasPrimaryFile = envFileService.getFileEnvVariables().keySet().stream()
+                // Check if there's no primary file next to the template
+                boolean hasPrimaryFile = envFileService.getEnvFiles().stream()
+                    .filter(file -> Objects.equals(file.getParent(), selectedEnvFile.getParent()))
                     .anyMatch(file -> {
                         EnvFileDefinition def = envFileService.getEnvFileDefinitionForFile(file);
                         return def != null && def.isPrimary();
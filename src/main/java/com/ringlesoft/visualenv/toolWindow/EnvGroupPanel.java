@@ -1,45 +1,60 @@
 package com.ringlesoft.visualenv.toolWindow;
 
 import com.intellij.icons.AllIcons;
-import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.table.JBTable;
 import com.intellij.util.ui.JBUI;
+import com.ringlesoft.visualenv.index.EnvKeyIndex;
+import com.ringlesoft.visualenv.model.EnvInterpolator;
 import com.ringlesoft.visualenv.model.EnvVariable;
 import com.ringlesoft.visualenv.model.EnvVariableDefinition;
+import com.ringlesoft.visualenv.services.EnvFileDiscoveryService;
 import com.ringlesoft.visualenv.services.EnvFileService;
+import com.ringlesoft.visualenv.services.EnvUsageService;
 import com.ringlesoft.visualenv.services.ProjectService;
 import com.ringlesoft.visualenv.ui.VisualEnvTheme;
-import com.ringlesoft.visualenv.utils.CommandRunner;
 
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
 /**
- * Panel that displays environment variables grouped by category
+ * Panel that displays environment variables grouped by category.
+ * Variables are shown in a table whose cells are painted by shared renderers, so only the
+ * visible rows cost anything to draw and filtering just changes the row filter.
  */
 public class EnvGroupPanel extends JPanel {
 
-    private List<EnvVariable> variables;
+    private static final int ROW_HEIGHT = 28;
+
     private final EnvFileService envFileService;
     private final ProjectService projectService;
     private final Consumer<String> statusUpdater;
+    private final EnvVariableTableModel tableModel;
+    private final TableRowSorter<EnvVariableTableModel> rowSorter;
+    private final JBTable variablesTable;
     private final JPanel variablesPanel;
+    private final JLabel countBadge;
     private boolean expanded = true;
-    private String currentFilter;
-    
-    // Debounce related fields
-    private final Map<String, Timer> debounceTimers = new HashMap<>();
-    private static final int DEBOUNCE_DELAY = 1500; // milliseconds
+    // Snapshot position of each row, used to look rows up in the filter matches
+    private int[] rowIds;
+    private BitSet currentMatches;
 
-    public EnvGroupPanel(String groupName, List<EnvVariable> variables, EnvFileService envFileService, ProjectService projectService, Consumer<String> statusUpdater, EnvEditorTab parentTab) {
-        this.variables = variables;
+    public EnvGroupPanel(String groupName, List<EnvVariable> variables, int[] rowIds, EnvFileService envFileService, ProjectService projectService, Consumer<String> statusUpdater, EnvEditorTab parentTab) {
+        this.rowIds = rowIds;
         this.envFileService = envFileService;
         this.projectService = projectService;
         this.statusUpdater = statusUpdater;
@@ -69,7 +84,7 @@ public class EnvGroupPanel extends JPanel {
         headerPanel.add(titleLabel, BorderLayout.CENTER);
 
         // Add count badge to the right
-        JLabel countBadge = new JLabel(variables.size() + " ");
+        countBadge = new JLabel(variables.size() + " ");
         countBadge.setForeground(VisualEnvTheme.TEXT_SECONDARY);
         // reduce font size by 1
         countBadge.setFont(countBadge.getFont().deriveFont(Font.PLAIN, countBadge.getFont().getSize() - 2));
@@ -84,7 +99,7 @@ public class EnvGroupPanel extends JPanel {
                 expandIcon.setText(expanded ? "-" : "+");
                 
                 // Update variables panel visibility based on expansion state and current filter
-                boolean hasVisibleVariables = hasMatchingVariables();
+                boolean hasVisibleVariables = variablesTable.getRowCount() > 0;
                 variablesPanel.setVisible(expanded && hasVisibleVariables);
                 
                 revalidate();
@@ -94,31 +109,66 @@ public class EnvGroupPanel extends JPanel {
         
         add(headerPanel, BorderLayout.NORTH);
         
-        // Create panel for variables
-        variablesPanel = new JPanel();
-        variablesPanel.setLayout(new BoxLayout(variablesPanel, BoxLayout.Y_AXIS));
+        // Create the table for variables
+        tableModel = new EnvVariableTableModel(variables, this::onValueEdited);
+        rowSorter = new TableRowSorter<>(tableModel);
+        rowSorter.setSortable(EnvVariableTableModel.NAME_COLUMN, false);
+        rowSorter.setSortable(EnvVariableTableModel.VALUE_COLUMN, false);
+        variablesTable = createTable();
+
+        variablesPanel = new JPanel(new BorderLayout());
         variablesPanel.setBorder(VisualEnvTheme.VARIABLES_PANEL_BORDER);
-        
-        // Add each variable control
-        for (EnvVariable variable : variables) {
-            JPanel varPanel = createControlForVariable(variable);
-            variablesPanel.add(varPanel);
-        }
+        variablesPanel.add(variablesTable, BorderLayout.CENTER);
         add(variablesPanel, BorderLayout.CENTER);
     }
-    
-    private JPanel createControlForVariable(EnvVariable variable) {
-        JPanel panel = new JPanel(new BorderLayout(10, 0));
-        panel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        panel.setBorder(VisualEnvTheme.VARIABLE_PANEL_BORDER);
-
-        // Create variable name label
-        JLabel nameLabel = new JLabel(variable.getName() + ":");
-        nameLabel.setFont(nameLabel.getFont().deriveFont(Font.PLAIN, nameLabel.getFont().getSize() - 1));
-        nameLabel.setBorder(VisualEnvTheme.VARIABLE_NAME_BORDER);
-        nameLabel.setToolTipText(getDescriptionForVariable(variable));
-
-        // Add right-click context menu
+
+    private JBTable createTable() {
+        JBTable table = new JBTable(tableModel);
+        table.setRowSorter(rowSorter);
+        table.setTableHeader(null);
+        table.setShowGrid(false);
+        table.setStriped(false);
+        table.setRowHeight(JBUI.scale(ROW_HEIGHT));
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        TableColumn nameColumn = table.getColumnModel().getColumn(EnvVariableTableModel.NAME_COLUMN);
+        nameColumn.setCellRenderer(new NameCellRenderer());
+        nameColumn.setPreferredWidth(JBUI.scale(200));
+
+        TableColumn valueColumn = table.getColumnModel().getColumn(EnvVariableTableModel.VALUE_COLUMN);
+        valueColumn.setCellRenderer(new EnvValueCellRenderer(this::getDefinition, this::resolve));
+        valueColumn.setCellEditor(new EnvValueCellEditor(this::getDefinition));
+        valueColumn.setPreferredWidth(JBUI.scale(300));
+
+        // One context menu for every row
+        JPopupMenu contextMenu = createContextMenu(table);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showContextMenu(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showContextMenu(e);
+            }
+
+            private void showContextMenu(MouseEvent e) {
+                if (!e.isPopupTrigger()) {
+                    return;
+                }
+                int row = table.rowAtPoint(e.getPoint());
+                if (row >= 0) {
+                    table.setRowSelectionInterval(row, row);
+                    contextMenu.show(table, e.getX(), e.getY());
+                }
+            }
+        });
+        return table;
+    }
+
+    private JPopupMenu createContextMenu(JTable table) {
         JPopupMenu contextMenu = new JPopupMenu();
 
         JMenuItem copyItem = new JMenuItem("Copy Variable Name");
@@ -126,9 +176,12 @@ public class EnvGroupPanel extends JPanel {
         copyItem.setHorizontalAlignment(SwingConstants.LEFT);
         copyItem.setPreferredSize(new Dimension(180, 30));
         copyItem.addActionListener(e -> {
-            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(
-                    new StringSelection(variable.getName()), null);
-            statusUpdater.accept("Variable name copied to clipboard");
+            EnvVariable variable = getSelectedVariable(table);
+            if (variable != null) {
+                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(
+                        new StringSelection(variable.getName()), null);
+                statusUpdater.accept("Variable name copied to clipboard");
+            }
         });
         contextMenu.add(copyItem);
 
@@ -136,7 +189,12 @@ public class EnvGroupPanel extends JPanel {
         renameItem.setIcon(AllIcons.Actions.Edit);
         renameItem.setHorizontalAlignment(SwingConstants.LEFT);
         renameItem.setPreferredSize(new Dimension(180, 30));
-        renameItem.addActionListener(e -> showRenameDialog(variable));
+        renameItem.addActionListener(e -> {
+            EnvVariable variable = getSelectedVariable(table);
+            if (variable != null) {
+                showRenameDialog(variable);
+            }
+        });
         contextMenu.add(renameItem);
 
         JMenuItem deleteItem = new JMenuItem("Delete Variable");
@@ -144,182 +202,103 @@ public class EnvGroupPanel extends JPanel {
         deleteItem.setHorizontalAlignment(SwingConstants.LEFT);
         deleteItem.setPreferredSize(new Dimension(180, 30));
         deleteItem.addActionListener(e -> {
-            if(envFileService.deleteEnvVariable(variable.getName())){
-                // Remove the variable from the list
-            } else {
-                // failed
+            EnvVariable variable = getSelectedVariable(table);
+            if (variable != null && !envFileService.deleteEnvVariable(variable.getName())) {
+                statusUpdater.accept("Failed to delete " + variable.getName());
+            }
+        });
+
+        JMenuItem findItem = new JMenuItem("Find in Env Files");
+        findItem.setIcon(AllIcons.Actions.Find);
+        findItem.setHorizontalAlignment(SwingConstants.LEFT);
+        findItem.setPreferredSize(new Dimension(180, 30));
+        findItem.addActionListener(e -> {
+            EnvVariable variable = getSelectedVariable(table);
+            if (variable != null) {
+                showDefinitions(variable.getName(), table);
             }
         });
+        contextMenu.add(findItem);
 
         // Hover Effect
         addHoverEffect(copyItem);
         addHoverEffect(renameItem);
+        addHoverEffect(findItem);
         addHoverEffect(deleteItem);
 
         contextMenu.add(deleteItem);
+        return contextMenu;
+    }
 
-        nameLabel.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mousePressed(MouseEvent e) {
-                if (SwingUtilities.isRightMouseButton(e)) {
-                    contextMenu.show(nameLabel, e.getX(), e.getY());
-                }
+    /**
+     * List every env file of the project defining a variable, from the key index, and open the chosen one
+     */
+    private void showDefinitions(String name, JComponent anchor) {
+        Project project = projectService.project;
+        if (DumbService.isDumb(project)) {
+            statusUpdater.accept("Env files can be searched once indexing has finished");
+            return;
+        }
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
+        List<String> labels = new ArrayList<>();
+        List<OpenFileDescriptor> targets = new ArrayList<>();
+        for (Map.Entry<VirtualFile, List<EnvKeyIndex.Definition>> entry : EnvKeyIndex.getDefinitions(project, name).entrySet()) {
+            for (EnvKeyIndex.Definition definition : entry.getValue()) {
+                labels.add(discovery.getDisplayName(entry.getKey()) + ":" + (definition.getLine() + 1));
+                targets.add(new OpenFileDescriptor(project, entry.getKey(), definition.getOffset()));
             }
-        });
-        panel.add(nameLabel, BorderLayout.WEST);
-
-        // Create variable value component based on type
-        Component valueComponent = createControlByType(variable);
-        panel.add(valueComponent, BorderLayout.CENTER);
-
-        return panel;
-    }
-    
-    private Component createControlByType(EnvVariable variable) {
-        EnvVariableDefinition definition = envFileService.getActiveProfile().getDefinition(variable.getName());
-        
-        if (definition != null) {
-            return switch (definition.getType()) {
-                case BOOLEAN -> createBooleanControl(variable);
-                case DROPDOWN -> createDropdownControl(variable, definition.getPossibleValues());
-                case INTEGER -> createIntegerControl(variable);
-                case GENERATED -> createGeneratorControl(variable);
-                default -> createTextControl(variable, variable.isSecret());
-            };
-        } else {
-            // Default to text input
-            return createTextControl(variable, variable.isSecret());
         }
-    }
-    
-    private Component createTextControl(EnvVariable variable, boolean isSecret) {
-        JTextField textField;
-        
-        if (isSecret) {
-            textField = new JPasswordField(variable.getValue());
-        } else {
-            textField = new JTextField(variable.getValue());
+        if (targets.isEmpty()) {
+            statusUpdater.accept(name + " is not defined in any indexed env file");
+            return;
         }
-        
-        // Set preferred size to maintain consistent height
-        Dimension preferredSize = textField.getPreferredSize();
-        preferredSize.height = 28;  // Fixed height for text fields
-        textField.setPreferredSize(preferredSize);
-        textField.setMaximumSize(new Dimension(Integer.MAX_VALUE, preferredSize.height));
-        
-        textField.addActionListener(e -> updateVariable(variable.getName(), textField.getText()));
-        
-        // Add document listener for debounced saving
-        addDebounceListener(textField, variable.getName());
-        
-        return textField;
-    }
-    
-    private Component createBooleanControl(EnvVariable variable) {
-        JCheckBox checkBox = new JCheckBox();
-        checkBox.setSelected("true".equalsIgnoreCase(variable.getValue()) || 
-                             "1".equals(variable.getValue()) || 
-                             "yes".equalsIgnoreCase(variable.getValue()));
-        
-        // Set preferred size to maintain consistent height
-        Dimension preferredSize = checkBox.getPreferredSize();
-        checkBox.setPreferredSize(preferredSize);
-        checkBox.setMaximumSize(preferredSize);
-        
-        checkBox.addItemListener(e -> {
-            boolean isSelected = e.getStateChange() == ItemEvent.SELECTED;
-            updateVariable(variable.getName(), isSelected ? "true" : "false");
-        });
-        
-        return checkBox;
-    }
-    
-    private Component createDropdownControl(EnvVariable variable, List<String> possibleValues) {
-        JComboBox<String> comboBox = new ComboBox<>();
-        
-        for (String value : possibleValues) {
-            comboBox.addItem(value);
+        if (targets.size() == 1) {
+            targets.get(0).navigate(true);
+            return;
         }
-        
-        // Set current value
-        comboBox.setSelectedItem(variable.getValue());
-        
-        // Set preferred size to maintain consistent height
-        Dimension preferredSize = comboBox.getPreferredSize();
-        preferredSize.height = 28;  // Fixed height for dropdown
-        comboBox.setPreferredSize(preferredSize);
-        comboBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, preferredSize.height));
-        
-        comboBox.addItemListener(e -> {
-            if (e.getStateChange() == ItemEvent.SELECTED) {
-                String selectedValue = (String) comboBox.getSelectedItem();
-                updateVariable(variable.getName(), selectedValue);
-            }
-        });
-        
-        return comboBox;
+        JBPopupFactory.getInstance()
+                .createPopupChooserBuilder(labels)
+                .setTitle(name + " is defined in " + targets.size() + " places")
+                .setItemChosenCallback(label -> targets.get(labels.indexOf(label)).navigate(true))
+                .createPopup()
+                .showInCenterOf(anchor);
     }
-    
-    private Component createIntegerControl(EnvVariable variable) {
 
-        if(variable.hasInterpolation()){ // If the variable has interpolation just make it a text field
-            return createTextControl(variable, variable.isSecret());
-        }
+    private EnvVariable getSelectedVariable(JTable table) {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : tableModel.getVariable(table.convertRowIndexToModel(row));
+    }
 
-        JSpinner spinner = new JSpinner(new SpinnerNumberModel(
-                Integer.parseInt(variable.getValue().isEmpty() ? "0" : variable.getValue()),
-                Integer.MIN_VALUE,
-                Integer.MAX_VALUE,
-                1
-        ));
-        
-        // Set preferred size to maintain consistent height
-        Dimension preferredSize = spinner.getPreferredSize();
-        preferredSize.height = 28;  // Fixed height for spinner
-        spinner.setPreferredSize(preferredSize);
-        spinner.setMaximumSize(new Dimension(Integer.MAX_VALUE, preferredSize.height));
-        
-        spinner.addChangeListener(e -> updateVariable(variable.getName(), spinner.getValue().toString()));
-        
-        return spinner;
+    private EnvVariableDefinition getDefinition(String name) {
+        return envFileService.getActiveProfile().getDefinition(name);
     }
 
-    private Component createGeneratorControl(EnvVariable variable) {
-        // For now this is bypassed. TODO: Work on this for the next version
-        if(true){
-            return createTextControl(variable, variable.isSecret());
-        }
-        EnvVariableDefinition definition = envFileService.getActiveProfile().getDefinition(variable.getName());
-        if(definition != null && definition.getGeneratorCommand() != null) {
-            String command = definition.getGeneratorCommand();
-            JButton button = new JButton("Generate");
-            button.setToolTipText("Generate " + variable.getName());
-            button.addActionListener(e -> {
-                try {
-                    button.setText("Generating...");
-                    CommandRunner commandRunner =  projectService.getCommandRunner();
-                    commandRunner.runCommand(command);
-                } catch (Exception ex) {
-                    // Failed to execute
-                } finally {
-                    button.setText("Generate");
-                }
-            });
-            // Set preferred size to maintain consistent height
-            Dimension preferredSize = button.getPreferredSize();
-            preferredSize.height = 28;  // Fixed height for button
-            button.setPreferredSize(preferredSize);
-            button.setMaximumSize(new Dimension(Integer.MAX_VALUE, preferredSize.height));
-            return button;
-        }
-        return createTextControl(variable, variable.isSecret());
+    private EnvInterpolator.Resolution resolve(EnvVariable variable) {
+        VirtualFile file = envFileService.getActiveEnvFile();
+        EnvInterpolator interpolator = file != null ? envFileService.getInterpolator(file) : null;
+        return interpolator != null ? interpolator.resolve(variable.getName()) : null;
     }
-    
-    private String getDescriptionForVariable(EnvVariable variable) {
-        EnvVariableDefinition definition = envFileService.getActiveProfile().getDefinition(variable.getName());
+
+    private String getDescriptionForVariable(String name) {
+        EnvVariableDefinition definition = getDefinition(name);
         return definition != null ? definition.getDescription() : "";
     }
-    
+
+    /**
+     * Write a value entered in the table.
+     * Discrete choices are written right away; typed text is queued and written together
+     * with the other pending edits of the file.
+     */
+    private void onValueEdited(EnvVariable variable, String value) {
+        EnvVariableDefinition definition = getDefinition(variable.getName());
+        EnvVariableDefinition.VariableType type = definition != null ? definition.getType() : null;
+        if (type == EnvVariableDefinition.VariableType.BOOLEAN || type == EnvVariableDefinition.VariableType.DROPDOWN) {
+            updateVariable(variable.getName(), value);
+        } else if (!envFileService.queueEnvVariableUpdate(variable.getName(), value)) {
+            statusUpdater.accept("Failed to update " + variable.getName());
+        }
+    }
+
     private void updateVariable(String name, String value) {
         boolean success = envFileService.updateEnvVariable(name, value);
         if (success) {
@@ -330,44 +309,39 @@ public class EnvGroupPanel extends JPanel {
     }
     
     private boolean isSecretVariable(String name) {
-        EnvVariableDefinition definition = envFileService.getActiveProfile().getDefinition(name);
+        EnvVariableDefinition definition = getDefinition(name);
         return definition != null && definition.isSecret();
     }
     
     /**
-     * Apply filtering to show only variables matching the filter
+     * Apply filtering to show only matching variables
+     *
+     * @param matches Snapshot positions of the matching variables, or null to show all
      */
-    public void applyFilter(String filterText) {
-        this.currentFilter = filterText;
+    public void applyFilter(BitSet matches) {
+        this.currentMatches = matches;
         updateVariablesPanel();
     }
 
     /**
-     * Updates the variables panel based on the current filter
+     * Updates the row filter and visibility based on the current matches
      */
     private void updateVariablesPanel() {
-        variablesPanel.removeAll();
-        int visibleCount = 0;
-
-        for (EnvVariable variable : variables) {
-            boolean shouldShow = currentFilter == null || currentFilter.isEmpty() ||
-                    variable.getName().toLowerCase().contains(currentFilter) ||
-                    variable.getValue().toLowerCase().contains(currentFilter);
-
-            if (shouldShow) {
-                JPanel varPanel = createControlForVariable(variable);
-                variablesPanel.add(varPanel);
-                visibleCount++;
-
-                // Add a separator between variables
-                if (visibleCount < countVisibleVariables()) {
-                    variablesPanel.add(Box.createRigidArea(new Dimension(0, 1)));
+        if (currentMatches == null) {
+            rowSorter.setRowFilter(null);
+        } else {
+            BitSet matches = currentMatches;
+            int[] ids = rowIds;
+            rowSorter.setRowFilter(new RowFilter<>() {
+                @Override
+                public boolean include(Entry<? extends EnvVariableTableModel, ? extends Integer> entry) {
+                    return matches.get(ids[entry.getIdentifier()]);
                 }
-            }
+            });
         }
-        
+
         // Update panel visibility: show the entire panel if there are matching variables
-        boolean hasMatches = visibleCount > 0;
+        boolean hasMatches = variablesTable.getRowCount() > 0;
         setVisible(hasMatches);
         
         // Update variables content visibility: show content only if expanded AND has matches
@@ -375,10 +349,6 @@ public class EnvGroupPanel extends JPanel {
         
         // Update the maximum size based on preferred size after content changes
         updateMaximumSize();
-        
-        // Refresh the UI
-        variablesPanel.revalidate();
-        variablesPanel.repaint();
     }
     
     /**
@@ -387,95 +357,54 @@ public class EnvGroupPanel extends JPanel {
     private void updateMaximumSize() {
         revalidate();
         setMaximumSize(new Dimension(Integer.MAX_VALUE, getPreferredSize().height));
-    }
-    
-    /**
-     * Count how many variables would be visible with current filter
-     */
-    private int countVisibleVariables() {
-        if (currentFilter == null || currentFilter.isEmpty()) {
-            return variables.size();
-        }
-        
-        return (int) variables.stream()
-            .filter(v -> v.getName().toLowerCase().contains(currentFilter) ||
-                    v.getValue().toLowerCase().contains(currentFilter))
-            .count();
+        repaint();
     }
     
     /**
      * Refresh the display with updated variables
+     * Rows are reconciled by name, so unchanged rows keep their selection and any cell being edited
      * @param updatedVariables The updated list of variables
+     * @param updatedRowIds Snapshot position of each updated variable
      */
-    public void refreshVariables(List<EnvVariable> updatedVariables) {
-        // Clear current variables and components
-        variables = updatedVariables;
-        variablesPanel.removeAll();
-        
-        // Rebuild the variable controls
-        for (EnvVariable variable : variables) {
-            JPanel varPanel = createControlForVariable(variable);
-            variablesPanel.add(varPanel);
-        }
-        
-        // Re-apply any current filter
-        if (currentFilter != null && !currentFilter.isEmpty()) {
-            applyFilter(currentFilter);
+    public void refreshVariables(List<EnvVariable> updatedVariables, int[] updatedRowIds) {
+        int previousCount = tableModel.getRowCount();
+        rowIds = updatedRowIds;
+        tableModel.reconcile(updatedVariables);
+        countBadge.setText(updatedVariables.size() + " ");
+
+        // The owner re-applies a non-empty filter with matches for the new snapshot
+        if (currentMatches == null && previousCount != updatedVariables.size()) {
+            boolean hasMatches = variablesTable.getRowCount() > 0;
+            setVisible(hasMatches);
+            variablesPanel.setVisible(hasMatches && expanded);
+            updateMaximumSize();
         }
-        
-        variablesPanel.revalidate();
-        variablesPanel.repaint();
+        // Unchanged rows may still show a resolved value that depends on a changed variable
+        variablesTable.repaint();
     }
-    
-    /**
-     * Adds a debounced document listener to text fields
-     * This ensures that changes are saved after the user stops typing, rather than on every keystroke
-     * 
-     * @param textField The text field to monitor
-     * @param variableName The name of the variable to update
-     */
-    private void addDebounceListener(JTextField textField, String variableName) {
-        textField.getDocument().addDocumentListener(new DocumentListener() {
-            @Override
-            public void insertUpdate(DocumentEvent e) {
-                debounceUpdate(variableName, textField.getText());
-            }
-
-            @Override
-            public void removeUpdate(DocumentEvent e) {
-                debounceUpdate(variableName, textField.getText());
-            }
 
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-                debounceUpdate(variableName, textField.getText());
-            }
-        });
-    }
-    
     /**
-     * Handles the debounced update for a variable value
-     * Cancels any existing timer and creates a new one
-     * 
-     * @param variableName The name of the variable to update
-     * @param value The new value to set
+     * Renders variable names with their description as tooltip
      */
-    private void debounceUpdate(String variableName, String value) {
-        // Cancel any existing timer for this variable
-        Timer existingTimer = debounceTimers.get(variableName);
-        if (existingTimer != null) {
-            existingTimer.stop();
+    private class NameCellRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            String name = (String) value;
+            super.getTableCellRendererComponent(table, name + ":", isSelected, hasFocus, row, column);
+            setFont(table.getFont().deriveFont(Font.PLAIN, table.getFont().getSize() - 1));
+            String description = getDescriptionForVariable(name);
+            if (EnvUsageService.getInstance(projectService.project).getReport().isUnused(name)) {
+                // Keys no source reads are dimmed, from the last usage report
+                if (!isSelected) {
+                    setForeground(VisualEnvTheme.TEXT_SECONDARY);
+                }
+                description = description == null || description.isEmpty() ? "Not read by any PHP, JavaScript or Python source"
+                        : description + " (not read by any PHP, JavaScript or Python source)";
+            }
+            setToolTipText(description);
+            return this;
         }
-        
-        // Create a new timer
-        Timer timer = new Timer(DEBOUNCE_DELAY, e
-                -> com.intellij.openapi.application.ApplicationManager.getApplication().invokeLater(()
-                -> updateVariable(variableName, value), com.intellij.openapi.application.ModalityState.defaultModalityState()));
-        timer.setRepeats(false);
-        timer.start();
-        
-        // Store the timer
-        debounceTimers.put(variableName, timer);
     }
 
     private void showRenameDialog(EnvVariable variable) {
@@ -571,14 +500,4 @@ public class EnvGroupPanel extends JPanel {
         return input;
     }
 
-    private boolean hasMatchingVariables() {
-        if (currentFilter == null || currentFilter.isEmpty()) {
-            return true;
-        }
-        
-        return variables.stream()
-            .anyMatch(v -> v.getName().toLowerCase().contains(currentFilter) ||
-                    v.getValue().toLowerCase().contains(currentFilter));
-    }
-
 }
@@ -0,0 +1,120 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBPasswordField;
+import com.intellij.ui.components.JBTextField;
+import com.ringlesoft.visualenv.model.EnvVariable;
+import com.ringlesoft.visualenv.model.EnvVariableDefinition;
+import com.ringlesoft.visualenv.model.EnvVariableDefinition.VariableType;
+
+import javax.swing.*;
+import javax.swing.table.TableCellEditor;
+import java.awt.*;
+import java.text.ParseException;
+import java.util.function.Function;
+
+/**
+ * Edits the value column of the variables table with a control matching the variable type:
+ * a checkbox for BOOLEAN, a combo box for DROPDOWN, a spinner for INTEGER and a text field
+ * (a password field for secrets) otherwise. GENERATED variables are edited as text until
+ * generation is supported. The controls are created once and reused for every row.
+ */
+public class EnvValueCellEditor extends AbstractCellEditor implements TableCellEditor {
+    private final Function<String, EnvVariableDefinition> definitions;
+
+    private final JBCheckBox checkBox = new JBCheckBox();
+    private final ComboBox<String> comboBox = new ComboBox<>();
+    private final JSpinner spinner = new JSpinner(new SpinnerNumberModel(0, Integer.MIN_VALUE, Integer.MAX_VALUE, 1));
+    private final JBTextField textField = new JBTextField();
+    private final JBPasswordField passwordField = new JBPasswordField();
+
+    private VariableType editedType;
+    private boolean editedSecret;
+
+    /**
+     * @param definitions Looks up the definition of a variable by name; may return null
+     */
+    public EnvValueCellEditor(Function<String, EnvVariableDefinition> definitions) {
+        this.definitions = definitions;
+        checkBox.setOpaque(true);
+        checkBox.addActionListener(e -> stopCellEditing());
+        comboBox.putClientProperty("JComboBox.isTableCellEditor", Boolean.TRUE);
+        comboBox.addActionListener(e -> stopCellEditing());
+        textField.addActionListener(e -> stopCellEditing());
+        passwordField.addActionListener(e -> stopCellEditing());
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        EnvVariable variable = (EnvVariable) value;
+        EnvVariableDefinition definition = definitions.apply(variable.getName());
+        String rawValue = variable.getRawValue();
+        editedType = definition != null ? definition.getType() : VariableType.STRING;
+        editedSecret = variable.isSecret();
+
+        if (editedType == VariableType.INTEGER && (variable.hasInterpolation() || !isInteger(rawValue))) {
+            // Interpolated or malformed numbers are edited as text
+            editedType = VariableType.STRING;
+        }
+
+        switch (editedType) {
+            case BOOLEAN -> {
+                checkBox.setSelected(EnvValueCellRenderer.isTrue(rawValue));
+                checkBox.setBackground(table.getSelectionBackground());
+                return checkBox;
+            }
+            case DROPDOWN -> {
+                comboBox.removeAllItems();
+                for (String possibleValue : definition.getPossibleValues()) {
+                    comboBox.addItem(possibleValue);
+                }
+                comboBox.setSelectedItem(rawValue);
+                return comboBox;
+            }
+            case INTEGER -> {
+                spinner.setValue(rawValue.isEmpty() ? 0 : Integer.parseInt(rawValue));
+                return spinner;
+            }
+            default -> {
+                JTextField field = editedSecret ? passwordField : textField;
+                field.setText(rawValue);
+                return field;
+            }
+        }
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+        return switch (editedType) {
+            case BOOLEAN -> checkBox.isSelected() ? "true" : "false";
+            case DROPDOWN -> comboBox.getSelectedItem();
+            case INTEGER -> spinner.getValue().toString();
+            default -> editedSecret ? new String(passwordField.getPassword()) : textField.getText();
+        };
+    }
+
+    @Override
+    public boolean stopCellEditing() {
+        if (editedType == VariableType.INTEGER) {
+            try {
+                spinner.commitEdit();
+            } catch (ParseException e) {
+                // Keep the last valid value
+            }
+        }
+        return super.stopCellEditing();
+    }
+
+    private static boolean isInteger(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.intellij.ui.ColoredTableCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBCheckBox;
+import com.ringlesoft.visualenv.model.EnvInterpolator;
+import com.ringlesoft.visualenv.model.EnvVariable;
+import com.ringlesoft.visualenv.model.EnvVariableDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.util.function.Function;
+
+/**
+ * Renders the value column of the variables table.
+ * A single checkbox and a single label are reused for every row, so painting a row
+ * never creates components; booleans are drawn as checkboxes and secrets are masked.
+ * Values with "${...}" references are followed by a preview of the resolved value.
+ */
+public class EnvValueCellRenderer implements TableCellRenderer {
+    private final Function<String, EnvVariableDefinition> definitions;
+    private final Function<EnvVariable, EnvInterpolator.Resolution> resolutions;
+    private final DefaultTableCellRenderer textRenderer = new DefaultTableCellRenderer();
+    private final PreviewRenderer previewRenderer = new PreviewRenderer();
+    private final JBCheckBox checkBox = new JBCheckBox();
+
+    /**
+     * @param definitions Looks up the definition of a variable by name; may return null
+     * @param resolutions Resolves the references in a variable's value; may return null
+     */
+    public EnvValueCellRenderer(Function<String, EnvVariableDefinition> definitions,
+                                Function<EnvVariable, EnvInterpolator.Resolution> resolutions) {
+        this.definitions = definitions;
+        this.resolutions = resolutions;
+        checkBox.setOpaque(true);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        EnvVariable variable = (EnvVariable) value;
+        EnvVariableDefinition definition = definitions.apply(variable.getName());
+
+        if (definition != null && definition.getType() == EnvVariableDefinition.VariableType.BOOLEAN) {
+            checkBox.setSelected(isTrue(variable.getRawValue()));
+            checkBox.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+            return checkBox;
+        }
+
+        if (variable.hasInterpolation()) {
+            EnvInterpolator.Resolution resolution = resolutions.apply(variable);
+            if (resolution != null && (resolution.isCyclic() || !resolution.getValue().equals(variable.getRawValue()))) {
+                previewRenderer.resolution = resolution;
+                return previewRenderer.getTableCellRendererComponent(table, variable, isSelected, hasFocus, row, column);
+            }
+        }
+
+        return textRenderer.getTableCellRendererComponent(table, variable.getValue(), isSelected, hasFocus, row, column);
+    }
+
+    /**
+     * Draws the written value followed by the resolved one, or a warning for circular references
+     */
+    private static class PreviewRenderer extends ColoredTableCellRenderer {
+        private EnvInterpolator.Resolution resolution;
+
+        @Override
+        protected void customizeCellRenderer(@NotNull JTable table, Object value, boolean selected,
+                                             boolean hasFocus, int row, int column) {
+            EnvVariable variable = (EnvVariable) value;
+            append(variable.getValue());
+            if (resolution.isCyclic()) {
+                append("  circular reference", SimpleTextAttributes.ERROR_ATTRIBUTES);
+                setToolTipText("The references of " + variable.getName() + " lead back to it");
+                return;
+            }
+            String resolved = resolution.getValue();
+            append("  \u2192 ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            append(resolution.usesSecret() ? EnvVariable.mask(resolved.length()) : resolved,
+                    SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            setToolTipText(resolution.getMissingReferences().isEmpty() ? null
+                    : "Not defined: " + String.join(", ", resolution.getMissingReferences()));
+        }
+    }
+
+    /**
+     * Same notion of "true" the panel controls have always used
+     */
+    static boolean isTrue(String value) {
+        return "true".equalsIgnoreCase(value) || "1".equals(value) || "yes".equalsIgnoreCase(value);
+    }
+}
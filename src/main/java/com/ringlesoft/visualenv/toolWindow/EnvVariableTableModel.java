@@ -0,0 +1,157 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.ringlesoft.visualenv.model.EnvVariable;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Table model with one row per environment variable: the name and the value.
+ * Only the value column is editable; edited values are reported to a {@link ValueChangeListener}
+ * and reflected in the row right away, before the file has been written.
+ */
+public class EnvVariableTableModel extends AbstractTableModel {
+    public static final int NAME_COLUMN = 0;
+    public static final int VALUE_COLUMN = 1;
+
+    /**
+     * Receives values entered in the table
+     */
+    public interface ValueChangeListener {
+        void valueChanged(EnvVariable variable, String newValue);
+    }
+
+    private final List<EnvVariable> variables = new ArrayList<>();
+    private final ValueChangeListener valueChangeListener;
+
+    public EnvVariableTableModel(List<EnvVariable> variables, ValueChangeListener valueChangeListener) {
+        this.variables.addAll(variables);
+        this.valueChangeListener = valueChangeListener;
+    }
+
+    /**
+     * Replace all rows
+     */
+    public void setVariables(List<EnvVariable> variables) {
+        this.variables.clear();
+        this.variables.addAll(variables);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Bring the rows in line with an updated list of variables, matching rows by name.
+     * Only rows whose content changed are reported as updated, and only missing or new names
+     * cause row deletions or insertions, so selection, editing and scroll position survive.
+     * Rows are expected to keep their order; a moved row costs a linear search.
+     *
+     * @param updated The new variables in display order
+     */
+    public void reconcile(List<EnvVariable> updated) {
+        // Drop rows whose names are gone
+        Set<String> updatedNames = new HashSet<>(updated.size() * 4 / 3 + 1);
+        for (EnvVariable variable : updated) {
+            updatedNames.add(variable.getName());
+        }
+        for (int row = variables.size() - 1; row >= 0; row--) {
+            if (!updatedNames.contains(variables.get(row).getName())) {
+                variables.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        }
+
+        for (int row = 0; row < updated.size(); row++) {
+            EnvVariable variable = updated.get(row);
+            if (row < variables.size() && variables.get(row).getName().equals(variable.getName())) {
+                if (!sameContent(variables.get(row), variable)) {
+                    variables.set(row, variable);
+                    fireTableRowsUpdated(row, row);
+                }
+                continue;
+            }
+            int existing = indexOfName(variable.getName(), row + 1);
+            if (existing >= 0) {
+                // Moved row
+                variables.remove(existing);
+                fireTableRowsDeleted(existing, existing);
+            }
+            variables.add(row, variable);
+            fireTableRowsInserted(row, row);
+        }
+
+        // Duplicate names in the old rows can leave extra rows behind
+        if (variables.size() > updated.size()) {
+            int first = updated.size();
+            int last = variables.size() - 1;
+            variables.subList(first, last + 1).clear();
+            fireTableRowsDeleted(first, last);
+        }
+    }
+
+    private int indexOfName(String name, int from) {
+        for (int row = from; row < variables.size(); row++) {
+            if (variables.get(row).getName().equals(name)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sameContent(EnvVariable a, EnvVariable b) {
+        return a.getRawValue().equals(b.getRawValue()) && a.isSecret() == b.isSecret()
+                && Objects.equals(a.getGroup(), b.getGroup()) && Objects.equals(a.getSource(), b.getSource());
+    }
+
+    public List<EnvVariable> getVariables() {
+        return new ArrayList<>(variables);
+    }
+
+    public EnvVariable getVariable(int row) {
+        return variables.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return variables.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == NAME_COLUMN ? "Name" : "Value";
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        EnvVariable variable = variables.get(row);
+        return column == NAME_COLUMN ? variable.getName() : variable;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == VALUE_COLUMN;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column != VALUE_COLUMN || value == null) {
+            return;
+        }
+        EnvVariable variable = variables.get(row);
+        String newValue = value.toString();
+        if (newValue.equals(variable.getRawValue())) {
+            return;
+        }
+        variables.set(row, new EnvVariable(variable.getName(), newValue, variable.getSource(),
+                variable.isSecret(), variable.getGroup()));
+        fireTableCellUpdated(row, column);
+        valueChangeListener.valueChanged(variable, newValue);
+    }
+}
@@ -1,16 +1,23 @@
 package com.ringlesoft.visualenv.toolWindow;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.AnimatedIcon;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBTabbedPane;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
 import com.intellij.util.ui.JBUI;
 import com.ringlesoft.visualenv.listeners.EnvFileWatcher;
+import com.ringlesoft.visualenv.listeners.StartupListener;
 import com.ringlesoft.visualenv.services.EnvFileService;
+import com.ringlesoft.visualenv.services.MetricsService;
 import com.ringlesoft.visualenv.services.ProjectService;
+import com.ringlesoft.visualenv.services.StartupService;
 import com.ringlesoft.visualenv.ui.VisualEnvTheme;
 import org.jetbrains.annotations.NotNull;
 
@@ -25,6 +32,11 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
     private JPanel mainPanel;
     private JPanel bottomPanel;
     private EnvFileWatcher envFileWatcher;
+    private Disposable toolWindowDisposable;
+    // Tabs of the normal UI and the disposable they live in; null while the skeleton or the empty state is shown
+    private EnvEditorTab envEditorTab;
+    private EffectiveEnvironmentTab effectiveTab;
+    private Disposable tabsDisposable;
 
 
     @Override
@@ -32,10 +44,18 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
         this.project = project;
         this.envService = project.getService(EnvFileService.class);
         this.projectService = project.getService(ProjectService.class);
+        this.toolWindowDisposable = toolWindow.getDisposable();
         
-        // Initialize the project service and scan for .env files
-        // This ensures files are scanned before the UI is created
-        projectService.initialize();
+        // Detection and scanning run in the background; a skeleton is shown until the files are known
+        StartupService startupService = StartupService.getInstance(project);
+        project.getMessageBus().connect(toolWindow.getDisposable()).subscribe(StartupListener.TOPIC,
+                new StartupListener() {
+                    @Override
+                    public void stageCompleted(@NotNull StartupService.Stage stage) {
+                        startupStageCompleted(stage);
+                    }
+                });
+        startupService.start();
         
         envFileWatcher = new EnvFileWatcher(project, this);
         envFileWatcher.startWatching();
@@ -52,32 +72,62 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
 
     private void createComponents() {
         // Check if there are any .env files in the project
-        if (envService.getFileEnvVariables().isEmpty()) {
+        if (!envService.getEnvFiles().isEmpty()) {
+            // Show normal UI when .env files are available
+            createNormalUI();
+        } else if (StartupService.getInstance(project).isCompleted(StartupService.Stage.PARSE)) {
             // Show centered message when no .env files are found
             createEmptyStateUI();
         } else {
-            // Show normal UI when .env files are available
-            createNormalUI();
+            // Files are still being looked for
+            createLoadingStateUI();
+        }
+    }
+
+    /**
+     * Fill in the UI as the background startup progresses. The skeleton and the empty state are
+     * replaced as soon as files are known; once indexing is done, files found deeper in the
+     * project are added to the existing UI.
+     */
+    private void startupStageCompleted(StartupService.Stage stage) {
+        if (mainPanel == null) {
+            return;
+        }
+        if (envEditorTab == null) {
+            updateUI();
+        } else if (stage == StartupService.Stage.INDEX) {
+            envFilesChanged();
         }
     }
 
+    /**
+     * Create a skeleton shown while the project is detected and its .env files discovered
+     */
+    private void createLoadingStateUI() {
+        createMessageUI(new JBLabel("Looking for .env files...", new AnimatedIcon.Default(), SwingConstants.LEFT));
+    }
+
     /**
      * Create UI for when no .env files are found in the project
      */
     private void createEmptyStateUI() {
-        JPanel emptyPanel = new JPanel(new GridBagLayout());
+        createMessageUI(new JBLabel("No .env files in this project"));
+    }
+
+    private void createMessageUI(JLabel messageLabel) {
+        disposeTabs();
+        JPanel messagePanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         
-        JLabel emptyLabel = new JBLabel("No .env files in this project");
-        emptyLabel.setFont(emptyLabel.getFont().deriveFont(Font.PLAIN, 16f));
-        emptyLabel.setForeground(UIManager.getColor("Label.disabledForeground"));
+        messageLabel.setFont(messageLabel.getFont().deriveFont(Font.PLAIN, 16f));
+        messageLabel.setForeground(UIManager.getColor("Label.disabledForeground"));
         
         gbc.gridx = 0;
         gbc.gridy = 0;
         gbc.anchor = GridBagConstraints.CENTER;
-        emptyPanel.add(emptyLabel, gbc);
+        messagePanel.add(messageLabel, gbc);
         
-        mainPanel.add(emptyPanel, BorderLayout.CENTER);
+        mainPanel.add(messagePanel, BorderLayout.CENTER);
     }
 
     /**
@@ -88,14 +138,30 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
         JPanel contentPanel = new JPanel(new BorderLayout());
         JTabbedPane tabbedPane = new JBTabbedPane();
 
+        // The tabs subscribe to project events; they are disposed when the UI is rebuilt or the tool window goes away
+        tabsDisposable = Disposer.newDisposable(toolWindowDisposable, "Visual Env tool window tabs");
+
         // Create Environment Variables tab
-        JPanel envPanel = new EnvEditorTab(project, envService, projectService);
-        tabbedPane.addTab("Environment Variables", envPanel);
+        envEditorTab = new EnvEditorTab(project, envService, projectService, tabsDisposable);
+        tabbedPane.addTab("Environment Variables", envEditorTab);
         // Add Artisan tab if supported
         if (envService.getActiveProfile().supportsArtisanCommands()) {
             JPanel artisanPanel = createCliActionsPanel();
             tabbedPane.addTab("CLI Commands", artisanPanel);
         }
+        EffectiveEnvironmentTab effectiveTab = new EffectiveEnvironmentTab(project, tabsDisposable);
+        this.effectiveTab = effectiveTab;
+        tabbedPane.addTab("Effective Environment", effectiveTab);
+        DiagnosticsTab diagnosticsTab = new DiagnosticsTab(MetricsService.getInstance(project));
+        tabbedPane.addTab("Diagnostics", diagnosticsTab);
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedComponent() == effectiveTab) {
+                effectiveTab.updateModes();
+                effectiveTab.refresh();
+            } else if (tabbedPane.getSelectedComponent() == diagnosticsTab) {
+                diagnosticsTab.refresh();
+            }
+        });
 
         contentPanel.add(tabbedPane, BorderLayout.CENTER);
 
@@ -151,16 +217,11 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
      */
     public void updateUI() {
         // Clear the main panel completely
+        disposeTabs();
         mainPanel.removeAll();
         
         // Check if there are any .env files and rebuild UI accordingly
-        if (envService.getFileEnvVariables().isEmpty()) {
-            // Show empty state UI
-            createEmptyStateUI();
-        } else {
-            // Rebuild normal UI
-            createNormalUI();
-        }
+        createComponents();
         
         // Refresh UI
         mainPanel.revalidate();
@@ -168,6 +229,48 @@ public class VisualEnvToolWindowFactory implements ToolWindowFactory, AutoClosea
     }
 
 
+    /**
+     * Dispose the tabs of the normal UI, if shown, before it is replaced
+     */
+    private void disposeTabs() {
+        if (tabsDisposable != null) {
+            Disposer.dispose(tabsDisposable);
+            tabsDisposable = null;
+        }
+        envEditorTab = null;
+        effectiveTab = null;
+    }
+
+    /**
+     * Update the UI after env files were created, deleted, renamed or moved.
+     * The tool window is only rebuilt when the project gains its first file or loses its last one;
+     * otherwise the file lists are updated in place and the variables shown stay as they are,
+     * unless the file showing them is gone.
+     */
+    public void envFilesChanged() {
+        boolean empty = envService.getEnvFiles().isEmpty();
+        if (empty != (envEditorTab == null)) {
+            updateUI();
+            return;
+        }
+        if (envEditorTab != null) {
+            envEditorTab.syncEnvFiles();
+            effectiveTab.updateModes();
+        }
+    }
+
+    /**
+     * Show the new variables of a file whose content changed on disk, if it is the selected file.
+     * Unchanged rows keep their variables, so only the changed keys are repainted.
+     *
+     * @param file The changed file
+     */
+    public void envFileContentChanged(VirtualFile file) {
+        if (envEditorTab != null && file.getPath().equals(envEditorTab.getSelectedFilePath())) {
+            envEditorTab.updateFromLocalChanges(file);
+        }
+    }
+
     /**
      * Add a new environment variable button and functionality
      */
@@ -9,6 +9,7 @@ import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.util.Key;
+import com.ringlesoft.visualenv.services.MetricsService;
 import org.jetbrains.annotations.NotNull;
 
 
@@ -87,6 +88,7 @@ public class CommandRunner {
             GeneralCommandLine commandLine = prepareCommandLine(path, command, args);
             ProcessHandler processHandler = ProcessHandlerFactory.getInstance()
                     .createProcessHandler(commandLine);
+            addRuntimeListener(processHandler);
             processHandler.startNotify();
         } catch (Exception e) {
             // Handle error
@@ -99,9 +101,10 @@ public class CommandRunner {
             GeneralCommandLine commandLine = prepareCommandLine(path, command, args);
             OSProcessHandler processHandler = new OSProcessHandler(commandLine);
             processHandler.addProcessListener(processListener);
+            addRuntimeListener(processHandler);
             processHandler.startNotify();
         } catch (Exception e) {
-            // Handle error
+            MetricsService.getInstance(project).increment(MetricsService.COMMAND_FAILURES);
         }
     }
 
@@ -124,6 +127,7 @@ public class CommandRunner {
                     ProcessHandler processHandler = ProcessHandlerFactory.getInstance()
                             .createProcessHandler(commandLine);
                     processHandler.addProcessListener(processListener);
+                    addRuntimeListener(processHandler);
                     processHandler.startNotify();
                     processHandler.waitFor();
                 } catch (Exception e) {
@@ -133,6 +137,29 @@ public class CommandRunner {
         }.queue();
     }
 
+    /**
+     * Record the process runtime, from start to termination, and count non-zero exits
+     */
+    private void addRuntimeListener(ProcessHandler processHandler) {
+        MetricsService metrics = MetricsService.getInstance(project);
+        processHandler.addProcessListener(new ProcessListener() {
+            private long start;
+
+            @Override
+            public void startNotified(@NotNull ProcessEvent event) {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void processTerminated(@NotNull ProcessEvent event) {
+                metrics.record(MetricsService.COMMAND_RUN, System.nanoTime() - start);
+                if (event.getExitCode() != 0) {
+                    metrics.increment(MetricsService.COMMAND_FAILURES);
+                }
+            }
+        });
+    }
+
     private ProcessListener outputHandler() {
         StringBuilder output = new StringBuilder();
         return new ProcessListener() {
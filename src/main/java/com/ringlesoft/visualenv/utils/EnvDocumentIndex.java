@@ -0,0 +1,108 @@
+package com.ringlesoft.visualenv.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Key to line-range index over a single version of .env content.
+ * The index is built with one lexer pass and then answers key lookups with a hash lookup.
+ * It is tied to the modification stamp of the content it was built from, so callers
+ * can tell whether it is still valid for the current document.
+ */
+public final class EnvDocumentIndex {
+    private final long modificationStamp;
+    private final CharSequence text;
+    private final List<EnvLexer.Token> tokens;
+    private final Map<String, EnvLexer.Token> entries;
+    private final Map<String, EnvLexer.Token> commentedEntries;
+
+    /**
+     * Build an index over the given content
+     *
+     * @param text              The .env content; must not change while the index is in use
+     * @param modificationStamp The version of the content
+     */
+    public EnvDocumentIndex(@NotNull CharSequence text, long modificationStamp) {
+        this.modificationStamp = modificationStamp;
+        this.text = text;
+        this.tokens = Collections.unmodifiableList(EnvLexer.tokenize(text));
+
+        Map<String, EnvLexer.Token> entries = new HashMap<>();
+        Map<String, EnvLexer.Token> commentedEntries = new HashMap<>();
+        for (EnvLexer.Token token : tokens) {
+            // Keep the first occurrence, like a top-down search would
+            if (token.isEntry()) {
+                entries.putIfAbsent(token.getKey(), token);
+            } else if (token.isCommentedEntry()) {
+                commentedEntries.putIfAbsent(token.getKey(), token);
+            }
+        }
+        this.entries = entries;
+        this.commentedEntries = commentedEntries;
+    }
+
+    /**
+     * @return The modification stamp of the content this index was built from
+     */
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    /**
+     * @return The content this index was built from
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * @return All lines in document order
+     */
+    public List<EnvLexer.Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Find the line defining a key
+     *
+     * @param key The variable key
+     * @return The first entry for the key, or null if it is not defined
+     */
+    public @Nullable EnvLexer.Token getEntry(@NotNull String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Find the commented-out line ("# KEY=VALUE") for a key
+     *
+     * @param key The variable key
+     * @return The first commented entry for the key, or null if there is none
+     */
+    public @Nullable EnvLexer.Token getCommentedEntry(@NotNull String key) {
+        return commentedEntries.get(key);
+    }
+
+    public boolean containsKey(@NotNull String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return All defined keys
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return Whether the content is empty or ends with a line feed
+     */
+    public boolean endsWithLineBreak() {
+        return text.length() == 0 || text.charAt(text.length() - 1) == '\n';
+    }
+}
@@ -0,0 +1,368 @@
+package com.ringlesoft.visualenv.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans writes of one or more variables into .env content.
+ * All replacements and appends are computed against a single {@link EnvDocumentIndex}
+ * and merged into one {@link Edit}, so a whole batch can be applied as a single
+ * document mutation instead of one full-text scan and one edit per variable.
+ * Edits only cover the parts of the content that change: comments, "export" prefixes,
+ * quote styles and line separators of everything else stay exactly as they are.
+ */
+public final class EnvEditPlanner {
+    private static final String OTHER_SECTION = "Other";
+
+    private EnvEditPlanner() {
+    }
+
+    /**
+     * A single replacement of the range [startOffset, endOffset) with new text
+     */
+    public static final class Edit {
+        private final int startOffset;
+        private final int endOffset;
+        private final String replacement;
+
+        public Edit(int startOffset, int endOffset, @NotNull String replacement) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.replacement = replacement;
+        }
+
+        public int getStartOffset() {
+            return startOffset;
+        }
+
+        public int getEndOffset() {
+            return endOffset;
+        }
+
+        public String getReplacement() {
+            return replacement;
+        }
+
+        public boolean isEmpty() {
+            return startOffset == endOffset && replacement.isEmpty();
+        }
+
+        /**
+         * Create the smallest edit turning one text into another, leaving their common prefix and suffix alone
+         */
+        public static Edit between(@NotNull CharSequence oldText, @NotNull CharSequence newText) {
+            int prefix = 0;
+            int maxPrefix = Math.min(oldText.length(), newText.length());
+            while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            int maxSuffix = maxPrefix - prefix;
+            while (suffix < maxSuffix && oldText.charAt(oldText.length() - 1 - suffix)
+                    == newText.charAt(newText.length() - 1 - suffix)) {
+                suffix++;
+            }
+            return new Edit(prefix, oldText.length() - suffix,
+                    newText.subSequence(prefix, newText.length() - suffix).toString());
+        }
+
+        /**
+         * Apply this edit to a piece of text
+         */
+        public String applyTo(@NotNull CharSequence text) {
+            return new StringBuilder(text.length() - (endOffset - startOffset) + replacement.length())
+                    .append(text, 0, startOffset)
+                    .append(replacement)
+                    .append(text, endOffset, text.length())
+                    .toString();
+        }
+    }
+
+    /**
+     * Plan setting the given variables.
+     * Existing keys get only their value replaced, in the quote style it was written in, so an
+     * "export" prefix and an inline comment on the line are kept. Missing keys are normalized and
+     * appended at the end of the content in map iteration order.
+     *
+     * @param index     Index of the current content
+     * @param variables Keys and unformatted values to write
+     * @return One edit covering every change
+     */
+    public static Edit plan(@NotNull EnvDocumentIndex index, @NotNull Map<String, String> variables) {
+        CharSequence text = index.getText();
+        Map<EnvLexer.Token, String> replacements = new IdentityHashMap<>();
+        Map<String, String> appends = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            String key = entry.getKey();
+            EnvLexer.Token token = index.getEntry(key);
+            if (token == null) {
+                key = normalizeKey(key);
+                token = index.getEntry(key);
+            }
+            if (token != null) {
+                String value = formatValue(entry.getValue(), token.getQuote());
+                // Keep an inline comment that directly follows an empty value apart from the new value
+                if (token.getCommentStart() == token.getValueEnd() && !value.isEmpty()) {
+                    value += " ";
+                }
+                replacements.put(token, value);
+            } else {
+                appends.put(key, key + "=" + formatValue(entry.getValue()));
+            }
+        }
+
+        if (replacements.isEmpty() && appends.isEmpty()) {
+            return new Edit(text.length(), text.length(), "");
+        }
+
+        List<EnvLexer.Token> tokens = new ArrayList<>(replacements.keySet());
+        tokens.sort(Comparator.comparingInt(EnvLexer.Token::getValueStart));
+
+        int startOffset = tokens.isEmpty() ? text.length() : tokens.get(0).getValueStart();
+        int endOffset = appends.isEmpty() ? tokens.get(tokens.size() - 1).getValueEnd() : text.length();
+
+        StringBuilder replacement = new StringBuilder();
+        int position = startOffset;
+        for (EnvLexer.Token token : tokens) {
+            replacement.append(text, position, token.getValueStart()).append(replacements.get(token));
+            position = token.getValueEnd();
+        }
+        replacement.append(text, position, endOffset);
+
+        if (!appends.isEmpty()) {
+            String separator = lineSeparator(text);
+            if (!index.endsWithLineBreak()) {
+                replacement.append(separator);
+            }
+            for (String line : appends.values()) {
+                replacement.append(line).append(separator);
+            }
+        }
+
+        return new Edit(startOffset, endOffset, replacement.toString());
+    }
+
+    /**
+     * Plan renaming a variable, replacing only its key
+     *
+     * @param index  Index of the current content
+     * @param oldKey The key to rename
+     * @param newKey The new key
+     * @return The edit, or null if the key is not defined
+     */
+    public static @Nullable Edit planRename(@NotNull EnvDocumentIndex index, @NotNull String oldKey, @NotNull String newKey) {
+        EnvLexer.Token token = index.getEntry(oldKey);
+        if (token == null) {
+            return null;
+        }
+        return new Edit(token.getKeyStart(), token.getKeyEnd(), newKey);
+    }
+
+    /**
+     * Plan adding a variable right below the header comment of a section ("# Section").
+     * Without such a header, the section is appended at the end of the content.
+     *
+     * @param index   Index of the current content
+     * @param section Name of the section
+     * @param key     The variable key
+     * @param value   The unformatted value
+     * @return The insertion
+     */
+    public static Edit planAddToSection(@NotNull EnvDocumentIndex index, @NotNull String section,
+                                        @NotNull String key, @Nullable String value) {
+        CharSequence text = index.getText();
+        String separator = lineSeparator(text);
+        String line = key + "=" + formatValue(value);
+        String header = "# " + section;
+        for (EnvLexer.Token token : index.getTokens()) {
+            if (token.getType() == EnvLexer.TokenType.COMMENT && token.getText().startsWith(header)) {
+                boolean lastLine = token.getNextLineOffset() == token.getEndOffset();
+                return new Edit(token.getNextLineOffset(), token.getNextLineOffset(),
+                        lastLine ? separator + line : line + separator);
+            }
+        }
+        String newSection = separator + header + separator + line + separator;
+        if (!index.endsWithLineBreak()) {
+            newSection = separator + newSection;
+        }
+        return new Edit(text.length(), text.length(), newSection);
+    }
+
+    /**
+     * Plan grouping the variables into sections.
+     * Each section gets a "# Section" header followed by its variables in the given order, and
+     * variables not in any section end up under "# Other". Entries move as they are written,
+     * together with the comment lines directly above them. Comments that do not belong to an entry
+     * and invalid lines are kept at the top; headers of the given sections are regenerated.
+     *
+     * @param index      Index of the current content
+     * @param sectionMap Section names and the keys that belong to them, in the desired order
+     * @return One edit covering the reordered part of the content
+     */
+    public static Edit planOrganize(@NotNull EnvDocumentIndex index, @NotNull Map<String, List<String>> sectionMap) {
+        CharSequence text = index.getText();
+        String separator = lineSeparator(text);
+        Set<String> headers = new HashSet<>(sectionMap.keySet());
+        headers.add(OTHER_SECTION);
+
+        StringBuilder detached = new StringBuilder();
+        Map<String, StringBuilder> entries = new LinkedHashMap<>();
+        int pendingStart = -1;
+        int pendingEnd = -1;
+        for (EnvLexer.Token token : index.getTokens()) {
+            boolean header = token.getType() == EnvLexer.TokenType.COMMENT && isHeader(token.getText(), headers);
+            if (token.isEntry()) {
+                StringBuilder entry = entries.computeIfAbsent(token.getKey(), key -> new StringBuilder());
+                if (pendingStart >= 0) {
+                    entry.append(text, pendingStart, pendingEnd);
+                    pendingStart = -1;
+                }
+                appendLine(entry, token, separator);
+            } else if (token.getType() == EnvLexer.TokenType.COMMENT && !header) {
+                // Comment lines collect until it is clear whether an entry follows them
+                if (pendingStart < 0) {
+                    pendingStart = token.getStartOffset();
+                }
+                pendingEnd = token.getNextLineOffset();
+                if (pendingEnd == token.getEndOffset()) {
+                    detached.append(text, pendingStart, pendingEnd).append(separator);
+                    pendingStart = -1;
+                }
+            } else {
+                if (pendingStart >= 0) {
+                    detached.append(text, pendingStart, pendingEnd);
+                    pendingStart = -1;
+                }
+                if (token.getType() == EnvLexer.TokenType.INVALID) {
+                    appendLine(detached, token, separator);
+                }
+            }
+        }
+
+        StringBuilder organized = new StringBuilder(text.length() + 64);
+        if (!detached.isEmpty()) {
+            organized.append(detached).append(separator);
+        }
+        for (Map.Entry<String, List<String>> section : sectionMap.entrySet()) {
+            appendSection(organized, section.getKey(), section.getValue(), entries, separator);
+        }
+        appendSection(organized, OTHER_SECTION, new ArrayList<>(entries.keySet()), entries, separator);
+        // No blank line after the last section
+        if (organized.length() >= 2 * separator.length()) {
+            organized.setLength(organized.length() - separator.length());
+        }
+        return Edit.between(text, organized);
+    }
+
+    private static boolean isHeader(String comment, Collection<String> sections) {
+        return comment.startsWith("# ") && sections.contains(comment.substring(2).trim());
+    }
+
+    private static void appendSection(StringBuilder organized, String name, List<String> keys,
+                                      Map<String, StringBuilder> entries, String separator) {
+        boolean empty = true;
+        for (String key : keys) {
+            StringBuilder entry = entries.remove(key);
+            if (entry == null) {
+                continue;
+            }
+            if (empty) {
+                organized.append("# ").append(name).append(separator);
+                empty = false;
+            }
+            organized.append(entry);
+        }
+        if (!empty) {
+            organized.append(separator);
+        }
+    }
+
+    private static void appendLine(StringBuilder target, EnvLexer.Token token, String separator) {
+        target.append(token.getSourceText());
+        if (token.getNextLineOffset() == token.getEndOffset()) {
+            target.append(separator);
+        }
+    }
+
+    /**
+     * @return "\r\n" if the content uses Windows line separators, "\n" otherwise
+     */
+    static String lineSeparator(@NotNull CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                return i > 0 && text.charAt(i - 1) == '\r' ? "\r\n" : "\n";
+            }
+        }
+        return "\n";
+    }
+
+    /**
+     * Escape and, if needed, quote a value for writing into a .env file
+     */
+    public static String formatValue(@Nullable String value) {
+        if (value == null) {
+            return "";
+        }
+        // Quote if contains spaces, special chars, or starts with quote
+        if (needsQuotes(value)) {
+            return quote(value);
+        }
+        return value;
+    }
+
+    /**
+     * Format a value in the quote style of the value it replaces
+     */
+    private static String formatValue(@Nullable String value, char quote) {
+        if (value == null) {
+            value = "";
+        }
+        if (quote == '"') {
+            return quote(value);
+        }
+        if (quote == '\'' && value.indexOf('\'') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return "'" + value + "'";
+        }
+        return formatValue(value);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r") + "\"";
+    }
+
+    /**
+     * Turn a user supplied name into a conventional variable key
+     */
+    public static String normalizeKey(@NotNull String key) {
+        return key.trim()
+                .replaceAll("\\s+", "_")           // spaces to underscores
+                .replaceAll("[^a-zA-Z0-9_]", "_")  // special chars to underscores
+                .replaceAll("_{2,}", "_")          // multiple underscores to single
+                .replaceAll("^[0-9_]+", "")        // remove leading numbers/underscores
+                .toUpperCase();
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c) || "#'`${}()\"\\".indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
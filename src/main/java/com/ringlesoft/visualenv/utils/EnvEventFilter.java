@@ -0,0 +1,107 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides which VFS events concern env files, cheaply enough for batches of hundreds of thousands
+ * of events (branch switches, package installs). No path strings are built: creations are rejected
+ * by name first and only then checked for ancestry against precomputed watched roots, and deletions
+ * are set lookups of the file against the tracked files and their ancestor directories. Content changes,
+ * renames and moves are relevant for tracked files, or when they turn a file into an env file.
+ * Instances are immutable snapshots of the tracked files; build a new one when they change.
+ */
+public final class EnvEventFilter {
+    private static final String NAME_PREFIX = ".env";
+    // Directories never holding project env files, skipped even when not excluded in the project model
+    private static final Set<String> SKIPPED_DIRECTORY_NAMES = Set.of("node_modules", ".git");
+
+    public static final EnvEventFilter NONE = new EnvEventFilter(Set.of(), Set.of(), Set.of(), Set.of());
+
+    private final Set<String> fileNames;
+    private final Set<VirtualFile> trackedFiles;
+    private final Set<VirtualFile> trackedDirectories;
+    private final Set<VirtualFile> watchedRoots;
+    private final Set<VirtualFile> excludedRoots;
+
+    /**
+     * @param fileNames     Names of env files, e.g. ".env" and ".env.example"
+     * @param trackedFiles  Env files currently known
+     * @param watchedRoots  Directories whose descendants may hold env files, e.g. the content roots
+     * @param excludedRoots Directories below the watched roots to ignore
+     */
+    public EnvEventFilter(@NotNull Collection<String> fileNames, @NotNull Collection<VirtualFile> trackedFiles,
+                          @NotNull Collection<VirtualFile> watchedRoots, @NotNull Collection<VirtualFile> excludedRoots) {
+        this.fileNames = Set.copyOf(fileNames);
+        this.trackedFiles = Set.copyOf(trackedFiles);
+        this.watchedRoots = Set.copyOf(watchedRoots);
+        this.excludedRoots = Set.copyOf(excludedRoots);
+        Set<VirtualFile> directories = new HashSet<>();
+        for (VirtualFile file : trackedFiles) {
+            // Stop at the first directory already added; its ancestors are in the set too
+            VirtualFile directory = file.getParent();
+            while (directory != null && directories.add(directory)) {
+                directory = directory.getParent();
+            }
+        }
+        this.trackedDirectories = Set.copyOf(directories);
+    }
+
+    /**
+     * @return true if the event creates, changes, renames, moves or deletes an env file,
+     * or renames, moves or deletes a directory holding one
+     */
+    public boolean isRelevant(@NotNull VFileEvent event) {
+        if (event instanceof VFileContentChangeEvent contentChangeEvent) {
+            return trackedFiles.contains(contentChangeEvent.getFile());
+        } else if (event instanceof VFileCreateEvent createEvent) {
+            return isRelevantCreate(createEvent.getParent(), createEvent.getChildName(), createEvent.isDirectory());
+        } else if (event instanceof VFileDeleteEvent deleteEvent) {
+            return isRelevantDelete(deleteEvent.getFile());
+        } else if (event instanceof VFilePropertyChangeEvent propertyChangeEvent && propertyChangeEvent.isRename()) {
+            VirtualFile file = propertyChangeEvent.getFile();
+            VirtualFile parent = file.getParent();
+            return isRelevantDelete(file) || (parent != null
+                    && isRelevantCreate(parent, (String) propertyChangeEvent.getNewValue(), file.isDirectory()));
+        } else if (event instanceof VFileMoveEvent moveEvent) {
+            VirtualFile file = moveEvent.getFile();
+            return isRelevantDelete(file) || isRelevantCreate(moveEvent.getNewParent(), file.getName(), file.isDirectory());
+        }
+        return false;
+    }
+
+    /**
+     * @return true if creating the child makes a new env file in a watched directory
+     */
+    public boolean isRelevantCreate(@NotNull VirtualFile parent, @NotNull String childName, boolean directory) {
+        if (directory || !childName.startsWith(NAME_PREFIX) || !fileNames.contains(childName)) {
+            return false;
+        }
+        for (VirtualFile ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+            if (excludedRoots.contains(ancestor) || SKIPPED_DIRECTORY_NAMES.contains(ancestor.getName())) {
+                return false;
+            }
+            if (watchedRoots.contains(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if deleting the file removes a tracked env file or a directory holding one
+     */
+    public boolean isRelevantDelete(@NotNull VirtualFile file) {
+        return trackedFiles.contains(file) || trackedDirectories.contains(file);
+    }
+}
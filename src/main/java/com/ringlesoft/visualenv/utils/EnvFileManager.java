@@ -6,11 +6,13 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.ringlesoft.visualenv.services.MetricsService;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.util.Comparator;
 
 import com.intellij.notification.Notification;
@@ -19,12 +21,29 @@ import com.intellij.notification.Notifications;
 import com.intellij.notification.NotificationGroup;
 import com.intellij.notification.NotificationGroupManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
 
 /**
  * Utility class for managing environment files
  * Provides methods to read, write, and modify .env files
  */
 public class EnvFileManager {
+    private static final Key<EnvDocumentIndex> INDEX_KEY = Key.create("visualenv.envDocumentIndex");
+
+    /**
+     * Get the key index for the current version of a document
+     * The index is cached on the document and only rebuilt when its modification stamp changes,
+     * so a burst of lookups costs one scan plus hash lookups
+     */
+    public static EnvDocumentIndex getIndex(@NotNull Document document) {
+        long stamp = document.getModificationStamp();
+        EnvDocumentIndex index = document.getUserData(INDEX_KEY);
+        if (index == null || index.getModificationStamp() != stamp) {
+            index = new EnvDocumentIndex(document.getImmutableCharSequence(), stamp);
+            document.putUserData(INDEX_KEY, index);
+        }
+        return index;
+    }
 
     /**
      * Set or update a key-value pair in .env file
@@ -47,15 +66,8 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return null;
 
-        String content = document.getText();
-        Pattern pattern = Pattern.compile("^" + Pattern.quote(key) + "=(.*)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
-
-        if (matcher.find()) {
-            return matcher.group(1).trim();
-        }
-
-        return null;
+        EnvLexer.Token entry = getIndex(document).getEntry(key);
+        return entry != null ? entry.getRawValue() : null;
     }
 
     /**
@@ -66,14 +78,9 @@ public class EnvFileManager {
         if (document == null) return;
 
         WriteCommandAction.runWriteCommandAction(project, "Remove .env Variable", null, () -> {
-            String documentText = document.getText();
-            Pattern pattern = Pattern.compile("^" + Pattern.quote(key) + "=.*\n?", Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(documentText);
-
-            if (matcher.find()) {
-                int start = matcher.start();
-                int end = matcher.end();
-                document.deleteString(start, end);
+            EnvLexer.Token entry = getIndex(document).getEntry(key);
+            if (entry != null) {
+                document.deleteString(entry.getStartOffset(), entry.getNextLineOffset());
             }
             FileDocumentManager.getInstance().saveDocument(document);
         });
@@ -81,17 +88,34 @@ public class EnvFileManager {
 
     /**
      * Add multiple environment variables
+     * All changes are planned in one scan and applied as a single document mutation
      */
     public static void setMultipleEnvVariables(Project project, VirtualFile envFile,
                                                java.util.Map<String, String> variables) {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return;
 
-        WriteCommandAction.runWriteCommandAction(project, "Update Multiple .env Variables", null, () -> {
-            for (java.util.Map.Entry<String, String> entry : variables.entrySet()) {
-                setEnvVariableInternal(document, entry.getKey(), entry.getValue());
-            }
-        });
+        WriteCommandAction.runWriteCommandAction(project, "Update Multiple .env Variables", null, () ->
+                setEnvVariablesInternal(document, variables));
+    }
+
+    /**
+     * Write multiple environment variables and save the file
+     * The edit and the save happen in one write command, so the batch is also undone as one step
+     */
+    public static void writeEnvVariables(Project project, VirtualFile envFile,
+                                         java.util.Map<String, String> variables) {
+        Document document = FileDocumentManager.getInstance().getDocument(envFile);
+        if (document == null) return;
+
+        MetricsService metrics = MetricsService.getInstance(project);
+        try (MetricsService.Timer ignored = metrics.startTimer(MetricsService.WRITE_COMMAND)) {
+            WriteCommandAction.runWriteCommandAction(project, "Update .env Variables", null, () -> {
+                setEnvVariablesInternal(document, variables);
+                FileDocumentManager.getInstance().saveDocument(document);
+            });
+        }
+        metrics.increment(MetricsService.WRITTEN_VARIABLES, variables.size());
     }
 
 
@@ -104,14 +128,10 @@ public class EnvFileManager {
         if (document == null) return;
 
         WriteCommandAction.runWriteCommandAction(project, "Add .env Comment", null, () -> {
-            String documentText = document.getText();
-            Pattern pattern = Pattern.compile("^" + Pattern.quote(key) + "=.*$", Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(documentText);
-
-            if (matcher.find()) {
-                int lineStart = matcher.start();
+            EnvLexer.Token entry = getIndex(document).getEntry(key);
+            if (entry != null) {
                 String commentLine = "# " + comment + "\n";
-                document.insertString(lineStart, commentLine);
+                document.insertString(entry.getStartOffset(), commentLine);
             }
         });
     }
@@ -124,23 +144,8 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return;
 
-        WriteCommandAction.runWriteCommandAction(project, "Add to .env Section", null, () -> {
-            String documentText = document.getText();
-            String sectionPattern = "# " + Pattern.quote(sectionComment);
-            Pattern pattern = Pattern.compile("^" + sectionPattern + ".*$", Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(documentText);
-
-            if (matcher.find()) {
-                // Find end of current line and add after it
-                int insertPosition = matcher.end();
-                String newLine = "\n" + key + "=" + value;
-                document.insertString(insertPosition, newLine);
-            } else {
-                // Create new section
-                String newSection = "\n# " + sectionComment + "\n" + key + "=" + value + "\n";
-                document.insertString(document.getTextLength(), newSection);
-            }
-        });
+        WriteCommandAction.runWriteCommandAction(project, "Add to .env Section", null, () ->
+                applyEdit(document, EnvEditPlanner.planAddToSection(getIndex(document), sectionComment, key, value)));
     }
 
     /**
@@ -173,33 +178,34 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return false;
 
-        String content = document.getText();
-        Pattern pattern = Pattern.compile("^" + Pattern.quote(key) + "=.*$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
-
-        return matcher.find();
+        return getIndex(document).containsKey(key);
     }
 
     /**
      * Get all environment variables from a file
      */
     public static Map<String, String> getAllEnvVariables(VirtualFile envFile) {
-        Document document = FileDocumentManager.getInstance().getDocument(envFile);
-        if (document == null) return Collections.emptyMap();
-
-        Map<String, String> variables = new HashMap<>();
-        String content = document.getText();
-
-        // Match lines that are key=value format (ignoring comments and blank lines)
-        Pattern pattern = Pattern.compile("^([^#=\\s][^=\\s]*)=(.*)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
-
-        while (matcher.find()) {
-            String key = matcher.group(1).trim();
-            String value = matcher.group(2).trim();
-            variables.put(key, value);
+        try {
+            // Only read, so no Document is created for files that are not open
+            return getAllEnvVariables(EnvFileReader.read(envFile));
+        } catch (IOException e) {
+            return Collections.emptyMap();
         }
+    }
 
+    /**
+     * Get all environment variables from .env content
+     * Values are returned as written, including any surrounding quotes
+     */
+    public static Map<String, String> getAllEnvVariables(@NotNull CharSequence content) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        EnvLexer lexer = new EnvLexer(content);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.isEntry()) {
+                variables.put(token.getKey(), token.getRawValue());
+            }
+        }
         return variables;
     }
 
@@ -212,13 +218,15 @@ public class EnvFileManager {
         if (document == null) return Collections.emptyList();
 
         List<String> sections = new ArrayList<>();
-        String content = document.getText();
-
-        Pattern pattern = Pattern.compile("^# ([^\\n]+)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
-
-        while (matcher.find()) {
-            sections.add(matcher.group(1));
+        EnvLexer lexer = new EnvLexer(document.getImmutableCharSequence());
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.getType() == EnvLexer.TokenType.COMMENT) {
+                String text = token.getText();
+                if (text.startsWith("# ") && text.length() > 2) {
+                    sections.add(text.substring(2));
+                }
+            }
         }
 
         return sections;
@@ -270,6 +278,7 @@ public class EnvFileManager {
 
     /**
      * Format and organize the entire .env file by grouping variables into sections
+     * Entries are moved as written, with their comments, and only the reordered part of the document is replaced
      * @param project The current project
      * @param envFile The .env file to organize
      * @param sectionMap A map of section names to lists of variable keys that belong to those sections
@@ -284,49 +293,8 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return;
 
-        WriteCommandAction.runWriteCommandAction(project, "Organize .env File", null, () -> {
-            // Extract all variables first
-            Map<String, String> allVariables = getAllEnvVariables(envFile);
-
-            // Create the new organized content
-            StringBuilder newContent = new StringBuilder();
-            newContent.append("# This file was organized by Visual Env on ")
-                    .append(new java.util.Date().toString())
-                    .append("\n\n");
-
-            // Add variables by section
-            for (Map.Entry<String, List<String>> section : sectionMap.entrySet()) {
-                String sectionName = section.getKey();
-                List<String> keys = section.getValue();
-
-                // Skip empty sections
-                if (keys.isEmpty()) continue;
-
-                // Add section header
-                newContent.append("# ").append(sectionName).append("\n");
-
-                // Add all variables in this section
-                for (String key : keys) {
-                    if (allVariables.containsKey(key)) {
-                        newContent.append(key).append("=").append(allVariables.get(key)).append("\n");
-                        allVariables.remove(key); // Remove from map to track what's been processed
-                    }
-                }
-
-                newContent.append("\n"); // Add spacing between sections
-            }
-
-            // Add any remaining variables in an "Other" section if needed
-            if (!allVariables.isEmpty()) {
-                newContent.append("# Other\n");
-                for (Map.Entry<String, String> entry : allVariables.entrySet()) {
-                    newContent.append(entry.getKey()).append("=").append(entry.getValue()).append("\n");
-                }
-            }
-
-            // Replace the entire file content with our organized version
-            document.setText(newContent.toString());
-        });
+        WriteCommandAction.runWriteCommandAction(project, "Organize .env File", null, () ->
+                applyEdit(document, EnvEditPlanner.planOrganize(getIndex(document), sectionMap)));
     }
 
     /**
@@ -338,33 +306,40 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return Collections.emptyMap();
 
-        String content = document.getText();
+        return extractEnvFileSections(document.getImmutableCharSequence());
+    }
+
+    /**
+     * Extract sections and their variables from .env content
+     * @param content The content to analyze
+     * @return A map of section names to the variable keys in each section
+     */
+    public static Map<String, List<String>> extractEnvFileSections(@NotNull CharSequence content) {
         Map<String, List<String>> sections = new LinkedHashMap<>(); // Preserve order
 
         // Default section for variables at the beginning with no section
         String currentSection = "General";
         List<String> currentSectionVars = new ArrayList<>();
 
-        // Process line by line
-        String[] lines = content.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-
-            // Check if this is a section header
-            if (line.startsWith("# ")) {
-                // Save previous section if it has any variables
-                if (!currentSectionVars.isEmpty()) {
-                    sections.put(currentSection, new ArrayList<>(currentSectionVars));
-                    currentSectionVars.clear();
-                }
-
-                // Start new section
-                currentSection = line.substring(2);
+        EnvLexer lexer = new EnvLexer(content);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            if (token.getType() == EnvLexer.TokenType.COMMENT) {
+                String line = token.getText();
+                // Check if this is a section header
+                if (line.startsWith("# ")) {
+                    // Save previous section if it has any variables
+                    if (!currentSectionVars.isEmpty()) {
+                        sections.put(currentSection, new ArrayList<>(currentSectionVars));
+                        currentSectionVars.clear();
+                    }
 
-            } else if (line.matches("^[^#=\\s][^=]*=.*$")) {
+                    // Start new section
+                    currentSection = line.substring(2);
+                }
+            } else if (token.isEntry()) {
                 // This is a variable definition
-                String key = line.substring(0, line.indexOf('='));
-                currentSectionVars.add(key);
+                currentSectionVars.add(token.getKey());
             }
             // Skip blank lines and comments that aren't section headers
         }
@@ -419,30 +394,39 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return Collections.singletonList("Could not read file");
 
-        List<String> errors = new ArrayList<>();
-        String content = document.getText();
-        String[] lines = content.split("\n");
-
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
+        return validateEnvFile(document.getImmutableCharSequence());
+    }
 
+    /**
+     * Validates the syntax of .env content and returns any errors
+     * @param content The content to validate
+     * @return A list of error messages, empty if no errors
+     */
+    public static List<String> validateEnvFile(@NotNull CharSequence content) {
+        List<String> errors = new ArrayList<>();
+        EnvLexer lexer = new EnvLexer(content);
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
             // Skip empty lines and comments
-            if (line.isEmpty() || line.startsWith("#")) {
+            if (token.getType() == EnvLexer.TokenType.BLANK || token.getType() == EnvLexer.TokenType.COMMENT) {
                 continue;
             }
 
+            int lineNumber = token.getLine() + 1;
+            String line = token.getText();
+
             // Check for valid key=value format
-            if (!line.matches("^[^=\\s][^=]*=.*$")) {
-                errors.add("Line " + (i + 1) + ": Invalid format, expected KEY=VALUE");
+            if (token.getType() == EnvLexer.TokenType.INVALID) {
+                errors.add("Line " + lineNumber + ": Invalid format, expected KEY=VALUE");
             }
 
             // Check for common mistakes
             if (line.contains(" = ")) {
-                errors.add("Line " + (i + 1) + ": Spaces around equals sign may cause issues");
+                errors.add("Line " + lineNumber + ": Spaces around equals sign may cause issues");
             }
 
             if (line.endsWith("\\")) {
-                errors.add("Line " + (i + 1) + ": Line ending with backslash may cause parsing issues");
+                errors.add("Line " + lineNumber + ": Line ending with backslash may cause parsing issues");
             }
         }
 
@@ -459,20 +443,23 @@ public class EnvFileManager {
      */
     public static boolean renameEnvVariable(Project project, VirtualFile envFile,
                                             String oldKey, String newKey) {
-        // Convert to uppercase
         if (oldKey.equals(newKey)) return true; // No change needed
 
-        // Get the current value
-        String value = getEnvVariable(envFile, oldKey);
-        if (value == null) return false; // Original key not found
+        Document document = FileDocumentManager.getInstance().getDocument(envFile);
+        if (document == null) return false;
 
-        // Remove old and add new in a single transaction
+        // Replace just the key, so the value, its quotes and any comment stay as written
+        final boolean[] success = {false};
         WriteCommandAction.runWriteCommandAction(project, "Rename Environment Variable", null, () -> {
-            removeEnvVariable(project, envFile, oldKey);
-            setEnvVariable(project, envFile, newKey, value.replaceAll("\"", ""));
+            EnvEditPlanner.Edit edit = EnvEditPlanner.planRename(getIndex(document), oldKey, newKey);
+            if (edit != null) {
+                applyEdit(document, edit);
+                FileDocumentManager.getInstance().saveDocument(document);
+                success[0] = true;
+            }
         });
 
-        return true;
+        return success[0];
     }
 
     /**
@@ -518,26 +505,22 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return false;
 
-        String content = document.getText();
         final boolean[] success = {false};
 
         WriteCommandAction.runWriteCommandAction(project, "Toggle Environment Variable Comment", null, () -> {
+            EnvDocumentIndex index = getIndex(document);
             if (comment) {
                 // Comment out the variable
-                Pattern pattern = Pattern.compile("^(" + Pattern.quote(key) + "=.*)$", Pattern.MULTILINE);
-                Matcher matcher = pattern.matcher(content);
-
-                if (matcher.find()) {
-                    document.replaceString(matcher.start(), matcher.end(), "# " + matcher.group(1));
+                EnvLexer.Token entry = index.getEntry(key);
+                if (entry != null) {
+                    document.insertString(entry.getStartOffset(), "# ");
                     success[0] = true;
                 }
             } else {
                 // Uncomment the variable
-                Pattern pattern = Pattern.compile("^# (" + Pattern.quote(key) + "=.*)$", Pattern.MULTILINE);
-                Matcher matcher = pattern.matcher(content);
-
-                if (matcher.find()) {
-                    document.replaceString(matcher.start(), matcher.end(), matcher.group(1));
+                EnvLexer.Token entry = index.getCommentedEntry(key);
+                if (entry != null) {
+                    document.deleteString(entry.getStartOffset(), entry.getKeyStart());
                     success[0] = true;
                 }
             }
@@ -555,17 +538,14 @@ public class EnvFileManager {
         Document document = FileDocumentManager.getInstance().getDocument(envFile);
         if (document == null) return Collections.emptyMap();
 
-        Map<String, String> variables = new HashMap<>();
-        String content = document.getText();
-
-        // Match commented lines that are key=value format
-        Pattern pattern = Pattern.compile("^# ([^#=\\s][^=\\s]*)=(.*)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
-
-        while (matcher.find()) {
-            String key = matcher.group(1).trim();
-            String value = matcher.group(2).trim();
-            variables.put(key, value);
+        Map<String, String> variables = new LinkedHashMap<>();
+        EnvLexer lexer = new EnvLexer(document.getImmutableCharSequence());
+        EnvLexer.Token token;
+        while ((token = lexer.next()) != null) {
+            // Commented lines that are key=value format
+            if (token.isCommentedEntry()) {
+                variables.put(token.getKey(), token.getRawValue());
+            }
         }
 
         return variables;
@@ -804,47 +784,35 @@ public class EnvFileManager {
      * @param key Env variable key
      * @param value Env variable value
      */
-    private static void setEnvVariableInternal(@NotNull Document document, String key, String value) {
-
-        value = value.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r");
-        // Quote if contains spaces, special chars, or starts with quote
-        if (value.matches(".*[\\s#'`${}()].*") || value.startsWith("\"")) {
-            value = "\"" + value + "\"";
-        }
+    @VisibleForTesting
+    static void setEnvVariableInternal(@NotNull Document document, String key, String value) {
+        setEnvVariablesInternal(document, Collections.singletonMap(key, value));
+    }
 
+    /**
+     * Update or add several variables with one document mutation
+     * @param document The document
+     * @param variables Env variable keys and values
+     */
+    @VisibleForTesting
+    static void setEnvVariablesInternal(@NotNull Document document, Map<String, String> variables) {
         try {
-            String documentText = document.getText();
-            String newLine = key + "=" + value;
-
-            Pattern pattern = Pattern.compile("^" + Pattern.quote(key) + "=.*$", Pattern.MULTILINE);
-            Matcher matcher = pattern.matcher(documentText);
-
-            if (matcher.find()) {
-                int start = matcher.start();
-                int end = matcher.end();
-                document.replaceString(start, end, newLine);
-            } else {
-                key = key.trim()
-                        .replaceAll("\\s+", "_")           // spaces to underscores
-                        .replaceAll("[^a-zA-Z0-9_]", "_")  // special chars to underscores
-                        .replaceAll("_{2,}", "_")          // multiple underscores to single
-                        .replaceAll("^[0-9_]+", "")        // remove leading numbers/underscores
-                        .toUpperCase();
-                newLine = key + "=" + value;
-                if (!documentText.isEmpty() && !documentText.endsWith("\n")) {
-                    newLine = "\n" + newLine;
-                }
-                document.insertString(document.getTextLength(), newLine + "\n");
-            }
+            applyEdit(document, EnvEditPlanner.plan(getIndex(document), variables));
         } catch (Exception e) {
 
             // TODO Find a way of showing this error to the user
             throw new RuntimeException(e);
-        } finally {
+        }
+    }
 
+    /**
+     * Apply a planned edit to a document
+     * @param document The document
+     * @param edit The edit, planned against the current content of the document
+     */
+    private static void applyEdit(@NotNull Document document, @NotNull EnvEditPlanner.Edit edit) {
+        if (!edit.isEmpty()) {
+            document.replaceString(edit.getStartOffset(), edit.getEndOffset(), edit.getReplacement());
         }
     }
 
@@ -0,0 +1,63 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only access to .env content that does not need a Document.
+ * Files that are only read - templates, non-editable files and very large files - are lexed straight
+ * from their bytes: a Document would decode and keep the whole text in memory for nothing.
+ * Content that is already open in an editor is taken from its Document so unsaved changes are seen.
+ */
+public final class EnvFileReader {
+    // Below this size reading the bytes is cheaper than setting up a mapping
+    private static final long MAP_THRESHOLD = 256 * 1024;
+
+    private EnvFileReader() {
+    }
+
+    /**
+     * Read the content of a file for lexing
+     *
+     * @param file The file to read
+     * @return The content; for UTF-8 files on the local file system a view of the raw bytes
+     * @throws IOException If the file cannot be read
+     */
+    public static @NotNull CharSequence read(@NotNull VirtualFile file) throws IOException {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document != null) {
+            return document.getImmutableCharSequence();
+        }
+        if (!isUtf8(file.getCharset())) {
+            return VfsUtilCore.loadText(file);
+        }
+        return new Utf8ByteSequence(readBytes(file));
+    }
+
+    private static ByteBuffer readBytes(VirtualFile file) throws IOException {
+        // A mapped file cannot be deleted on Windows until the mapping is garbage collected
+        if (!file.isInLocalFileSystem() || file.getLength() < MAP_THRESHOLD
+                || file.getLength() > Integer.MAX_VALUE || SystemInfo.isWindows) {
+            return ByteBuffer.wrap(file.contentsToByteArray());
+        }
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toNioPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static boolean isUtf8(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+    }
+}
@@ -0,0 +1,577 @@
+package com.ringlesoft.visualenv.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written, single-pass lexer for .env content.
+ * Scans the text once, line by line, and emits one token per line
+ * (an entry, a comment, a blank line or an invalid line) together with its offsets.
+ * A quoted value that is not closed on its own line continues on the following lines, so
+ * such an entry yields one token spanning several lines.
+ * No regular expressions are involved and no per-line strings are allocated
+ * until a token's key or value is actually requested.
+ * <p>
+ * The tokens form a lossless syntax tree: each covers its lines including the line terminator,
+ * and together they tile the text, so concatenating their {@link Token#getSourceText()} gives the
+ * input back byte for byte. Every part of an entry - "export" prefix, key, quoted or unquoted value,
+ * inline comment - has its own offsets, which is what lets writers replace just the part they change.
+ */
+public final class EnvLexer {
+
+    /**
+     * Kind of line produced by the lexer
+     */
+    public enum TokenType {
+        /**
+         * A KEY=VALUE assignment (optionally prefixed with "export")
+         */
+        ENTRY,
+
+        /**
+         * A line starting with '#'
+         */
+        COMMENT,
+
+        /**
+         * An empty or whitespace-only line
+         */
+        BLANK,
+
+        /**
+         * Anything else, e.g. a line without '=' or with an empty key
+         */
+        INVALID
+    }
+
+    private static final String EXPORT_PREFIX = "export";
+
+    private final CharSequence text;
+    private final int length;
+    private int offset;
+    private int line;
+    // Positions from which no closing quote exists before the end; searching again from a later position is pointless
+    private int noClosingDoubleQuoteFrom = Integer.MAX_VALUE;
+    private int noClosingSingleQuoteFrom = Integer.MAX_VALUE;
+
+    /**
+     * Create a lexer over the given text
+     *
+     * @param text The .env content
+     */
+    public EnvLexer(@NotNull CharSequence text) {
+        this(text, 0, text.length(), 0);
+    }
+
+    /**
+     * Create a lexer over a range of lines, e.g. the lines touched by an edit.
+     * Offsets and line numbers of the produced tokens stay absolute.
+     *
+     * @param text        The full .env content
+     * @param startOffset Offset of the first line to scan; must be at a line start
+     * @param endOffset   Offset where scanning stops (exclusive)
+     * @param firstLine   Line number of the line at {@code startOffset}
+     */
+    public EnvLexer(@NotNull CharSequence text, int startOffset, int endOffset, int firstLine) {
+        this.text = text;
+        this.length = endOffset;
+        this.offset = startOffset;
+        this.line = firstLine;
+    }
+
+    /**
+     * Tokenize the whole text at once
+     *
+     * @param text The .env content
+     * @return All tokens in document order
+     */
+    public static List<Token> tokenize(@NotNull CharSequence text) {
+        List<Token> tokens = new ArrayList<>();
+        EnvLexer lexer = new EnvLexer(text);
+        Token token;
+        while ((token = lexer.next()) != null) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Scan the next line
+     *
+     * @return The next token, or null when the end of the text is reached
+     */
+    public @Nullable Token next() {
+        if (offset >= length) {
+            return null;
+        }
+        int lineStart = offset;
+        int lineBreak = lineBreakAt(lineStart);
+        Token token = scanLine(lineStart, contentEndOf(lineStart, lineBreak), nextLineStartOf(lineBreak));
+        offset = token.nextLineOffset;
+        line = token.endLine + 1;
+        return token;
+    }
+
+    /**
+     * @return Offset of the line feed ending the line that contains the offset, or the end of the text
+     */
+    private int lineBreakAt(int from) {
+        int lineBreak = from;
+        while (lineBreak < length && text.charAt(lineBreak) != '\n') {
+            lineBreak++;
+        }
+        return lineBreak;
+    }
+
+    private int nextLineStartOf(int lineBreak) {
+        return lineBreak < length ? lineBreak + 1 : lineBreak;
+    }
+
+    /**
+     * @return Offset just past the line content, excluding a carriage return before the line feed
+     */
+    private int contentEndOf(int lineStart, int lineBreak) {
+        return lineBreak > lineStart && text.charAt(lineBreak - 1) == '\r' ? lineBreak - 1 : lineBreak;
+    }
+
+    private Token scanLine(int lineStart, int lineEnd, int nextLineStart) {
+        int contentStart = skipBlanks(lineStart, lineEnd);
+        int contentEnd = trimBlanks(contentStart, lineEnd);
+        Token token = new Token(text, line, lineStart, lineEnd, nextLineStart, contentStart, contentEnd);
+
+        if (contentStart == contentEnd) {
+            token.type = TokenType.BLANK;
+            return token;
+        }
+
+        if (text.charAt(contentStart) == '#') {
+            token.type = TokenType.COMMENT;
+            scanCommentedEntry(token);
+            return token;
+        }
+
+        int equals = indexOf('=', contentStart, contentEnd);
+        if (equals <= contentStart) {
+            token.type = TokenType.INVALID;
+            return token;
+        }
+
+        int keyStart = contentStart;
+        int keyEnd = trimBlanks(keyStart, equals);
+        if (startsWithExport(keyStart, keyEnd)) {
+            keyStart = skipBlanks(keyStart + EXPORT_PREFIX.length(), keyEnd);
+        }
+
+        token.type = TokenType.ENTRY;
+        token.keyStart = keyStart;
+        token.keyEnd = keyEnd;
+        token.valueStart = skipBlanks(equals + 1, contentEnd);
+        token.valueEnd = contentEnd;
+        scanValue(token);
+        return token;
+    }
+
+    /**
+     * Find the end of an entry's value: the closing quote of a quoted value, which may be on a
+     * later line, or the start of an inline comment ('#' after whitespace) of an unquoted one
+     */
+    private void scanValue(Token token) {
+        int start = token.valueStart;
+        if (start < token.contentEnd) {
+            char quote = text.charAt(start);
+            if (quote == '"' || quote == '\'') {
+                int close = findClosingQuote(quote, start + 1);
+                if (close >= 0 && endsValue(close + 1)) {
+                    token.quote = quote;
+                    token.valueEnd = close + 1;
+                    if (close >= token.endOffset) {
+                        extendTo(token, close);
+                    }
+                    int afterValue = skipBlanks(token.valueEnd, token.contentEnd);
+                    if (afterValue < token.contentEnd) {
+                        token.commentStart = afterValue;
+                    }
+                    return;
+                }
+                // Without a proper closing quote the value is taken as written on its line
+                token.unclosedQuote = close < 0 || close >= token.endOffset;
+            }
+        }
+        for (int i = start; i < token.contentEnd; i++) {
+            if (text.charAt(i) == '#' && isBlank(text.charAt(i - 1))) {
+                token.commentStart = i;
+                token.valueEnd = trimBlanks(start, i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Offset of the quote closing a value, or -1 if it is not closed before the end of the text.
+     * Inside double quotes a backslash escapes the next character.
+     */
+    private int findClosingQuote(char quote, int from) {
+        if (from >= (quote == '"' ? noClosingDoubleQuoteFrom : noClosingSingleQuoteFrom)) {
+            return -1;
+        }
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == quote) {
+                return i;
+            }
+            if (c == '\\' && quote == '"') {
+                i++;
+            }
+        }
+        if (quote == '"') {
+            noClosingDoubleQuoteFrom = from;
+        } else {
+            noClosingSingleQuoteFrom = from;
+        }
+        return -1;
+    }
+
+    /**
+     * Whether a closing quote before the offset can end a value: only blanks or a comment may follow it
+     * on its line. This keeps an unbalanced quote from swallowing the quoted value of a later line.
+     */
+    private boolean endsValue(int offset) {
+        int lineBreak = lineBreakAt(offset);
+        int rest = skipBlanks(offset, contentEndOf(offset, lineBreak));
+        return rest == contentEndOf(offset, lineBreak) || text.charAt(rest) == '#';
+    }
+
+    /**
+     * Let a token whose value continues on later lines end with the line holding the given offset
+     */
+    private void extendTo(Token token, int offset) {
+        int lineBreak = lineBreakAt(offset);
+        int extraLines = 0;
+        for (int i = token.endOffset; i < offset; i++) {
+            if (text.charAt(i) == '\n') {
+                extraLines++;
+            }
+        }
+        token.endLine = token.line + extraLines;
+        token.endOffset = contentEndOf(offset, lineBreak);
+        token.nextLineOffset = nextLineStartOf(lineBreak);
+        token.contentEnd = trimBlanks(offset + 1, token.endOffset);
+    }
+
+    /**
+     * Recognize commented-out assignments of the form "# KEY=VALUE"
+     */
+    private void scanCommentedEntry(Token token) {
+        int keyStart = token.contentStart + 2;
+        if (keyStart >= token.contentEnd || text.charAt(token.contentStart + 1) != ' ') {
+            return;
+        }
+        char first = text.charAt(keyStart);
+        if (first == '#' || first == '=' || isBlank(first)) {
+            return;
+        }
+        int keyEnd = keyStart + 1;
+        while (keyEnd < token.contentEnd && text.charAt(keyEnd) != '=' && !isBlank(text.charAt(keyEnd))) {
+            keyEnd++;
+        }
+        if (keyEnd >= token.contentEnd || text.charAt(keyEnd) != '=') {
+            return;
+        }
+        token.keyStart = keyStart;
+        token.keyEnd = keyEnd;
+        token.valueStart = skipBlanks(keyEnd + 1, token.contentEnd);
+        token.valueEnd = token.contentEnd;
+    }
+
+    private boolean startsWithExport(int keyStart, int keyEnd) {
+        int prefixEnd = keyStart + EXPORT_PREFIX.length();
+        if (prefixEnd >= keyEnd || !isBlank(text.charAt(prefixEnd))) {
+            return false;
+        }
+        for (int i = 0; i < EXPORT_PREFIX.length(); i++) {
+            if (text.charAt(keyStart + i) != EXPORT_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipBlanks(int from, int to) {
+        while (from < to && isBlank(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimBlanks(int from, int to) {
+        while (to > from && isBlank(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * Same notion of whitespace as {@link String#trim()}
+     */
+    private static boolean isBlank(char c) {
+        return c <= ' ';
+    }
+
+    /**
+     * A line of .env content, or several lines for an entry with a multi-line quoted value.
+     * Offsets are absolute positions in the lexed text; end offsets are exclusive.
+     */
+    public static final class Token {
+        private final CharSequence text;
+        private final int line;
+        private int endLine;
+        private final int startOffset;
+        private int endOffset;
+        private int nextLineOffset;
+        private final int contentStart;
+        private int contentEnd;
+        private TokenType type;
+        private int keyStart = -1;
+        private int keyEnd = -1;
+        private int valueStart = -1;
+        private int valueEnd = -1;
+        private int commentStart = -1;
+        private char quote;
+        private boolean unclosedQuote;
+
+        private Token(CharSequence text, int line, int startOffset, int endOffset, int nextLineOffset,
+                      int contentStart, int contentEnd) {
+            this.text = text;
+            this.line = line;
+            this.endLine = line;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.nextLineOffset = nextLineOffset;
+            this.contentStart = contentStart;
+            this.contentEnd = contentEnd;
+        }
+
+        public TokenType getType() {
+            return type;
+        }
+
+        public boolean isEntry() {
+            return type == TokenType.ENTRY;
+        }
+
+        /**
+         * Whether this is a comment holding a disabled assignment ("# KEY=VALUE")
+         */
+        public boolean isCommentedEntry() {
+            return type == TokenType.COMMENT && keyStart >= 0;
+        }
+
+        /**
+         * @return Zero-based line number of the first line
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return Zero-based line number of the last line; only differs from {@link #getLine()}
+         * for entries with a quoted value spanning several lines
+         */
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public boolean isMultiLine() {
+            return endLine > line;
+        }
+
+        /**
+         * @return Offset of the first character of the line
+         */
+        public int getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * @return Offset just past the line content, excluding the line terminator
+         */
+        public int getEndOffset() {
+            return endOffset;
+        }
+
+        /**
+         * @return Offset of the next line, i.e. just past the line terminator
+         */
+        public int getNextLineOffset() {
+            return nextLineOffset;
+        }
+
+        public int getKeyStart() {
+            return keyStart;
+        }
+
+        public int getKeyEnd() {
+            return keyEnd;
+        }
+
+        public int getValueStart() {
+            return valueStart;
+        }
+
+        /**
+         * @return Offset just past the value, after its closing quote if it is quoted
+         */
+        public int getValueEnd() {
+            return valueEnd;
+        }
+
+        /**
+         * @return Offset of the '#' starting an inline comment after the value, or -1
+         */
+        public int getCommentStart() {
+            return commentStart;
+        }
+
+        /**
+         * @return The quote character around the value, or 0 for an unquoted value
+         */
+        public char getQuote() {
+            return quote;
+        }
+
+        /**
+         * Whether the value starts with a quote that is never closed.
+         * When only a range of the text was lexed, the quote might be closed after the range.
+         */
+        public boolean hasUnclosedQuote() {
+            return unclosedQuote;
+        }
+
+        /**
+         * @return The key of an entry or commented entry, or null for other lines
+         */
+        public @Nullable String getKey() {
+            return keyStart < 0 ? null : text.subSequence(keyStart, keyEnd).toString();
+        }
+
+        /**
+         * Compare the key without allocating a string
+         */
+        public boolean keyEquals(@NotNull String key) {
+            if (keyStart < 0 || keyEnd - keyStart != key.length()) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (text.charAt(keyStart + i) != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The trimmed value exactly as written, quotes included and inline comment excluded
+         */
+        public @Nullable String getRawValue() {
+            return valueStart < 0 ? null : text.subSequence(valueStart, valueEnd).toString();
+        }
+
+        /**
+         * @return The value with its quotes removed; escape sequences in double quotes are resolved
+         */
+        public @Nullable String getValue() {
+            if (valueStart < 0) {
+                return null;
+            }
+            int start = valueStart;
+            int end = valueEnd;
+            if (quote == 0 && end - start >= 2) {
+                // Commented entries are not scanned for quotes
+                char first = text.charAt(start);
+                char last = text.charAt(end - 1);
+                if ((first == '"' && last == '"') || (first == '\'' && last == '\'')) {
+                    return text.subSequence(start + 1, end - 1).toString();
+                }
+            }
+            if (quote == '\'') {
+                return text.subSequence(start + 1, end - 1).toString();
+            }
+            if (quote == '"') {
+                return unescape(start + 1, end - 1);
+            }
+            return text.subSequence(start, end).toString();
+        }
+
+        private String unescape(int start, int end) {
+            StringBuilder value = null;
+            int copied = start;
+            for (int i = start; i < end - 1; i++) {
+                if (text.charAt(i) != '\\') {
+                    continue;
+                }
+                char escaped = switch (text.charAt(i + 1)) {
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 't' -> '\t';
+                    case '"' -> '"';
+                    case '\\' -> '\\';
+                    default -> 0;
+                };
+                if (escaped == 0) {
+                    // Unknown escapes are kept as written
+                    i++;
+                    continue;
+                }
+                if (value == null) {
+                    value = new StringBuilder(end - start);
+                }
+                // Append decoded slices: the text may be raw UTF-8 bytes, see Utf8ByteSequence
+                value.append(text.subSequence(copied, i).toString()).append(escaped);
+                copied = i + 2;
+                i++;
+            }
+            if (value == null) {
+                return text.subSequence(start, end).toString();
+            }
+            return value.append(text.subSequence(copied, end).toString()).toString();
+        }
+
+        /**
+         * @return The inline comment after the value without its '#', or null if there is none
+         */
+        public @Nullable String getInlineComment() {
+            return commentStart < 0 ? null : text.subSequence(commentStart + 1, contentEnd).toString().trim();
+        }
+
+        /**
+         * @return The line with leading and trailing whitespace removed
+         */
+        public String getText() {
+            return text.subSequence(contentStart, contentEnd).toString();
+        }
+
+        /**
+         * @return The lines of this token exactly as in the text, including the line terminator
+         */
+        public String getSourceText() {
+            return text.subSequence(startOffset, nextLineOffset).toString();
+        }
+
+        @Override
+        public String toString() {
+            return type + "@" + line + ": " + getText();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ringlesoft.visualenv.utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of ints, for collecting line numbers and row ids without boxing them
+ */
+public final class IntArray {
+    private int[] values = new int[8];
+    private int size;
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A copy of the values added so far
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
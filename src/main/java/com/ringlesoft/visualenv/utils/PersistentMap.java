@@ -0,0 +1,291 @@
+package com.ringlesoft.visualenv.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map whose updates return a new map sharing all untouched structure with the old one.
+ * It is a hash array mapped trie: 32-way nodes indexed by five bits of the key's hash at a time, so
+ * {@link #with} and {@link #without} copy only the few nodes on the path to the key. Older versions
+ * stay valid and unchanged, which makes them safe to hand to other threads without copying.
+ * Null keys and values are not supported.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public final class PersistentMap<K, V> {
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The value for the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(@NotNull Object key) {
+        return root == null ? null : (V) root.find(key, key.hashCode(), 0);
+    }
+
+    public boolean containsKey(@NotNull Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return A map with the key set to the value; this map if the key already had that value
+     */
+    public PersistentMap<K, V> with(@NotNull K key, @NotNull V value) {
+        boolean[] added = new boolean[1];
+        Node base = root != null ? root : BitmapNode.EMPTY;
+        Node newRoot = base.put(key, value, key.hashCode(), 0, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return A map without the key; this map if the key is not present
+     */
+    public PersistentMap<K, V> without(@NotNull Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node newRoot = root.remove(key, key.hashCode(), 0);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * Visit every entry, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NotNull BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    private interface Node {
+        Object find(Object key, int hash, int shift);
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added);
+
+        // Returns null when the node becomes empty
+        Node remove(Object key, int hash, int shift);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Node with up to 32 slots, present slots marked in a bitmap. Each slot takes two array cells:
+     * a key and its value, or null and a child node.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object slotKey = array[2 * index];
+            Object slotValue = array[2 * index + 1];
+            if (slotKey == null) {
+                return ((Node) slotValue).find(key, hash, shift + BITS);
+            }
+            return key.equals(slotKey) ? slotValue : null;
+        }
+
+        @Override
+        public Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object slotKey = array[2 * index];
+            Object slotValue = array[2 * index + 1];
+            if (slotKey == null) {
+                Node child = ((Node) slotValue).put(key, value, hash, shift + BITS, added);
+                return child == slotValue ? this : withSlot(index, null, child);
+            }
+            if (key.equals(slotKey)) {
+                return value == slotValue ? this : withSlot(index, slotKey, value);
+            }
+            added[0] = true;
+            return withSlot(index, null, split(slotKey, slotValue, key, value, hash, shift + BITS));
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slotKey = array[2 * index];
+            Object slotValue = array[2 * index + 1];
+            if (slotKey == null) {
+                Node child = ((Node) slotValue).remove(key, hash, shift + BITS);
+                if (child == slotValue) {
+                    return this;
+                }
+                if (child != null) {
+                    return withSlot(index, null, child);
+                }
+            } else if (!key.equals(slotKey)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * index);
+            System.arraycopy(array, 2 * index + 2, newArray, 2 * index, newArray.length - 2 * index);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(int index, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[2 * index] = key;
+            newArray[2 * index + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        /**
+         * Create the node holding two keys that share the hash bits used so far
+         */
+        private static Node split(Object key1, Object value1, Object key2, Object value2, int hash2, int shift) {
+            int hash1 = key1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.put(key1, value1, hash1, shift, added).put(key2, value2, hash2, shift, added);
+        }
+    }
+
+    /**
+     * Keys with equal hash codes, kept in a flat key-value array
+     */
+    private static final class CollisionNode implements Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node at the current level and add the key beside it
+                BitmapNode parent = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return parent.put(key, value, hash, shift, added);
+            }
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
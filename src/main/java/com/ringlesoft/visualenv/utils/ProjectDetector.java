@@ -1,160 +1,243 @@
 package com.ringlesoft.visualenv.utils;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
- * Utility class to detect project types
+ * Utility class to detect project types.
+ * All types are scored in a single pass over the marker files in the project root, and the result is
+ * cached on the root directory together with the modification stamps of those markers and the outcome of
+ * the Django app layout probe, so marker files are only read again after one of them is created, changed
+ * or deleted, or a Django app directory appears or disappears.
  */
 public class ProjectDetector {
-    
+    public static final String LARAVEL = "Laravel";
+    public static final String NODEJS = "NodeJS";
+    public static final String DJANGO = "Django";
+    public static final String GENERIC = "Generic";
+
+    // A marker naming the framework outweighs all the weak markers of any one type put together,
+    // so a front-end package.json and node_modules do not tie with manage.py or artisan
+    private static final int STRONG = 15;
+    private static final int WEAK = 5;
+    private static final int LARAVEL_DIRECTORIES_NEEDED = 4;
+
+    private static final String ARTISAN = "artisan";
+    private static final String COMPOSER_JSON = "composer.json";
+    private static final String PACKAGE_JSON = "package.json";
+    private static final String NODE_MODULES = "node_modules";
+    private static final String MANAGE_PY = "manage.py";
+    private static final String REQUIREMENTS_TXT = "requirements.txt";
+    private static final String[] LARAVEL_DIRECTORIES = {"app", "bootstrap", "config", "database", "resources", "routes"};
+    // Every root child the detection looks at; the cache is valid while none of them changes
+    private static final String[] MARKERS;
+
+    static {
+        String[] files = {ARTISAN, COMPOSER_JSON, PACKAGE_JSON, NODE_MODULES, MANAGE_PY, REQUIREMENTS_TXT};
+        MARKERS = Arrays.copyOf(files, files.length + LARAVEL_DIRECTORIES.length);
+        System.arraycopy(LARAVEL_DIRECTORIES, 0, MARKERS, files.length, LARAVEL_DIRECTORIES.length);
+    }
+
+    private static final Key<Detection> DETECTION_KEY = Key.create("visualenv.projectDetection");
+
     /**
-     * Checks if the given project is a Laravel project
+     * Scores of the project types for one project root
+     */
+    public static final class Detection {
+        private static final Detection NONE = new Detection(new long[0], false, Map.of());
+
+        private final long[] markerStamps;
+        private final boolean djangoLayout;
+        // Scores in order of precedence, which breaks ties
+        private final Map<String, Integer> scores;
+
+        private Detection(long[] markerStamps, boolean djangoLayout, Map<String, Integer> scores) {
+            this.markerStamps = markerStamps;
+            this.djangoLayout = djangoLayout;
+            this.scores = scores;
+        }
+
+        /**
+         * @return The type with the highest score, or "Generic" if no type scored
+         */
+        public String getProjectType() {
+            String best = GENERIC;
+            int bestScore = 0;
+            for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+                if (entry.getValue() > bestScore) {
+                    best = entry.getKey();
+                    bestScore = entry.getValue();
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return The confidence score of a type; 0 if none of its markers is present
+         */
+        public int getScore(@NotNull String projectType) {
+            return scores.getOrDefault(projectType, 0);
+        }
+    }
+
+    /**
+     * Score every project type for the project, reusing the cached detection while the marker files are unchanged.
+     * The Django app layout is probed on every call, as it spans the children of every top-level directory;
+     * the probe only looks up files and never reads them.
      *
      * @param project The project to check
-     * @return true if the project is a Laravel project, false otherwise
+     * @return The detection for the project root
      */
-    public static boolean isLaravelProject(@NotNull Project project) {
-
+    public static Detection detect(@NotNull Project project) {
         VirtualFile baseDir = getProjectRootAsVirtualFile(project);
-        if (baseDir == null) return false;
+        if (baseDir == null) {
+            return Detection.NONE;
+        }
+
+        Map<String, VirtualFile> markers = new HashMap<>();
+        long[] stamps = new long[MARKERS.length];
+        for (int i = 0; i < MARKERS.length; i++) {
+            VirtualFile marker = baseDir.findChild(MARKERS[i]);
+            if (marker != null) {
+                markers.put(MARKERS[i], marker);
+            }
+            stamps[i] = marker != null ? marker.getModificationStamp() : -1;
+        }
+        boolean djangoLayout = hasDjangoDirectoryStructure(baseDir);
+        Detection cached = baseDir.getUserData(DETECTION_KEY);
+        if (cached != null && cached.djangoLayout == djangoLayout && Arrays.equals(cached.markerStamps, stamps)) {
+            return cached;
+        }
+
+        Detection detection = score(markers, stamps, djangoLayout);
+        baseDir.putUserData(DETECTION_KEY, detection);
+        return detection;
+    }
 
-         // Check for artisan file (Laravel's command-line tool)
-        VirtualFile artisanFile = baseDir.findChild("artisan");
-        if (artisanFile != null && !artisanFile.isDirectory()) {
-            return true;
+    private static Detection score(Map<String, VirtualFile> markers, long[] stamps, boolean djangoLayout) {
+        int laravel = 0;
+        int nodeJS = 0;
+        int django = 0;
+
+        // Laravel's command-line tool and framework dependency, or its directory layout
+        if (isFile(markers.get(ARTISAN))) {
+            laravel += STRONG;
+        }
+        VirtualFile composerJson = markers.get(COMPOSER_JSON);
+        if (isFile(composerJson) && contains(composerJson, "laravel/framework", "laravel/laravel")) {
+            laravel += STRONG;
+        }
+        int laravelDirectories = 0;
+        for (String name : LARAVEL_DIRECTORIES) {
+            if (isDirectory(markers.get(name))) {
+                laravelDirectories++;
+            }
+        }
+        if (laravelDirectories >= LARAVEL_DIRECTORIES_NEEDED) {
+            laravel += WEAK;
         }
 
-        // Check for composer.json with Laravel framework
-        VirtualFile composerJson = baseDir.findChild("composer.json");
-        if (composerJson != null) {
-            return checkComposerForLaravel(composerJson);
+        // Laravel and Django projects often have a package.json for their front end too
+        if (isFile(markers.get(PACKAGE_JSON))) {
+            nodeJS += WEAK;
+        }
+        if (isDirectory(markers.get(NODE_MODULES))) {
+            nodeJS += WEAK;
+        }
+
+        if (isFile(markers.get(MANAGE_PY))) {
+            django += STRONG;
+        }
+        VirtualFile requirementsTxt = markers.get(REQUIREMENTS_TXT);
+        if (isFile(requirementsTxt) && contains(requirementsTxt, "django", "Django")) {
+            django += STRONG;
+        }
+        if (djangoLayout) {
+            django += WEAK;
         }
 
-        // Check for typical Laravel directories
-        return hasLaravelDirectoryStructure(baseDir);
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        scores.put(LARAVEL, laravel);
+        scores.put(NODEJS, nodeJS);
+        scores.put(DJANGO, django);
+        return new Detection(stamps, djangoLayout, scores);
     }
-    
+
+    /**
+     * Checks if the given project is a Laravel project
+     *
+     * @param project The project to check
+     * @return true if the project is a Laravel project, false otherwise
+     */
+    public static boolean isLaravelProject(@NotNull Project project) {
+        return detect(project).getScore(LARAVEL) > 0;
+    }
+
     /**
      * Checks if the given project is a NodeJS project
-     * 
+     *
      * @param project The project to check
      * @return true if the project is a NodeJS project, false otherwise
      */
     public static boolean isNodeJSProject(Project project) {
         if (project == null) return false;
-        
-        VirtualFile baseDir = getProjectRootAsVirtualFile(project);
-        if (baseDir == null) return false;
-        
-        // Check for package.json
-        VirtualFile packageJson = baseDir.findChild("package.json");
-        if (packageJson != null && !packageJson.isDirectory()) {
-            return true;
-        }
-        
-        // Check for node_modules directory
-        VirtualFile nodeModules = baseDir.findChild("node_modules");
-        if (nodeModules != null && nodeModules.isDirectory()) {
-            return true;
-        }
-        
-        return false;
+        return detect(project).getScore(NODEJS) > 0;
     }
-    
+
     /**
      * Checks if the given project is a Django project
-     * 
+     *
      * @param project The project to check
      * @return true if the project is a Django project, false otherwise
      */
     public static boolean isDjangoProject(Project project) {
         if (project == null) return false;
-        
-        VirtualFile baseDir = getProjectRootAsVirtualFile(project);
-        if (baseDir == null) return false;
-        
-        // Check for manage.py
-        VirtualFile managePy = baseDir.findChild("manage.py");
-        if (managePy != null && !managePy.isDirectory()) {
-            return true;
-        }
-        
-        // Check for requirements.txt with Django
-        VirtualFile requirementsTxt = baseDir.findChild("requirements.txt");
-        if (requirementsTxt != null) {
-            try {
-                String content = new String(requirementsTxt.contentsToByteArray());
-                if (content.contains("django") || content.contains("Django")) {
-                    return true;
-                }
-            } catch (Exception ignored) {
-                // Ignore exceptions reading the file
-            }
-        }
-        
-        // Check for typical Django directories
-        return hasDjangoDirectoryStructure(baseDir);
+        return detect(project).getScore(DJANGO) > 0;
     }
-    
+
     /**
      * Gets the detected project type as a string
-     * 
+     *
      * @param project The project to check
      * @return The detected project type name, or "Generic" if no specific type is detected
      */
     public static String getProjectType(Project project) {
-        if (isLaravelProject(project)) {
-            return "Laravel";
-        } else if (isNodeJSProject(project)) {
-            return "NodeJS";
-        } else if (isDjangoProject(project)) {
-            return "Django";
-        }
-        return "Generic";
+        return detect(project).getProjectType();
     }
-    
-    /**
-     * Checks if composer.json contains Laravel dependencies
-     *
-     * @param composerJson The composer.json file
-     * @return true if Laravel dependencies are found
-     */
-    private static boolean checkComposerForLaravel(VirtualFile composerJson) {
-        try {
-            String content = new String(composerJson.contentsToByteArray());
-            // Check for Laravel framework or Laravel project template
-            return content.contains("laravel/framework") || 
-                   content.contains("laravel/laravel");
-        } catch (Exception e) {
-            return false;
-        }
+
+    private static boolean isFile(VirtualFile file) {
+        return file != null && !file.isDirectory();
+    }
+
+    private static boolean isDirectory(VirtualFile file) {
+        return file != null && file.isDirectory();
     }
-    
+
     /**
-     * Checks if the project has a Laravel directory structure
-     *
-     * @param baseDir The base directory of the project
-     * @return true if the directory structure matches Laravel
+     * Checks if a marker file mentions any of the given names
      */
-    private static boolean hasLaravelDirectoryStructure(VirtualFile baseDir) {
-        // Check for typical Laravel directories
-        String[] laravelDirs = {"app", "bootstrap", "config", "database", "resources", "routes"};
-        int foundDirs = 0;
-        
-        for (String dirName : laravelDirs) {
-            VirtualFile dir = baseDir.findChild(dirName);
-            if (dir != null && dir.isDirectory()) {
-                foundDirs++;
+    private static boolean contains(VirtualFile file, String... names) {
+        try {
+            String content = new String(file.contentsToByteArray());
+            for (String name : names) {
+                if (content.contains(name)) {
+                    return true;
+                }
             }
+        } catch (Exception ignored) {
+            // Ignore exceptions reading the file
         }
-
-        // If we find most Laravel directories, it's likely a Laravel project
-        return foundDirs >= 4;
+        return false;
     }
-    
+
     /**
      * Checks if the project has a Django directory structure
      *
@@ -169,10 +252,10 @@ public class ProjectDetector {
                 VirtualFile templates = child.findChild("templates");
                 VirtualFile views = child.findChild("views.py");
                 VirtualFile models = child.findChild("models.py");
-                
-                if (migrations != null && migrations.isDirectory() && 
-                    ((templates != null && templates.isDirectory()) || 
-                    (views != null && !views.isDirectory()) || 
+
+                if (migrations != null && migrations.isDirectory() &&
+                    ((templates != null && templates.isDirectory()) ||
+                    (views != null && !views.isDirectory()) ||
                     (models != null && !models.isDirectory()))) {
                     return true;
                 }
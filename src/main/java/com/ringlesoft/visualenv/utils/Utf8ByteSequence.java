@@ -0,0 +1,71 @@
+package com.ringlesoft.visualenv.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view of UTF-8 encoded bytes for the {@link EnvLexer}, without decoding them up front.
+ * Indices are byte offsets and {@link #charAt(int)} returns the raw byte, which is exact for ASCII.
+ * Every character the lexer looks at ('=', '#', quotes, whitespace, line breaks) is ASCII, and the
+ * bytes of a multi-byte UTF-8 character are all above 0x7F, so lexing the bytes finds the same
+ * lines, keys and values as lexing the decoded text. Strings are decoded only in {@link #toString()},
+ * i.e. when a token's key or value is requested.
+ */
+public final class Utf8ByteSequence implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int length;
+
+    /**
+     * Wrap the remaining bytes of a buffer, skipping a UTF-8 byte order mark
+     *
+     * @param bytes The content, e.g. a memory-mapped file; it is not modified
+     */
+    public Utf8ByteSequence(@NotNull ByteBuffer bytes) {
+        int start = bytes.position();
+        int limit = bytes.limit();
+        if (limit - start >= 3 && bytes.get(start) == (byte) 0xEF && bytes.get(start + 1) == (byte) 0xBB
+                && bytes.get(start + 2) == (byte) 0xBF) {
+            start += 3;
+        }
+        this.bytes = bytes;
+        this.start = start;
+        this.length = limit - start;
+    }
+
+    private Utf8ByteSequence(ByteBuffer bytes, int start, int length) {
+        this.bytes = bytes;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return (char) (bytes.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public @NotNull CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+        }
+        return new Utf8ByteSequence(bytes, start + from, to - from);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(start, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.ringlesoft.visualenv.index;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the EnvKeyIndex
+ */
+public class EnvKeyIndexTest extends BasePlatformTestCase {
+
+    /**
+     * Test the definitions collected from one file
+     */
+    public void testIndexContent() {
+        String content = "# Database\nDB_HOST=localhost\nDB_PORT=\"3306\"\nexport DB_HOST=db\n";
+        Map<String, List<EnvKeyIndex.Definition>> index = EnvKeyIndex.index(content);
+
+        assertEquals(Set.of("DB_HOST", "DB_PORT"), index.keySet());
+        List<EnvKeyIndex.Definition> hosts = index.get("DB_HOST");
+        assertEquals(2, hosts.size());
+        assertEquals(content.indexOf("DB_HOST"), hosts.get(0).getOffset());
+        assertEquals(1, hosts.get(0).getLine());
+        assertEquals("localhost".hashCode(), hosts.get(0).getValueHash());
+        assertEquals("Quotes are not part of the value", "3306".hashCode(), index.get("DB_PORT").get(0).getValueHash());
+
+        assertTrue(EnvKeyIndex.isEnvFileName(".env"));
+        assertTrue(EnvKeyIndex.isEnvFileName(".env.production"));
+        assertFalse(EnvKeyIndex.isEnvFileName(".env."));
+        assertFalse(EnvKeyIndex.isEnvFileName(".envrc"));
+    }
+
+    /**
+     * Test cross-file lookups and duplicate detection through the index
+     */
+    public void testProjectQueries() {
+        VirtualFile env = myFixture.addFileToProject("api/.env", "REDIS_HOST=localhost\nAPP_KEY=a\nAPP_KEY=b\n").getVirtualFile();
+        VirtualFile production = myFixture.addFileToProject("api/.env.production", "REDIS_HOST=redis\n").getVirtualFile();
+        myFixture.addFileToProject("api/notes.txt", "REDIS_HOST=ignored\n");
+
+        assertSameElements(EnvKeyIndex.getFilesDefining(getProject(), "REDIS_HOST"), env, production);
+        assertTrue(EnvKeyIndex.isDefinedIn(getProject(), "REDIS_HOST", production));
+        assertFalse(EnvKeyIndex.isDefinedIn(getProject(), "APP_KEY", production));
+
+        Map<VirtualFile, List<EnvKeyIndex.Definition>> definitions = EnvKeyIndex.getDefinitions(getProject(), "REDIS_HOST");
+        assertEquals("redis".hashCode(), definitions.get(production).get(0).getValueHash());
+
+        Map<String, List<EnvKeyIndex.Definition>> duplicates = EnvKeyIndex.getDuplicateKeys(getProject(), env);
+        assertEquals(Set.of("APP_KEY"), duplicates.keySet());
+        assertEquals(2, duplicates.get("APP_KEY").get(1).getLine());
+    }
+}
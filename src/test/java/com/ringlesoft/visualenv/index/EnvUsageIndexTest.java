@@ -0,0 +1,45 @@
+package com.ringlesoft.visualenv.index;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the EnvUsageIndex
+ */
+public class EnvUsageIndexTest extends BasePlatformTestCase {
+
+    /**
+     * Test the accessors recognised in PHP, JavaScript and Python source
+     */
+    public void testScanSources() {
+        String php = "<?php\nreturn ['key' => env('APP_KEY'), 'host' => env(\"DB_HOST\", '127.0.0.1'), 'home' => getenv('HOME'), $_ENV['MAIL_HOST']];";
+        assertEquals(Set.of("APP_KEY", "DB_HOST", "HOME", "MAIL_HOST"), EnvUsageIndex.scan(php).keySet());
+        assertEquals(List.of(php.indexOf("APP_KEY")), EnvUsageIndex.scan(php).get("APP_KEY"));
+
+        String js = "const port = process.env.PORT || process.env['API_URL'];\nconst key = import.meta.env.VITE_KEY;\nmyenv('IGNORED');";
+        assertEquals(Set.of("PORT", "API_URL", "VITE_KEY"), EnvUsageIndex.scan(js).keySet());
+
+        String python = "SECRET = os.environ['SECRET']\nDEBUG = os.environ.get('DEBUG')\nHOST = os.getenv('PY_HOST')\nFLAG = env.bool('FLAG')\nenv(name)";
+        Map<String, List<Integer>> usages = EnvUsageIndex.scan(python);
+        assertEquals(Set.of("SECRET", "DEBUG", "PY_HOST", "FLAG"), usages.keySet());
+
+        assertTrue(EnvUsageIndex.scan("public class Plain {}").isEmpty());
+    }
+
+    /**
+     * Test project lookups through the index
+     */
+    public void testProjectQueries() {
+        myFixture.addFileToProject("config/app.php", "<?php return ['name' => env('APP_NAME'), 'url' => env('APP_URL')];");
+        myFixture.addFileToProject("web/server.js", "listen(process.env.APP_URL);");
+        myFixture.addFileToProject("web/notes.txt", "env('NOT_SOURCE')");
+
+        assertEquals(Set.of("APP_NAME", "APP_URL"), EnvUsageIndex.getUsedKeys(getProject()));
+        assertTrue(EnvUsageIndex.hasUsages(getProject(), "APP_NAME"));
+        assertFalse(EnvUsageIndex.hasUsages(getProject(), "NOT_SOURCE"));
+        assertEquals(2, EnvUsageIndex.getUsages(getProject(), "APP_URL").size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.ringlesoft.visualenv.model;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the EffectiveEnvironment
+ */
+public class EffectiveEnvironmentTest extends BasePlatformTestCase {
+    private static final List<String> LAYERS = List.of(".env", ".env.local", ".env.production", ".env.production.local");
+
+    /**
+     * Test that the highest layer defining a name wins
+     */
+    public void testHighestLayerWins() {
+        EffectiveEnvironment environment = EffectiveEnvironment.empty("production", LAYERS)
+                .withLayer(0, variables(".env", "APP_ENV", "local", "APP_DEBUG", "true", "DB_HOST", "localhost"))
+                .withLayer(1, variables(".env.local", "DB_HOST", "127.0.0.1"))
+                .withLayer(2, variables(".env.production", "APP_ENV", "production", "APP_DEBUG", "false"));
+
+        assertEquals(3, environment.size());
+        assertEquals("production", environment.get("APP_ENV").getVariable().getValue());
+        assertEquals(2, environment.get("APP_ENV").getLayer());
+        assertEquals("127.0.0.1", environment.get("DB_HOST").getVariable().getValue());
+        assertEquals(List.of(0, 1), environment.getDefiningLayers("DB_HOST"));
+        assertEquals(List.of("APP_DEBUG", "APP_ENV", "DB_HOST"), names(environment));
+    }
+
+    /**
+     * Test that changing a layer only updates the names it affects
+     */
+    public void testLayerChangesAreIncremental() {
+        EffectiveEnvironment base = EffectiveEnvironment.empty("production", LAYERS)
+                .withLayer(0, variables(".env", "A", "1", "B", "2"))
+                .withLayer(2, variables(".env.production", "B", "20"));
+
+        assertSame(base, base.withLayer(0, variables(".env", "A", "1", "B", "2")));
+
+        EffectiveEnvironment changed = base.withLayer(0, variables(".env", "A", "100", "B", "3", "C", "4"));
+        assertEquals("100", changed.get("A").getVariable().getValue());
+        assertEquals("Shadowed changes do not win", "20", changed.get("B").getVariable().getValue());
+        assertSame(base.get("B"), changed.get("B"));
+        assertEquals("4", changed.get("C").getVariable().getValue());
+        assertEquals("1", base.get("A").getVariable().getValue());
+
+        EffectiveEnvironment removed = changed.withLayer(2, List.of());
+        assertEquals("3", removed.get("B").getVariable().getValue());
+        assertEquals(0, removed.get("B").getLayer());
+
+        EffectiveEnvironment cleared = removed.withLayer(0, List.of());
+        assertEquals(0, cleared.size());
+        assertNull(cleared.get("A"));
+    }
+
+    private static List<EnvVariable> variables(String source, String... namesAndValues) {
+        List<EnvVariable> variables = new ArrayList<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            variables.add(new EnvVariable(namesAndValues[i], namesAndValues[i + 1], source));
+        }
+        return variables;
+    }
+
+    private static List<String> names(EffectiveEnvironment environment) {
+        List<String> names = new ArrayList<>();
+        for (EffectiveEnvironment.Entry entry : environment.getEntries()) {
+            names.add(entry.getVariable().getName());
+        }
+        return names;
+    }
+}
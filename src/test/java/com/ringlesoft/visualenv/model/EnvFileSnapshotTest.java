@@ -0,0 +1,129 @@
+package com.ringlesoft.visualenv.model;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the immutable EnvFileSnapshot
+ */
+public class EnvFileSnapshotTest extends BasePlatformTestCase {
+
+    /**
+     * Test that replacing lines creates a new snapshot and leaves the original untouched
+     */
+    public void testWithReplacedLines() {
+        EnvFileSnapshot original = new EnvFileSnapshot(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "2", ".env"),
+                new EnvVariable("C", "3", ".env")), new int[]{0, 2, 4}, 1);
+
+        // Line 2 becomes two lines holding B and D
+        EnvFileSnapshot patched = original.withReplacedLines(2, 2, 3,
+                List.of(new EnvVariable("B", "20", ".env"), new EnvVariable("D", "4", ".env")),
+                new int[]{2, 3}, 2);
+
+        assertTrue(patched.getVersion() > original.getVersion());
+        assertEquals(2, patched.getContentStamp());
+        assertEquals(List.of("A=1", "B=20", "D=4", "C=3"),
+                patched.getVariables().stream().map(EnvVariable::toString).toList());
+        assertEquals(5, patched.getLine(3));
+
+        assertEquals(3, original.size());
+        assertEquals(4, original.getLine(2));
+    }
+
+    /**
+     * Test that diffing against rewritten content keeps unchanged variables and reports changed keys
+     */
+    public void testDiff() {
+        EnvVariable a = new EnvVariable("A", "1", ".env");
+        EnvVariable c = new EnvVariable("C", "3", ".env");
+        EnvVariable d = new EnvVariable("D", "4", ".env");
+        EnvFileSnapshot original = new EnvFileSnapshot(List.of(a, new EnvVariable("B", "2", ".env"), c, d),
+                new int[]{0, 1, 3, 4}, 1);
+
+        // B changes, E is inserted after a new comment line, C and D move down by two lines
+        EnvFileSnapshot parsed = new EnvFileSnapshot(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "20", ".env"),
+                new EnvVariable("E", "5", ".env"),
+                new EnvVariable("C", "3", ".env"),
+                new EnvVariable("D", "4", ".env")), new int[]{0, 1, 3, 5, 6}, 2);
+        EnvFileSnapshot.ContentChange change = original.diff(parsed);
+
+        assertEquals(Set.of("B", "E"), change.getChangedKeys());
+        assertFalse(change.isEmpty());
+        EnvFileSnapshot merged = change.getSnapshot();
+        assertEquals(List.of("A=1", "B=20", "E=5", "C=3", "D=4"),
+                merged.getVariables().stream().map(EnvVariable::toString).toList());
+        assertSame(a, merged.getVariables().get(0));
+        assertSame(c, merged.getVariables().get(3));
+        assertSame(d, merged.getVariables().get(4));
+        assertEquals(6, merged.getLine(4));
+        assertEquals(2, merged.getContentStamp());
+
+        // A rewrite with the same entries on the same lines changes nothing
+        assertTrue(merged.diff(merged).isEmpty());
+        // Swapping two entries moves lines without changing keys
+        EnvFileSnapshot swapped = new EnvFileSnapshot(List.of(
+                new EnvVariable("B", "2", ".env"), new EnvVariable("A", "1", ".env"), c, d),
+                new int[]{0, 1, 3, 4}, 3);
+        EnvFileSnapshot.ContentChange swap = original.diff(swapped);
+        assertTrue(swap.getChangedKeys().isEmpty());
+        assertFalse(swap.isEmpty());
+    }
+
+    /**
+     * Test that only ranges overlapping a multi-line value are reported, and that spans move with their lines
+     */
+    public void testTouchesMultiLineValue() {
+        // B's value spans lines 2 to 4
+        EnvFileSnapshot original = new EnvFileSnapshot(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "x\ny\nz", ".env"),
+                new EnvVariable("C", "3", ".env")), new int[]{0, 2, 5}, 1, new int[]{2, 4});
+
+        assertTrue(original.hasMultiLineValues());
+        assertFalse(original.touchesMultiLineValue(0, 1));
+        assertTrue(original.touchesMultiLineValue(1, 2));
+        assertTrue(original.touchesMultiLineValue(3, 3));
+        assertFalse(original.touchesMultiLineValue(5, 5));
+
+        // One line inserted before B moves its span down
+        EnvFileSnapshot patched = original.withReplacedLines(0, 0, 1,
+                List.of(new EnvVariable("A", "1", ".env"), new EnvVariable("D", "4", ".env")),
+                new int[]{0, 1}, 2);
+        assertFalse(patched.touchesMultiLineValue(2, 2));
+        assertTrue(patched.touchesMultiLineValue(5, 5));
+        assertFalse(patched.touchesMultiLineValue(6, 6));
+    }
+
+    /**
+     * Test that line lookups find the first variable on or after a line
+     */
+    public void testIndexAtOrAfterLine() {
+        EnvFileSnapshot snapshot = new EnvFileSnapshot(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "2", ".env")), new int[]{1, 3}, 0);
+
+        assertEquals(0, snapshot.indexAtOrAfterLine(0));
+        assertEquals(0, snapshot.indexAtOrAfterLine(1));
+        assertEquals(1, snapshot.indexAtOrAfterLine(2));
+        assertEquals(2, snapshot.indexAtOrAfterLine(4));
+    }
+
+    /**
+     * Test that snapshot variables cannot be modified
+     */
+    public void testVariablesAreUnmodifiable() {
+        EnvFileSnapshot snapshot = EnvFileSnapshot.empty(0);
+        try {
+            snapshot.getVariables().add(new EnvVariable("A", "1", ".env"));
+            fail("Snapshot variables should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ringlesoft.visualenv.model;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests for the EnvSearchIndex
+ */
+public class EnvSearchIndexTest extends BasePlatformTestCase {
+
+    /**
+     * Test matching on names and values, ignoring case
+     */
+    public void testSearchNamesAndValues() {
+        EnvSearchIndex index = new EnvSearchIndex(List.of(
+                new EnvVariable("DB_HOST", "localhost", ".env"),
+                new EnvVariable("DB_PORT", "3306", ".env"),
+                new EnvVariable("APP_NAME", "Local App", ".env"),
+                new EnvVariable("API_KEY", "localsecret", ".env", true)));
+
+        assertEquals(ids(0, 1), index.search("db"));
+        assertEquals(ids(0, 2), index.search("LOCAL"));
+        assertEquals(ids(1), index.search("330"));
+        assertEquals(ids(0, 1, 2, 3), index.search(""));
+        assertEquals("Secret values are only searchable as displayed", ids(), index.search("secret"));
+        assertEquals(ids(), index.search("nothing"));
+    }
+
+    /**
+     * Test that the index agrees with a plain scan on 10k variables
+     */
+    public void testSearchManyVariables() {
+        List<EnvVariable> variables = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            variables.add(new EnvVariable("SERVICE_" + i + "_URL", "https://host" + (i % 97) + ".example.com", ".env"));
+        }
+        EnvSearchIndex index = new EnvSearchIndex(variables);
+        String[] queries = {"s", "se", "service_12", "host42", "example", "_url", "9_u", "missing"};
+
+        for (String query : queries) {
+            BitSet expected = new BitSet();
+            for (int i = 0; i < variables.size(); i++) {
+                EnvVariable variable = variables.get(i);
+                if (variable.getName().toLowerCase(Locale.ROOT).contains(query) ||
+                        variable.getValue().toLowerCase(Locale.ROOT).contains(query)) {
+                    expected.set(i);
+                }
+            }
+            assertEquals("Query " + query, expected, index.search(query));
+        }
+    }
+
+    private static BitSet ids(int... ids) {
+        BitSet result = new BitSet();
+        for (int id : ids) {
+            result.set(id);
+        }
+        return result;
+    }
+}
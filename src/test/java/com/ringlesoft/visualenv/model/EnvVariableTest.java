@@ -0,0 +1,38 @@
+package com.ringlesoft.visualenv.model;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.services.EnvFileService;
+
+/**
+ * Tests for the EnvVariable class
+ */
+public class EnvVariableTest extends BasePlatformTestCase {
+
+    /**
+     * Test that secret values are masked with a cached mask of the same length
+     */
+    public void testMaskedValue() {
+        EnvVariable secret = new EnvVariable("API_KEY", "secret", ".env", true);
+        assertEquals("******", secret.getValue());
+        assertEquals("secret", secret.getRawValue());
+        assertSame(secret.getValue(), secret.getValue());
+        assertSame(secret.getValue(), new EnvVariable("OTHER_KEY", "123456", ".env", true).getValue());
+
+        String longValue = "x".repeat(500);
+        assertEquals("*".repeat(500), new EnvVariable("LONG", longValue, ".env", true).getValue());
+        assertSame(longValue, new EnvVariable("LONG", longValue, ".env").getValue());
+    }
+
+    /**
+     * Test that the variables parsed from a file share their source and group strings
+     */
+    public void testSharedSourceAndGroup() {
+        EnvFileSnapshot snapshot = EnvFileService.lexContent("A=1\nB=2\n", new String("/project/.env".toCharArray()),
+                new EnvVariableRegistry(), 0, () -> {
+                });
+        EnvVariable first = snapshot.getVariables().get(0);
+        EnvVariable second = snapshot.getVariables().get(1);
+        assertSame(first.getSource(), second.getSource());
+        assertSame(first.getGroup(), second.getGroup());
+    }
+}
@@ -0,0 +1,82 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.model.EffectiveEnvironment;
+import com.ringlesoft.visualenv.model.EnvFileDefinition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests for the EffectiveEnvironmentService
+ */
+public class EffectiveEnvironmentServiceTest extends BasePlatformTestCase {
+
+    /**
+     * Test that layers the service does not track are merged without becoming tracked env files
+     */
+    public void testUntrackedLayersStayUntracked() throws Exception {
+        VirtualFile envFile = myFixture.addFileToProject("app/.env", "APP_ENV=local\nAPP_DEBUG=true\n").getVirtualFile();
+        VirtualFile localFile = myFixture.addFileToProject("app/.env.production.local", "APP_DEBUG=false\n").getVirtualFile();
+        EnvFileService envFileService = getProject().getService(EnvFileService.class);
+        envFileService.parseEnvFile(envFile);
+        EffectiveEnvironmentService service = EffectiveEnvironmentService.getInstance(getProject());
+
+        EffectiveEnvironment environment = service.getEnvironment("production");
+        assertNotNull(environment);
+        assertEquals("false", environment.get("APP_DEBUG").getVariable().getValue());
+        assertFalse(envFileService.isTrackedEnvFile(localFile));
+        assertFalse(envFileService.getEnvFiles().contains(localFile));
+
+        // A change to the untracked layer is picked up on the next call
+        WriteAction.run(() -> localFile.setBinaryContent("APP_DEBUG=off\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("off", service.getEnvironment("production").get("APP_DEBUG").getVariable().getValue());
+    }
+
+    /**
+     * Test that views of a directory are dropped once the active env file is in another directory
+     */
+    public void testViewsFollowTheActiveDirectory() {
+        VirtualFile apiEnv = myFixture.addFileToProject("api/.env", "PORT=8000\n").getVirtualFile();
+        VirtualFile webEnv = myFixture.addFileToProject("web/.env", "PORT=3000\n").getVirtualFile();
+        myFixture.addFileToProject("api/.env.production.local", "PORT=80\n");
+        EnvFileService envFileService = getProject().getService(EnvFileService.class);
+        EffectiveEnvironmentService service = EffectiveEnvironmentService.getInstance(getProject());
+
+        envFileService.parseEnvFile(apiEnv);
+        EffectiveEnvironment api = service.getEnvironment("production");
+        assertEquals("80", api.get("PORT").getVariable().getValue());
+        assertSame("An unchanged view is reused", api, service.getEnvironment("production"));
+
+        envFileService.parseEnvFile(webEnv);
+        assertEquals("3000", service.getEnvironment("production").get("PORT").getVariable().getValue());
+        envFileService.setActiveEnvFile(apiEnv);
+        assertNotSame("Views of a directory left behind are not kept", api, service.getEnvironment("production"));
+    }
+
+    /**
+     * Test that layers follow the priority and type of the profile's env file definitions
+     */
+    public void testLayersFollowTheProfileDefinitions() {
+        List<EnvFileDefinition> definitions = List.of(
+                EnvFileDefinition.createEnvExample(),
+                EnvFileDefinition.createProductionEnv(),
+                EnvFileDefinition.createLocalEnv(),
+                EnvFileDefinition.createPrimaryEnv(),
+                EnvFileDefinition.createTestingEnv(),
+                EnvFileDefinition.createLocalEnv(),
+                new EnvFileDefinition(".env.override", "Overrides every mode", false, true, 30,
+                        EnvFileDefinition.EnvFileType.LOCAL_OVERRIDE)
+        );
+
+        assertEquals(List.of(".env", ".env.local", ".env.override"),
+                EffectiveEnvironmentService.layerNames(definitions, EffectiveEnvironmentService.DEFAULT_MODE));
+        assertEquals(List.of(".env", ".env.local", ".env.production", ".env.production.local", ".env.override"),
+                EffectiveEnvironmentService.layerNames(definitions, "production"));
+        // A mode the profile does not define is layered like a custom file
+        assertEquals(List.of(".env", ".env.local", ".env.staging", ".env.staging.local", ".env.override"),
+                EffectiveEnvironmentService.layerNames(definitions, "staging"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.utils.EnvEventFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the EnvFileDiscoveryService
+ */
+public class EnvFileDiscoveryServiceTest extends BasePlatformTestCase {
+    private EnvFileDiscoveryService discovery;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        discovery = EnvFileDiscoveryService.getInstance(getProject());
+    }
+
+    /**
+     * Test that env files in nested packages are found and grouped by their directory
+     */
+    public void testDiscoverNestedFiles() {
+        VirtualFile root = myFixture.addFileToProject(".env", "APP_NAME=root\n").getVirtualFile();
+        VirtualFile api = myFixture.addFileToProject("packages/api/.env", "PORT=8000\n").getVirtualFile();
+        VirtualFile apiExample = myFixture.addFileToProject("packages/api/.env.example", "PORT=\n").getVirtualFile();
+        VirtualFile web = myFixture.addFileToProject("packages/web/.env", "PORT=3000\n").getVirtualFile();
+        myFixture.addFileToProject("packages/web/.env.unknown", "PORT=1\n");
+
+        List<VirtualFile> files = discovery.discover(List.of(".env", ".env.example"));
+
+        assertEquals(List.of(root, api, apiExample, web), files);
+        Map<String, List<VirtualFile>> groups = discovery.getGroups();
+        assertEquals(3, groups.size());
+        List<String> groupNames = new ArrayList<>(groups.keySet());
+        assertTrue(groupNames.get(1).endsWith("packages/api"));
+        assertEquals(List.of(api, apiExample), groups.get(groupNames.get(1)));
+        assertTrue(discovery.getDisplayName(web).endsWith("packages/web/.env"));
+    }
+
+    /**
+     * Test that created and deleted files update the list without a new scan
+     */
+    public void testIncrementalUpdates() {
+        myFixture.addFileToProject(".env", "APP_NAME=root\n");
+        discovery.discover(List.of(".env"));
+
+        VirtualFile created = myFixture.addFileToProject("services/billing/.env", "PORT=1\n").getVirtualFile();
+        VirtualFile other = myFixture.addFileToProject("services/billing/notes.txt", "").getVirtualFile();
+        assertTrue(discovery.fileCreated(created));
+        assertFalse("Files are only added once", discovery.fileCreated(created));
+        assertFalse(discovery.fileCreated(other));
+        assertEquals(2, discovery.getFiles().size());
+
+        VirtualFile services = created.getParent().getParent();
+        assertTrue(discovery.getEventFilter().isRelevantDelete(services));
+        assertEquals(List.of(created), discovery.fileDeleted(services.getPath()));
+        assertFalse(discovery.getEventFilter().isRelevantDelete(services));
+        assertEquals(1, discovery.getFiles().size());
+    }
+
+    /**
+     * Test that files found without the index are followed by the event filter until the next scan
+     */
+    public void testTrackFilesFoundWithoutIndex() {
+        VirtualFile root = myFixture.addFileToProject(".env", "APP_NAME=root\n").getVirtualFile();
+
+        assertEquals(List.of(root), discovery.track(List.of(".env", ".env.example"), List.of(root)));
+        assertNotSame(EnvEventFilter.NONE, discovery.getEventFilter());
+        assertTrue(discovery.getEventFilter().isRelevantDelete(root));
+        assertTrue(discovery.getEventFilter().isRelevantCreate(root.getParent(), ".env.example", false));
+
+        VirtualFile example = myFixture.addFileToProject(".env.example", "APP_NAME=\n").getVirtualFile();
+        assertTrue(discovery.fileCreated(example));
+        assertEquals(2, discovery.getFiles().size());
+    }
+}
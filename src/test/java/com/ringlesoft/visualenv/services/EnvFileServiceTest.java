@@ -1,14 +1,22 @@
 package com.ringlesoft.visualenv.services;
 
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.model.EnvFileSnapshot;
 import com.ringlesoft.visualenv.model.EnvVariable;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static com.intellij.openapi.util.io.FileUtil.createTempDirectory;
 
@@ -130,6 +138,249 @@ public class EnvFileServiceTest extends BasePlatformTestCase {
         }
     }
     
+    /**
+     * Test that document edits publish incrementally patched snapshots
+     */
+    public void testDocumentChangesUpdateCacheIncrementally() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), (
+            "APP_NAME=Test\n" +
+            "# Database\n" +
+            "DB_HOST=localhost\n" +
+            "DB_PORT=3306\n" +
+            "CACHE_DRIVER=file\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        Document document = FileDocumentManager.getInstance().getDocument(virtualEnvFile);
+        assertNotNull(document);
+        envService.parseEnvFile(virtualEnvFile);
+        EnvFileSnapshot initial = envService.getSnapshot(virtualEnvFile);
+        assertNotNull(initial);
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            // Change a value, insert two lines and remove one
+            int hostLine = document.getLineStartOffset(2);
+            document.replaceString(hostLine, document.getLineEndOffset(2), "DB_HOST=127.0.0.1");
+            document.insertString(document.getLineStartOffset(1), "APP_ENV=local\nAPP_DEBUG=true\n");
+            document.deleteString(document.getLineStartOffset(4), document.getLineStartOffset(5));
+        });
+
+        EnvFileSnapshot current = envService.getSnapshot(virtualEnvFile);
+        assertTrue("Each edit should publish a newer snapshot", current.getVersion() > initial.getVersion());
+        assertEquals("Earlier snapshots must stay untouched", 4, initial.size());
+        assertEquals(document.getModificationStamp(), current.getContentStamp());
+        List<String> patched = current.getVariables().stream().map(EnvVariable::toString).toList();
+        List<String> reparsed = envService.reloadEnvFile(virtualEnvFile).stream().map(EnvVariable::toString).toList();
+        assertEquals(reparsed, patched);
+        assertEquals(List.of("APP_NAME=Test", "APP_ENV=local", "APP_DEBUG=true", "DB_PORT=3306", "CACHE_DRIVER=file"), patched);
+    }
+
+    /**
+     * Test that edits away from a multi-line value are patched without parsing the whole document again
+     */
+    public void testEditBesideMultiLineValueIsPatched() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), (
+            "APP_NAME=Test\n" +
+            "MOTD=\"line one\n" +
+            "line two\"\n" +
+            "DB_HOST=localhost\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        Document document = FileDocumentManager.getInstance().getDocument(virtualEnvFile);
+        assertNotNull(document);
+        envService.parseEnvFile(virtualEnvFile);
+        EnvVariable motd = envService.getSnapshot(virtualEnvFile).getVariables().get(1);
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () ->
+                document.replaceString(document.getLineStartOffset(3), document.getLineEndOffset(3), "DB_HOST=db"));
+        EnvFileSnapshot patched = envService.getSnapshot(virtualEnvFile);
+        assertSame("The multi-line value is carried over", motd, patched.getVariables().get(1));
+        assertEquals("db", patched.getVariables().get(2).getValue());
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () ->
+                document.insertString(document.getLineStartOffset(2), "middle\n"));
+        List<String> current = envService.getSnapshot(virtualEnvFile).getVariables().stream()
+                .map(EnvVariable::toString).toList();
+        assertEquals(List.of("APP_NAME=Test", "MOTD=line one\nmiddle\nline two", "DB_HOST=db"), current);
+    }
+
+    /**
+     * Test that a sequence of edits, including closing a quote opened lines before, keeps the cache equal to a full parse
+     */
+    public void testIncrementalEditsMatchFullParse() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), "APP_NAME=Test\n".getBytes(StandardCharsets.UTF_8));
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        Document document = FileDocumentManager.getInstance().getDocument(virtualEnvFile);
+        assertNotNull(document);
+        envService.parseEnvFile(virtualEnvFile);
+
+        String[] typed = {"CERT=\"-----BEGIN\n", "abc\n", "def\n", "\"", "\nDB_HOST=localhost", "\n# done\n"};
+        for (String text : typed) {
+            WriteCommandAction.runWriteCommandAction(getProject(),
+                    () -> document.insertString(document.getTextLength(), text));
+            List<String> cached = envService.getSnapshot(virtualEnvFile).getVariables().stream()
+                    .map(EnvVariable::toString).toList();
+            List<String> reparsed = envService.reloadEnvFile(virtualEnvFile).stream()
+                    .map(EnvVariable::toString).toList();
+            assertEquals("After typing " + text.strip(), reparsed, cached);
+        }
+        assertEquals("-----BEGIN\nabc\ndef\n", envService.getSnapshot(virtualEnvFile).getVariables().get(1).getRawValue());
+    }
+
+    /**
+     * Test that templates are parsed from their bytes without creating a document
+     */
+    public void testTemplateIsParsedWithoutDocument() throws IOException {
+        File templateFile = new File(tempDir, ".env.example");
+        Files.write(templateFile.toPath(), (
+            "\uFEFFAPP_NAME=Café\r\n" +
+            "# Greeting\r\n" +
+            "GREETING=\"こんにちは\"\r\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        VirtualFile virtualTemplate = refreshAndFindFile(templateFile);
+        assertTrue(envService.isReadOnlyParse(virtualTemplate));
+
+        List<EnvVariable> variables = envService.reloadEnvFile(virtualTemplate);
+        assertEquals(List.of("APP_NAME=Café", "GREETING=こんにちは"),
+                variables.stream().map(EnvVariable::toString).toList());
+        assertNull("No document should be loaded", FileDocumentManager.getInstance().getCachedDocument(virtualTemplate));
+    }
+
+    /**
+     * Test that content rewritten outside the editor is diffed into the cached snapshot
+     */
+    public void testExternalContentChange() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), (
+            "APP_KEY=\n" +
+            "DB_HOST=localhost\n" +
+            "DB_PORT=3306\n"
+        ).getBytes(StandardCharsets.UTF_8));
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        EnvFileSnapshot initial = envService.reloadSnapshot(virtualEnvFile);
+
+        // What a key generator does: rewrite the whole file with one value changed
+        WriteAction.run(() -> virtualEnvFile.setBinaryContent((
+            "APP_KEY=base64:abc\n" +
+            "DB_HOST=localhost\n" +
+            "DB_PORT=3306\n"
+        ).getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Set.of("APP_KEY"), envService.envFileContentChanged(virtualEnvFile));
+        EnvFileSnapshot current = envService.getSnapshot(virtualEnvFile);
+        assertEquals("base64:abc", current.getVariables().get(0).getValue());
+        assertSame(initial.getVariables().get(2), current.getVariables().get(2));
+        assertTrue("Unchanged content publishes nothing", envService.envFileContentChanged(virtualEnvFile).isEmpty());
+        assertSame(current, envService.getSnapshot(virtualEnvFile));
+    }
+
+    /**
+     * Test that a queued external change is parsed in the background and reported on the EDT
+     */
+    public void testQueuedExternalContentChange() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), "APP_KEY=\nDB_HOST=localhost\n".getBytes(StandardCharsets.UTF_8));
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        envService.reloadSnapshot(virtualEnvFile);
+
+        WriteAction.run(() -> virtualEnvFile.setBinaryContent(
+                "APP_KEY=\nDB_HOST=db.internal\n".getBytes(StandardCharsets.UTF_8)));
+        List<Set<String>> reported = new ArrayList<>();
+        envService.queueEnvFileContentChanged(virtualEnvFile, reported::add);
+        PlatformTestUtil.waitWithEventsDispatching("The change should be reported", () -> !reported.isEmpty(), 10);
+
+        assertEquals(List.of(Set.of("DB_HOST")), reported);
+        assertEquals("db.internal", envService.getSnapshot(virtualEnvFile).getVariables().get(1).getValue());
+    }
+
+    /**
+     * Test that renamed files and directories stay tracked under their new path
+     */
+    public void testRenamedFilesStayTracked() throws IOException {
+        VirtualFile envFile = myFixture.addFileToProject("api/.env", "PORT=8000\n").getVirtualFile();
+        EnvFileDiscoveryService.getInstance(getProject()).discover(List.of(".env"));
+        envService.reloadSnapshot(envFile);
+
+        VirtualFile directory = envFile.getParent();
+        String oldDirectoryPath = directory.getPath();
+        WriteAction.run(() -> directory.rename(this, "billing"));
+        assertTrue(envService.envFileMoved(oldDirectoryPath, directory));
+        assertEquals(List.of(envFile), envService.getEnvFiles());
+        PlatformTestUtil.waitWithEventsDispatching("The moved file should be parsed again in the background",
+                () -> envService.getSnapshot(envFile).getVariables().get(0).getSource().endsWith("billing/.env"), 10);
+
+        String oldPath = envFile.getPath();
+        WriteAction.run(() -> envFile.rename(this, "notes.txt"));
+        assertTrue(envService.envFileMoved(oldPath, envFile));
+        assertFalse(envService.isTrackedEnvFile(envFile));
+        assertFalse(envService.getEnvFiles().contains(envFile));
+
+        String notesPath = envFile.getPath();
+        WriteAction.run(() -> envFile.rename(this, ".env"));
+        assertTrue("Renaming to an env file name tracks the file", envService.envFileMoved(notesPath, envFile));
+        assertEquals(List.of(envFile), envService.getEnvFiles());
+    }
+
+    /**
+     * Test that edits still queued for a file are dropped, not written, once it stops being an env file
+     */
+    public void testForgottenFileDropsPendingChanges() throws IOException {
+        VirtualFile envFile = myFixture.addFileToProject("queued/.env", "APP_NAME=Test\n").getVirtualFile();
+        EnvFileDiscoveryService.getInstance(getProject()).discover(List.of(".env"));
+        EnvWriteQueue queue = envService.getWriteQueue(envFile);
+        queue.enqueue("APP_NAME", "Renamed");
+
+        String oldPath = envFile.getPath();
+        WriteAction.run(() -> envFile.rename(this, "notes.txt"));
+        assertTrue(envService.envFileMoved(oldPath, envFile));
+
+        assertFalse(queue.hasPendingChanges());
+        assertEquals("APP_NAME=Test\n", FileDocumentManager.getInstance().getDocument(envFile).getText());
+        assertNotSame("The dropped queue is not reused", queue, envService.getWriteQueue(envFile));
+    }
+
+    /**
+     * Test that a renamed env file keeps its queued edits
+     */
+    public void testRenamedFileKeepsPendingChanges() throws IOException {
+        VirtualFile envFile = myFixture.addFileToProject("queued/.env", "APP_NAME=Test\n").getVirtualFile();
+        EnvFileDiscoveryService.getInstance(getProject()).discover(List.of(".env"));
+        EnvWriteQueue queue = envService.getWriteQueue(envFile);
+        queue.enqueue("APP_NAME", "Moved");
+
+        VirtualFile directory = envFile.getParent();
+        String oldPath = directory.getPath();
+        WriteAction.run(() -> directory.rename(this, "api"));
+        assertTrue(envService.envFileMoved(oldPath, directory));
+
+        assertSame(queue, envService.getWriteQueue(envFile));
+        assertTrue(queue.hasPendingChanges());
+        queue.flush();
+        assertEquals("APP_NAME=Moved\n", FileDocumentManager.getInstance().getDocument(envFile).getText());
+    }
+
+    /**
+     * Test that a rescan drops the write queues of files it no longer finds
+     */
+    public void testRescanDropsQueuesOfUntrackedFiles() throws IOException {
+        VirtualFile envFile = myFixture.addFileToProject("queued/.env", "APP_NAME=Test\n").getVirtualFile();
+        envService.discoverEnvFiles();
+        EnvWriteQueue queue = envService.getWriteQueue(envFile);
+        queue.enqueue("APP_NAME", "Stale");
+
+        WriteAction.run(() -> envFile.rename(this, "notes.txt"));
+        envService.discoverEnvFiles();
+        envService.flushPendingWrites();
+
+        assertFalse(queue.hasPendingChanges());
+        assertEquals("APP_NAME=Test\n", FileDocumentManager.getInstance().getDocument(envFile).getText());
+    }
+
     /**
      * Helper method to find a variable in the list
      */
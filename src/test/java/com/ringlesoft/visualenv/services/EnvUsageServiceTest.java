@@ -0,0 +1,37 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.Set;
+
+/**
+ * Tests for the EnvUsageService
+ */
+public class EnvUsageServiceTest extends BasePlatformTestCase {
+
+    /**
+     * Test that keys nobody reads and usages nobody defines are reported
+     */
+    public void testReportUnusedAndMissingKeys() {
+        myFixture.addFileToProject(".env", "APP_NAME=Demo\nAPP_DEBUG=true\nLEGACY_TOKEN=x\n");
+        myFixture.addFileToProject("packages/api/.env.example", "API_PORT=\n");
+        myFixture.addFileToProject("config/app.php", "<?php return [env('APP_NAME'), env('APP_DEBUG'), env('CACHE_DRIVER')];");
+        myFixture.addFileToProject("packages/api/index.js", "server.listen(process.env.API_PORT);");
+
+        EnvUsageService.Report report = EnvUsageService.compute(getProject());
+
+        assertEquals(Set.of("LEGACY_TOKEN"), report.getUnusedKeys());
+        assertTrue(report.isUnused("LEGACY_TOKEN"));
+        assertFalse(report.isUnused("API_PORT"));
+        assertEquals(Set.of("CACHE_DRIVER"), report.getMissingKeys());
+    }
+
+    /**
+     * Test that nothing is reported unused in a project without indexed sources
+     */
+    public void testNoSourcesMeansNothingUnused() {
+        myFixture.addFileToProject(".env", "APP_NAME=Demo\n");
+
+        assertTrue(EnvUsageService.compute(getProject()).getUnusedKeys().isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the per-file write-behind queue
+ */
+public class EnvWriteQueueTest extends BasePlatformTestCase {
+
+    /**
+     * Test that queued edits are written with a single document change and saved
+     */
+    public void testFlushWritesPendingChangesOnce() throws IOException {
+        VirtualFile file = myFixture.getTempDirFixture().createFile(".env",
+                "APP_NAME=Test\nDB_HOST=localhost\nDB_PORT=3306\n");
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        assertNotNull(document);
+
+        AtomicInteger changes = new AtomicInteger();
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                changes.incrementAndGet();
+            }
+        }, getTestRootDisposable());
+
+        EnvWriteQueue queue = new EnvWriteQueue(getProject(), file);
+        Disposer.register(getTestRootDisposable(), queue);
+        queue.enqueue("DB_HOST", "127.0.0.1");
+        queue.enqueue("DB_PORT", "33");
+        queue.enqueue("DB_PORT", "3307");
+        queue.enqueue("CACHE_DRIVER", "redis");
+        assertTrue(queue.hasPendingChanges());
+        assertEquals("Nothing is written before the flush", 0, changes.get());
+
+        queue.flush();
+
+        assertFalse(queue.hasPendingChanges());
+        assertEquals("All edits should be applied as one change", 1, changes.get());
+        assertEquals("APP_NAME=Test\nDB_HOST=127.0.0.1\nDB_PORT=3307\nCACHE_DRIVER=redis\n", document.getText());
+        assertFalse(FileDocumentManager.getInstance().isDocumentUnsaved(document));
+    }
+
+    /**
+     * Test that disposing a queue writes its pending changes
+     */
+    public void testDisposeWritesPendingChanges() throws IOException {
+        VirtualFile file = myFixture.getTempDirFixture().createFile(".env", "APP_NAME=Test\n");
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        assertNotNull(document);
+        Disposable parent = Disposer.newDisposable();
+        EnvWriteQueue queue = new EnvWriteQueue(getProject(), file);
+        Disposer.register(parent, queue);
+
+        queue.enqueue("APP_NAME", "Other");
+        Disposer.dispose(parent);
+
+        assertFalse(queue.hasPendingChanges());
+        assertEquals("APP_NAME=Other\n", document.getText());
+    }
+}
@@ -0,0 +1,52 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.IOException;
+
+/**
+ * Tests for the MetricsService class
+ */
+public class MetricsServiceTest extends BasePlatformTestCase {
+
+    private MetricsService metrics;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        metrics = MetricsService.getInstance(getProject());
+        metrics.reset();
+    }
+
+    /**
+     * Test that timers and counters are recorded and reset
+     */
+    public void testTimersAndCounters() {
+        try (MetricsService.Timer ignored = metrics.startTimer("test.timer")) {
+            metrics.increment("test.counter");
+        }
+        metrics.increment("test.counter", 2);
+
+        assertEquals(1, metrics.getTimer("test.timer").getCount());
+        assertEquals(3, metrics.getCounter("test.counter"));
+        String dump = metrics.dump();
+        assertTrue(dump.contains("test.timer: count=1"));
+        assertTrue(dump.contains("test.counter: 3"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getTimer("test.timer").getCount());
+        assertEquals(0, metrics.getCounter("test.counter"));
+    }
+
+    /**
+     * Test that parsing an env file is measured
+     */
+    public void testParseIsMeasured() throws IOException {
+        VirtualFile file = myFixture.getTempDirFixture().createFile(".env", "A=1\nB=2\n");
+        getProject().getService(EnvFileService.class).reloadSnapshot(file);
+
+        assertEquals(1, metrics.getTimer(MetricsService.PARSE).getCount());
+        assertEquals(2, metrics.getCounter(MetricsService.PARSED_VARIABLES));
+    }
+}
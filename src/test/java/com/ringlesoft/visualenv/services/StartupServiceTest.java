@@ -0,0 +1,39 @@
+package com.ringlesoft.visualenv.services;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.listeners.StartupListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the staged StartupService
+ */
+public class StartupServiceTest extends BasePlatformTestCase {
+
+    /**
+     * Test that the stages complete in order in the background and leave the project set up
+     */
+    public void testStagesCompleteInOrder() {
+        List<StartupService.Stage> stages = new ArrayList<>();
+        getProject().getMessageBus().connect(getTestRootDisposable()).subscribe(StartupListener.TOPIC, stages::add);
+        StartupService startup = StartupService.getInstance(getProject());
+
+        startup.start();
+        startup.start();
+        PlatformTestUtil.waitWithEventsDispatching("Startup should complete",
+                () -> startup.isCompleted(StartupService.Stage.INDEX), 10);
+
+        // The startup activity may already have run some stages before the listener was added
+        List<StartupService.Stage> sorted = new ArrayList<>(stages);
+        sorted.sort(null);
+        assertEquals("Stages are reported once, in order", sorted, stages);
+        assertEquals(stages.size(), stages.stream().distinct().count());
+        for (StartupService.Stage stage : StartupService.Stage.values()) {
+            assertTrue(startup.isCompleted(stage));
+        }
+        assertNotNull(getProject().getService(ProjectService.class).getProjectType());
+        assertNotNull(getProject().getService(EnvFileService.class).getActiveProfile());
+    }
+}
@@ -1,11 +1,18 @@
 package com.ringlesoft.visualenv.toolWindow;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
 import com.ringlesoft.visualenv.model.EnvVariable;
+import com.ringlesoft.visualenv.services.EnvFileDiscoveryService;
 import com.ringlesoft.visualenv.services.EnvFileService;
 import com.ringlesoft.visualenv.services.ProjectService;
 
+import javax.swing.*;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,7 +34,7 @@ public class EnvEditorTabTest extends BasePlatformTestCase {
         projectService = project.getService(ProjectService.class);
         
         // Create the component we're testing
-        envEditorTab = new EnvEditorTab(project, envService, projectService);
+        envEditorTab = new EnvEditorTab(project, envService, projectService, getTestRootDisposable());
     }
 
     /**
@@ -126,4 +133,51 @@ public class EnvEditorTabTest extends BasePlatformTestCase {
             fail("Exception during test: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that created and deleted files update the selector without changing the selection
+     */
+    @SuppressWarnings("unchecked")
+    public void testSyncEnvFilesKeepsSelection() throws Exception {
+        EnvFileDiscoveryService discovery = EnvFileDiscoveryService.getInstance(project);
+        VirtualFile root = myFixture.addFileToProject(".env", "APP_NAME=root\n").getVirtualFile();
+        VirtualFile api = myFixture.addFileToProject("packages/api/.env", "PORT=1\n").getVirtualFile();
+        discovery.discover(List.of(".env"));
+        envEditorTab.loadEnvFiles();
+
+        Field selectorField = EnvEditorTab.class.getDeclaredField("envFileSelector");
+        selectorField.setAccessible(true);
+        JComboBox<String> selector = (JComboBox<String>) selectorField.get(envEditorTab);
+        selector.setSelectedItem(discovery.getDisplayName(api));
+        Object selected = selector.getSelectedItem();
+
+        VirtualFile web = myFixture.addFileToProject("packages/web/.env", "PORT=2\n").getVirtualFile();
+        assertTrue(discovery.fileCreated(web));
+        envEditorTab.syncEnvFiles();
+        assertEquals(3, selector.getItemCount());
+        assertEquals(selected, selector.getSelectedItem());
+        assertEquals(discovery.getDisplayName(web), selector.getItemAt(2));
+
+        discovery.fileDeleted(root.getPath());
+        envEditorTab.syncEnvFiles();
+        assertEquals(2, selector.getItemCount());
+        assertEquals(selected, selector.getSelectedItem());
+    }
+
+    /**
+     * Test that disposing the tab's parent writes queued edits and stops the tab
+     */
+    public void testDisposingParentClosesTab() {
+        VirtualFile file = myFixture.addFileToProject("closing/.env", "APP_NAME=Test\n").getVirtualFile();
+        Disposable parent = Disposer.newDisposable();
+        EnvEditorTab tab = new EnvEditorTab(project, envService, projectService, parent);
+        envService.getWriteQueue(file).enqueue("APP_NAME", "Closed");
+
+        Disposer.dispose(parent);
+
+        assertFalse(envService.getWriteQueue(file).hasPendingChanges());
+        assertEquals("APP_NAME=Closed\n", FileDocumentManager.getInstance().getDocument(file).getText());
+        // Closing again is harmless
+        tab.close();
+    }
+}
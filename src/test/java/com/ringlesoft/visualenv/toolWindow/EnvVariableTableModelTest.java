@@ -0,0 +1,82 @@
+package com.ringlesoft.visualenv.toolWindow;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.ringlesoft.visualenv.model.EnvVariable;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the table model behind the variables table
+ */
+public class EnvVariableTableModelTest extends BasePlatformTestCase {
+
+    /**
+     * Test that only values are editable and that edits are reported once
+     */
+    public void testEditingValues() {
+        List<String> edits = new ArrayList<>();
+        EnvVariableTableModel model = new EnvVariableTableModel(List.of(
+                new EnvVariable("APP_NAME", "Test", ".env", false, "app"),
+                new EnvVariable("API_KEY", "secret", ".env", true, "api")),
+                (variable, value) -> edits.add(variable.getName() + "=" + value));
+
+        assertEquals(2, model.getRowCount());
+        assertFalse(model.isCellEditable(0, EnvVariableTableModel.NAME_COLUMN));
+        assertTrue(model.isCellEditable(0, EnvVariableTableModel.VALUE_COLUMN));
+        assertEquals("APP_NAME", model.getValueAt(0, EnvVariableTableModel.NAME_COLUMN));
+
+        model.setValueAt("Test", 0, EnvVariableTableModel.VALUE_COLUMN);
+        assertTrue("Unchanged values should not be reported", edits.isEmpty());
+
+        model.setValueAt("Other", 0, EnvVariableTableModel.VALUE_COLUMN);
+        model.setValueAt("changed", 1, EnvVariableTableModel.VALUE_COLUMN);
+        assertEquals(List.of("APP_NAME=Other", "API_KEY=changed"), edits);
+        assertEquals("Other", model.getVariable(0).getValue());
+        assertTrue("Edited rows keep their secret flag", model.getVariable(1).isSecret());
+    }
+
+    /**
+     * Test that reconciling by name only reports the rows that changed
+     */
+    public void testReconcileUpdatesOnlyChangedRows() {
+        EnvVariableTableModel model = new EnvVariableTableModel(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "2", ".env"),
+                new EnvVariable("C", "3", ".env")), (variable, value) -> { });
+        List<String> events = new ArrayList<>();
+        model.addTableModelListener(e -> events.add(e.getType() + ":" + e.getFirstRow() + "-" + e.getLastRow()));
+
+        model.reconcile(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("B", "20", ".env"),
+                new EnvVariable("C", "3", ".env")));
+        assertEquals(List.of(TableModelEvent.UPDATE + ":1-1"), events);
+
+        events.clear();
+        model.reconcile(List.of(
+                new EnvVariable("A", "1", ".env"),
+                new EnvVariable("D", "4", ".env"),
+                new EnvVariable("C", "3", ".env")));
+        assertEquals(List.of(TableModelEvent.DELETE + ":1-1", TableModelEvent.INSERT + ":1-1"), events);
+        assertEquals(List.of("A=1", "D=4", "C=3"),
+                model.getVariables().stream().map(EnvVariable::toString).toList());
+
+        events.clear();
+        model.reconcile(List.of(
+                new EnvVariable("C", "3", ".env"),
+                new EnvVariable("A", "1", ".env")));
+        assertEquals(List.of("C=3", "A=1"),
+                model.getVariables().stream().map(EnvVariable::toString).toList());
+    }
+
+    /**
+     * Test that replacing the rows updates the row count
+     */
+    public void testSetVariables() {
+        EnvVariableTableModel model = new EnvVariableTableModel(List.of(), (variable, value) -> { });
+        model.setVariables(List.of(new EnvVariable("A", "1", ".env")));
+        assertEquals(1, model.getRowCount());
+    }
+}
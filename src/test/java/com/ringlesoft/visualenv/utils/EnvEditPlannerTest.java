@@ -0,0 +1,187 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the EnvEditPlanner and the batch writer built on it
+ */
+public class EnvEditPlannerTest extends BasePlatformTestCase {
+
+    /**
+     * Test that replacements and appends are merged into one edit
+     */
+    public void testPlanMergesReplacementsAndAppends() {
+        String content = "APP_NAME=Old\n" +
+                "export DB_HOST=localhost\n" +
+                "# Mail\n" +
+                "MAIL_PORT=25";
+
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("MAIL_PORT", "587");
+        variables.put("DB_HOST", "127.0.0.1");
+        variables.put("new key", "hello world");
+
+        EnvEditPlanner.Edit edit = EnvEditPlanner.plan(new EnvDocumentIndex(content, 0), variables);
+        assertEquals(content.indexOf("localhost"), edit.getStartOffset());
+        assertEquals(content.length(), edit.getEndOffset());
+        assertEquals("APP_NAME=Old\n" +
+                "export DB_HOST=127.0.0.1\n" +
+                "# Mail\n" +
+                "MAIL_PORT=587\n" +
+                "NEW_KEY=\"hello world\"\n", edit.applyTo(content));
+    }
+
+    /**
+     * Test that an edit without appends stops at the last replaced line
+     */
+    public void testPlanWithoutAppendsKeepsTail() {
+        String content = "A=1\nB=2\nC=3\n";
+        EnvEditPlanner.Edit edit = EnvEditPlanner.plan(new EnvDocumentIndex(content, 0), Map.of("B", "20"));
+        assertEquals(content.indexOf("2"), edit.getStartOffset());
+        assertEquals(content.indexOf("\nC"), edit.getEndOffset());
+        assertEquals("A=1\nB=20\nC=3\n", edit.applyTo(content));
+    }
+
+    /**
+     * Test that updates keep quote styles and inline comments
+     */
+    public void testPlanKeepsFormatting() {
+        String content = "DOUBLE=\"old\" # note\r\n" +
+                "SINGLE='old'\r\n" +
+                "PLAIN=old # plain\r\n" +
+                "EMPTY= # fill me\r\n";
+
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("DOUBLE", "new\nline");
+        variables.put("SINGLE", "it's");
+        variables.put("PLAIN", "a\\b");
+        variables.put("EMPTY", "set");
+        variables.put("ADDED", "1");
+
+        EnvEditPlanner.Edit edit = EnvEditPlanner.plan(new EnvDocumentIndex(content, 0), variables);
+        String updated = edit.applyTo(content);
+        assertEquals("DOUBLE=\"new\\nline\" # note\r\n" +
+                "SINGLE=\"it's\"\r\n" +
+                "PLAIN=\"a\\\\b\" # plain\r\n" +
+                "EMPTY= set # fill me\r\n" +
+                "ADDED=1\r\n", updated);
+
+        List<EnvLexer.Token> reread = EnvLexer.tokenize(updated);
+        assertEquals("new\nline", reread.get(0).getValue());
+        assertEquals("it's", reread.get(1).getValue());
+        assertEquals("a\\b", reread.get(2).getValue());
+        assertEquals("set", reread.get(3).getValue());
+    }
+
+    /**
+     * Test that organizing moves entries with their comments and keeps everything else as written
+     */
+    public void testPlanOrganizeKeepsCommentsAndQuotes() {
+        String content = "# Shared settings\r\n" +
+                "\r\n" +
+                "# Primary database\r\n" +
+                "export DB_HOST=\"db.local\" # primary\r\n" +
+                "APP_KEY='secret'\r\n" +
+                "# App\r\n" +
+                "APP_NAME=Demo\r\n" +
+                "CERT=\"line1\r\nline2\"\r\n" +
+                "UNSORTED=1";
+
+        Map<String, List<String>> sections = new LinkedHashMap<>();
+        sections.put("App", List.of("APP_NAME", "APP_KEY"));
+        sections.put("Database", List.of("DB_HOST"));
+
+        EnvEditPlanner.Edit edit = EnvEditPlanner.planOrganize(new EnvDocumentIndex(content, 0), sections);
+        String organized = edit.applyTo(content);
+        assertEquals("# Shared settings\r\n" +
+                "\r\n" +
+                "# App\r\n" +
+                "APP_NAME=Demo\r\n" +
+                "APP_KEY='secret'\r\n" +
+                "\r\n" +
+                "# Database\r\n" +
+                "# Primary database\r\n" +
+                "export DB_HOST=\"db.local\" # primary\r\n" +
+                "\r\n" +
+                "# Other\r\n" +
+                "CERT=\"line1\r\nline2\"\r\n" +
+                "UNSORTED=1\r\n", organized);
+        // The text both versions start with is left alone
+        assertEquals(content.indexOf("Primary"), edit.getStartOffset());
+
+        // Organizing again changes nothing
+        assertTrue(EnvEditPlanner.planOrganize(new EnvDocumentIndex(organized, 0), sections).isEmpty());
+    }
+
+    /**
+     * Test that renaming and adding to a section only insert or replace what changes
+     */
+    public void testPlanRenameAndAddToSection() {
+        String content = "# Mail\nexport MAIL_HOST=\"smtp\" # relay\n";
+        EnvDocumentIndex index = new EnvDocumentIndex(content, 0);
+
+        EnvEditPlanner.Edit rename = EnvEditPlanner.planRename(index, "MAIL_HOST", "SMTP_HOST");
+        assertNotNull(rename);
+        assertEquals("# Mail\nexport SMTP_HOST=\"smtp\" # relay\n", rename.applyTo(content));
+        assertNull(EnvEditPlanner.planRename(index, "MISSING", "OTHER"));
+
+        assertEquals("# Mail\nMAIL_PORT=587\nexport MAIL_HOST=\"smtp\" # relay\n",
+                EnvEditPlanner.planAddToSection(index, "Mail", "MAIL_PORT", "587").applyTo(content));
+        assertEquals(content + "\n# Cache\nCACHE_DRIVER=redis\n",
+                EnvEditPlanner.planAddToSection(index, "Cache", "CACHE_DRIVER", "redis").applyTo(content));
+    }
+
+    /**
+     * Test that a 1.5k key import written as one batch gives the same text as writing key by key, in one edit
+     */
+    public void testBatchImportOfManyKeys() {
+        int keyCount = 1500;
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < keyCount; i++) {
+            content.append("EXISTING_").append(i).append("=value").append(i).append('\n');
+        }
+        Map<String, String> imported = new LinkedHashMap<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < keyCount; i++) {
+            imported.put(i % 2 == 0 ? "EXISTING_" + i : "IMPORTED_" + i, "new value " + i);
+            expected.append("EXISTING_").append(i).append('=')
+                    .append(i % 2 == 0 ? "\"new value " + i + "\"" : "value" + i).append('\n');
+        }
+        for (int i = 1; i < keyCount; i += 2) {
+            expected.append("IMPORTED_").append(i).append("=\"new value ").append(i).append("\"\n");
+        }
+
+        Document sequential = EditorFactory.getInstance().createDocument(content);
+        Document batch = EditorFactory.getInstance().createDocument(content);
+        AtomicInteger batchEdits = new AtomicInteger();
+        batch.addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                batchEdits.incrementAndGet();
+            }
+        }, getTestRootDisposable());
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            for (Map.Entry<String, String> entry : imported.entrySet()) {
+                EnvFileManager.setEnvVariableInternal(sequential, entry.getKey(), entry.getValue());
+            }
+        });
+        WriteCommandAction.runWriteCommandAction(getProject(), () ->
+                EnvFileManager.setEnvVariablesInternal(batch, imported));
+
+        assertEquals(expected.toString(), batch.getText());
+        assertEquals(sequential.getText(), batch.getText());
+        assertEquals("The whole batch is applied as one document edit", 1, batchEdits.get());
+    }
+}
@@ -0,0 +1,74 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.mock.MockVirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the EnvEventFilter
+ */
+public class EnvEventFilterTest extends BasePlatformTestCase {
+    private static final Set<String> FILE_NAMES = Set.of(".env", ".env.example");
+
+    private MockVirtualFile root;
+    private MockVirtualFile api;
+    private MockVirtualFile apiEnv;
+    private MockVirtualFile dist;
+    private MockVirtualFile nodeModules;
+    private EnvEventFilter filter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = directory(null, "project");
+        MockVirtualFile packages = directory(root, "packages");
+        api = directory(packages, "api");
+        apiEnv = file(api, ".env");
+        dist = directory(root, "dist");
+        nodeModules = directory(root, "node_modules");
+        filter = new EnvEventFilter(FILE_NAMES, List.of(apiEnv), List.of(root), List.of(dist));
+    }
+
+    /**
+     * Test that only env files created below a watched root outside excluded directories are relevant
+     */
+    public void testCreate() {
+        assertTrue(filter.isRelevantCreate(root, ".env", false));
+        assertTrue(filter.isRelevantCreate(api, ".env.example", false));
+        assertFalse("Unknown env names are ignored", filter.isRelevantCreate(api, ".env.unknown", false));
+        assertFalse(filter.isRelevantCreate(api, "index.php", false));
+        assertFalse("Directories are ignored", filter.isRelevantCreate(api, ".env", true));
+        assertFalse("Excluded roots are skipped", filter.isRelevantCreate(directory(dist, "api"), ".env", false));
+        assertFalse(filter.isRelevantCreate(directory(nodeModules, "dotenv"), ".env", false));
+        assertFalse("Files outside the watched roots are ignored",
+                filter.isRelevantCreate(directory(null, "elsewhere"), ".env", false));
+    }
+
+    /**
+     * Test that deleting a tracked file or one of its ancestors is relevant
+     */
+    public void testDelete() {
+        assertTrue(filter.isRelevantDelete(apiEnv));
+        assertTrue(filter.isRelevantDelete(api));
+        assertTrue(filter.isRelevantDelete(root));
+        assertFalse(filter.isRelevantDelete(file(api, ".env.example")));
+        assertFalse(filter.isRelevantDelete(nodeModules));
+        assertFalse(EnvEventFilter.NONE.isRelevantDelete(apiEnv));
+    }
+
+    private static MockVirtualFile directory(MockVirtualFile parent, String name) {
+        MockVirtualFile directory = new MockVirtualFile(true, name);
+        if (parent != null) {
+            parent.addChild(directory);
+        }
+        return directory;
+    }
+
+    private static MockVirtualFile file(MockVirtualFile parent, String name) {
+        MockVirtualFile file = new MockVirtualFile(name);
+        parent.addChild(file);
+        return file;
+    }
+}
@@ -1,5 +1,8 @@
 package com.ringlesoft.visualenv.utils;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -52,6 +55,41 @@ public class EnvFileManagerTest extends BasePlatformTestCase {
         assertEquals("Should find DB_HOST", "localhost", variable);
     }
 
+    public void testHasEnvVariable() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), (
+                "# APP_DEBUG=true\n" +
+                        "export APP_ENV=local\n" +
+                        "DB_HOST=localhost\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+
+        assertTrue(EnvFileManager.hasEnvVariable(virtualEnvFile, "DB_HOST"));
+        assertTrue(EnvFileManager.hasEnvVariable(virtualEnvFile, "APP_ENV"));
+        assertFalse("Commented variables are not defined", EnvFileManager.hasEnvVariable(virtualEnvFile, "APP_DEBUG"));
+        assertEquals("true", EnvFileManager.getCommentedVariables(virtualEnvFile).get("APP_DEBUG"));
+    }
+
+    public void testIndexIsRebuiltOnlyWhenDocumentChanges() throws IOException {
+        File envFile = new File(tempDir, ".env");
+        Files.write(envFile.toPath(), "DB_HOST=localhost\n".getBytes(StandardCharsets.UTF_8));
+
+        VirtualFile virtualEnvFile = refreshAndFindFile(envFile);
+        Document document = FileDocumentManager.getInstance().getDocument(virtualEnvFile);
+        assertNotNull(document);
+
+        EnvDocumentIndex index = EnvFileManager.getIndex(document);
+        assertSame("Unchanged document should reuse its index", index, EnvFileManager.getIndex(document));
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () ->
+                document.insertString(document.getTextLength(), "DB_PORT=3306\n"));
+
+        EnvDocumentIndex updated = EnvFileManager.getIndex(document);
+        assertNotSame("Edited document should get a new index", index, updated);
+        assertEquals("3306", EnvFileManager.getEnvVariable(virtualEnvFile, "DB_PORT"));
+    }
+
 //    /**
 //     * Test setting an environment variable in a file
 //     */
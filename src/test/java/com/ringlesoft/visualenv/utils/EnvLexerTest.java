@@ -0,0 +1,161 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the EnvLexer
+ */
+public class EnvLexerTest extends BasePlatformTestCase {
+
+    /**
+     * Test that every kind of line is recognized with correct offsets
+     */
+    public void testTokenTypesAndOffsets() {
+        String content = "# Database\n" +
+                "DB_HOST=localhost\r\n" +
+                "\n" +
+                "export APP_NAME = \"My App\"\n" +
+                "# DB_PORT=3306\n" +
+                "not a variable\n" +
+                "=missing_key";
+
+        List<EnvLexer.Token> tokens = EnvLexer.tokenize(content);
+        assertEquals(7, tokens.size());
+
+        assertEquals(EnvLexer.TokenType.COMMENT, tokens.get(0).getType());
+        assertFalse(tokens.get(0).isCommentedEntry());
+
+        EnvLexer.Token host = tokens.get(1);
+        assertEquals(EnvLexer.TokenType.ENTRY, host.getType());
+        assertEquals("DB_HOST", host.getKey());
+        assertEquals("localhost", host.getValue());
+        assertEquals(1, host.getLine());
+        assertEquals("DB_HOST=localhost", content.substring(host.getStartOffset(), host.getEndOffset()));
+        assertEquals('\n', content.charAt(host.getNextLineOffset() - 1));
+
+        assertEquals(EnvLexer.TokenType.BLANK, tokens.get(2).getType());
+
+        EnvLexer.Token appName = tokens.get(3);
+        assertEquals("APP_NAME", appName.getKey());
+        assertEquals("\"My App\"", appName.getRawValue());
+        assertEquals("My App", appName.getValue());
+
+        EnvLexer.Token commented = tokens.get(4);
+        assertTrue(commented.isCommentedEntry());
+        assertEquals("DB_PORT", commented.getKey());
+        assertEquals("3306", commented.getRawValue());
+
+        assertEquals(EnvLexer.TokenType.INVALID, tokens.get(5).getType());
+        assertEquals(EnvLexer.TokenType.INVALID, tokens.get(6).getType());
+        assertEquals(content.length(), tokens.get(6).getNextLineOffset());
+    }
+
+    /**
+     * Test the text based helpers of EnvFileManager that are built on the lexer
+     */
+    public void testEnvFileManagerContentHelpers() {
+        String content = "# General\n" +
+                "APP_ENV=local\n" +
+                "# Mail\n" +
+                "MAIL_HOST=smtp.example.com\n" +
+                "MAIL_PORT = 25\n" +
+                "broken line\n";
+
+        Map<String, String> variables = EnvFileManager.getAllEnvVariables(content);
+        assertEquals("local", variables.get("APP_ENV"));
+        assertEquals("25", variables.get("MAIL_PORT"));
+
+        Map<String, List<String>> sections = EnvFileManager.extractEnvFileSections(content);
+        assertEquals(List.of("APP_ENV"), sections.get("General"));
+        assertEquals(List.of("MAIL_HOST", "MAIL_PORT"), sections.get("Mail"));
+
+        List<String> errors = EnvFileManager.validateEnvFile(content);
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).startsWith("Line 5:"));
+        assertTrue(errors.get(1).startsWith("Line 6:"));
+    }
+
+    /**
+     * Test that the tokens reproduce the content byte for byte
+     */
+    public void testTokensAreLossless() {
+        String content = "# Top\r\n" +
+                "export A=1 # note\r\n" +
+                "B=\"x\\ny\"\r\n" +
+                "C='multi\r\nline' # tail\r\n" +
+                "  \r\n" +
+                "not a variable\r\n" +
+                "D=\"unclosed";
+
+        StringBuilder joined = new StringBuilder();
+        for (EnvLexer.Token token : EnvLexer.tokenize(content)) {
+            joined.append(token.getSourceText());
+        }
+        assertEquals(content, joined.toString());
+    }
+
+    /**
+     * Test quoted values spanning several lines, escapes and inline comments
+     */
+    public void testQuotedValuesAndInlineComments() {
+        String content = "PLAIN=value # comment\n" +
+                "HASH=a#b\n" +
+                "ESCAPED=\"tab\\there \\\"quoted\\\" \\\\ \\$\"\n" +
+                "SINGLE='no \\n escapes' # kept\n" +
+                "KEY=\"-----BEGIN KEY-----\n" +
+                "abc\n" +
+                "-----END KEY-----\"\n" +
+                "OPEN=\"no end\n" +
+                "NEXT=1\n";
+
+        List<EnvLexer.Token> tokens = EnvLexer.tokenize(content);
+        assertEquals(7, tokens.size());
+
+        EnvLexer.Token plain = tokens.get(0);
+        assertEquals("value", plain.getValue());
+        assertEquals("comment", plain.getInlineComment());
+
+        assertEquals("a#b", tokens.get(1).getValue());
+        assertNull(tokens.get(1).getInlineComment());
+
+        assertEquals("tab\there \"quoted\" \\ \\$", tokens.get(2).getValue());
+
+        EnvLexer.Token single = tokens.get(3);
+        assertEquals('\'', single.getQuote());
+        assertEquals("no \\n escapes", single.getValue());
+        assertEquals("kept", single.getInlineComment());
+
+        EnvLexer.Token key = tokens.get(4);
+        assertTrue(key.isMultiLine());
+        assertEquals(4, key.getLine());
+        assertEquals(6, key.getEndLine());
+        assertEquals("-----BEGIN KEY-----\nabc\n-----END KEY-----", key.getValue());
+
+        // An unclosed quote does not swallow the following lines
+        EnvLexer.Token open = tokens.get(5);
+        assertTrue(open.hasUnclosedQuote());
+        assertFalse(open.isMultiLine());
+        assertEquals("\"no end", open.getValue());
+        assertEquals(8, tokens.get(6).getLine());
+    }
+
+    /**
+     * Test that escapes in double-quoted values with non-ASCII text are resolved on raw UTF-8 bytes too
+     */
+    public void testEscapesInUtf8Bytes() {
+        String content = "G=\"héllo\\nwörld\"\n" +
+                "Q=\"ça \\\"va\\\" 🚀\\t\"\n";
+        List<EnvLexer.Token> tokens = EnvLexer.tokenize(
+                new Utf8ByteSequence(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(2, tokens.size());
+        assertEquals("héllo\nwörld", tokens.get(0).getValue());
+        assertEquals("ça \"va\" 🚀\t", tokens.get(1).getValue());
+        assertEquals(EnvLexer.tokenize(content).get(1).getValue(), tokens.get(1).getValue());
+    }
+}
@@ -0,0 +1,54 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * Tests for the latency histogram behind the plugin metrics
+ */
+public class LatencyHistogramTest extends BasePlatformTestCase {
+
+    /**
+     * Test that every value falls in a bucket whose upper bound is within 25% of it
+     */
+    public void testBucketBounds() {
+        long[] values = {0, 1, 3, 4, 7, 8, 9, 1_000, 123_456, 10_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+            assertTrue("Upper bound below value " + value, upper >= value);
+            assertTrue("Upper bound too far from value " + value, upper - value <= value / 4);
+        }
+    }
+
+    /**
+     * Test count, mean, max and percentiles
+     */
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500, histogram.getMeanNanos());
+        assertEquals(100_000, histogram.getMaxNanos());
+
+        long p50 = histogram.getPercentileNanos(50);
+        assertTrue("p50 was " + p50, p50 >= 50_000 && p50 <= 62_500);
+        long p99 = histogram.getPercentileNanos(99);
+        assertTrue("p99 was " + p99, p99 >= 99_000 && p99 <= 100_000);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    /**
+     * Test formatting in the largest readable unit
+     */
+    public void testFormat() {
+        assertEquals("500ns", LatencyHistogram.format(500));
+        assertEquals("2.5ms", LatencyHistogram.format(2_500_000).replace(',', '.'));
+        assertEquals("1.50s", LatencyHistogram.format(1_500_000_000L).replace(',', '.'));
+    }
+}
@@ -0,0 +1,93 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the PersistentMap
+ */
+public class PersistentMapTest extends BasePlatformTestCase {
+
+    /**
+     * Test that updates leave older versions untouched
+     */
+    public void testUpdatesKeepOlderVersions() {
+        PersistentMap<String, String> empty = PersistentMap.empty();
+        PersistentMap<String, String> one = empty.with("A", "1");
+        PersistentMap<String, String> two = one.with("B", "2");
+        PersistentMap<String, String> changed = two.with("A", "10");
+        PersistentMap<String, String> removed = changed.without("B");
+
+        assertEquals(0, empty.size());
+        assertNull(empty.get("A"));
+        assertEquals("1", two.get("A"));
+        assertEquals("10", changed.get("A"));
+        assertEquals(2, changed.size());
+        assertEquals(1, removed.size());
+        assertNull(removed.get("B"));
+        assertEquals("2", two.get("B"));
+
+        assertSame(two, two.with("B", two.get("B")));
+        assertSame(two, two.without("MISSING"));
+    }
+
+    /**
+     * Compare random updates, including keys with equal hash codes, with a HashMap
+     */
+    public void testAgreesWithHashMap() {
+        Random random = new Random(42);
+        PersistentMap<Object, Integer> map = PersistentMap.empty();
+        Map<Object, Integer> expected = new HashMap<>();
+        List<PersistentMap<Object, Integer>> versions = new ArrayList<>();
+        List<Map<Object, Integer>> expectedVersions = new ArrayList<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            Object key = random.nextInt(4) == 0 ? new CollidingKey(random.nextInt(20), random.nextInt(4))
+                    : "KEY_" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            } else {
+                int value = random.nextInt(10);
+                map = map.with(key, value);
+                expected.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+            if (i % 10_000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            Map<Object, Integer> actual = new HashMap<>();
+            versions.get(i).forEach(actual::put);
+            assertEquals(expectedVersions.get(i), actual);
+        }
+    }
+
+    private static final class CollidingKey {
+        private final int hash;
+        private final int id;
+
+        CollidingKey(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).hash == hash && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ringlesoft.visualenv.utils;
 
+import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -62,6 +63,72 @@ public class ProjectDetectorTest extends BasePlatformTestCase {
         assertTrue("Should detect Django project structure", true); // TODO Implement
     }
 
+    /**
+     * Test that all types are scored at once and the detection is cached until a marker file changes
+     */
+    public void testDetectionIsScoredAndCached() throws IOException {
+        File projectDir = new File(tempDir, "laravel-project");
+        projectDir.mkdir();
+        File composerFile = new File(projectDir, "composer.json");
+        Files.write(composerFile.toPath(), "{\"require\": {\"laravel/framework\": \"^11.0\"}}".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(projectDir, "package.json").toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        LocalFileSystem.getInstance().refreshAndFindFileByIoFile(projectDir);
+        VirtualFile composerJson = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(composerFile);
+        assertNotNull(composerJson);
+        Project project = createMockProject(projectDir.getPath());
+
+        ProjectDetector.Detection detection = ProjectDetector.detect(project);
+        assertEquals("A framework dependency outweighs a front-end package.json", "Laravel", detection.getProjectType());
+        assertTrue(detection.getScore("NodeJS") > 0);
+        assertEquals(0, detection.getScore("Django"));
+        assertSame("Unchanged markers reuse the detection", detection, ProjectDetector.detect(project));
+
+        WriteAction.run(() -> composerJson.setBinaryContent("{}".getBytes(StandardCharsets.UTF_8)));
+        ProjectDetector.Detection changed = ProjectDetector.detect(project);
+        assertNotSame(detection, changed);
+        assertEquals("NodeJS", changed.getProjectType());
+        assertEquals("NodeJS", ProjectDetector.getProjectType(project));
+    }
+
+    /**
+     * Test that a Django app layout is scored next to a front-end package.json, and that adding an app invalidates the cache
+     */
+    public void testDjangoLayoutIsAlwaysScored() throws IOException {
+        File projectDir = new File(tempDir, "django-project");
+        new File(projectDir, "blog/migrations").mkdirs();
+        Files.write(new File(projectDir, "package.json").toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        VirtualFile projectVF = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(projectDir);
+        assertNotNull(projectVF);
+        Project project = createMockProject(projectDir.getPath());
+
+        ProjectDetector.Detection detection = ProjectDetector.detect(project);
+        assertEquals("Migrations alone do not make an app", 0, detection.getScore("Django"));
+
+        Files.write(new File(projectDir, "blog/models.py").toPath(), "".getBytes(StandardCharsets.UTF_8));
+        projectVF.refresh(false, true);
+        ProjectDetector.Detection changed = ProjectDetector.detect(project);
+        assertNotSame(detection, changed);
+        assertTrue("The app layout counts despite package.json", ProjectDetector.isDjangoProject(project));
+        assertTrue(ProjectDetector.isNodeJSProject(project));
+    }
+
+    /**
+     * Test that a framework marker beats both front-end markers of a NodeJS project together
+     */
+    public void testStrongMarkerBeatsWeakMarkers() throws IOException {
+        File projectDir = new File(tempDir, "django-project");
+        new File(projectDir, "node_modules").mkdirs();
+        Files.write(new File(projectDir, "manage.py").toPath(), "#!/usr/bin/env python".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(projectDir, "package.json").toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        assertNotNull(LocalFileSystem.getInstance().refreshAndFindFileByIoFile(projectDir));
+        Project project = createMockProject(projectDir.getPath());
+
+        ProjectDetector.Detection detection = ProjectDetector.detect(project);
+        assertTrue(detection.getScore("NodeJS") > 0);
+        assertTrue(detection.getScore("Django") > detection.getScore("NodeJS"));
+        assertEquals("Django", detection.getProjectType());
+    }
+
 //    // TODO Configure Mockito to be able to run the below tests
 //    /**
 //     * Test Laravel project detection
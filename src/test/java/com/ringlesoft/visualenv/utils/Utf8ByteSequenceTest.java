@@ -0,0 +1,47 @@
+package com.ringlesoft.visualenv.utils;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests for lexing UTF-8 bytes through Utf8ByteSequence
+ */
+public class Utf8ByteSequenceTest extends BasePlatformTestCase {
+
+    /**
+     * Test that lexing the bytes yields the same tokens as lexing the decoded text
+     */
+    public void testLexingBytesMatchesText() {
+        String content = "# Größe\n" +
+                "APP_NAME=Café\r\n" +
+                "export GREETING=\"こんにちは\"\n" +
+                "\n" +
+                "EMOJI='🚀 launch'\n" +
+                "# DISABLED=ñ\n" +
+                "not valid";
+        List<EnvLexer.Token> expected = EnvLexer.tokenize(content);
+        List<EnvLexer.Token> actual = EnvLexer.tokenize(
+                new Utf8ByteSequence(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getLine(), actual.get(i).getLine());
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            assertEquals(expected.get(i).getText(), actual.get(i).getText());
+        }
+    }
+
+    /**
+     * Test that a byte order mark is skipped
+     */
+    public void testByteOrderMarkIsSkipped() {
+        Utf8ByteSequence text = new Utf8ByteSequence(ByteBuffer.wrap("\uFEFFKEY=1".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("KEY=1", text.toString());
+        assertEquals("KEY", EnvLexer.tokenize(text).get(0).getKey());
+    }
+}